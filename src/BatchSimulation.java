@@ -0,0 +1,208 @@
+package alina.sim;
+
+import alina.sim.strategy.BatchStrategy;
+
+/**
+ * Cette classe permet de simuler un grand nombre de pendules inversés en même temps.
+ * Au lieu d'un objet State par pendule, chaque grandeur est stockée dans une colonne
+ * (un tableau de doubles dont l'indice i correspond au pendule i), de sorte que chaque
+ * pas de temps est une simple boucle sur des tableaux, sans allocation, que le compilateur
+ * JIT peut optimiser (déroulement, vectorisation).
+ * Les équations et la méthode numérique sont exactement celles de Simulation.solveStep :
+ * un pendule simulé ici suit la même trajectoire que dans une Simulation avec la même précision.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class BatchSimulation {
+	/**
+	 * Le nombre de pendules simulés.
+	 */
+	public final int size;
+	/**
+	 * Les colonnes de l'état des pendules (voir Simulation.State pour les unités).
+	 */
+	public final double[] theta, vAng, aAng, x, vx, ax, work;
+	/**
+	 * Les colonnes des paramètres physiques des pendules.
+	 */
+	public final double[] M, m, l;
+	/**
+	 * La force appliquée à chaque chariot lors du dernier pas.
+	 */
+	private final double[] force;
+	/**
+	 * Le temps courant, commun à tous les pendules (s).
+	 */
+	private double t;
+	/**
+	 * La stratégie utilisée pour tous les pendules.
+	 */
+	private BatchStrategy strategy;
+	/**
+	 * La "précision" du calcul numérique (voir Simulation).
+	 */
+	private int precision;
+
+	/**
+	 * Le constructeur AVEC arguments de la simulation par lots.
+	 * Tous les pendules sont initialisés avec des valeurs nulles.
+	 * 
+	 * @param size le nombre de pendules
+	 * @param strategy la stratégie par lots choisie pour la simulation
+	 * @param precision la précision de la simulation
+	 */
+	public BatchSimulation(int size, BatchStrategy strategy, int precision) {
+		this.size = size;
+		this.strategy = strategy;
+		this.precision = precision;
+
+		theta = new double[size];
+		vAng = new double[size];
+		aAng = new double[size];
+		x = new double[size];
+		vx = new double[size];
+		ax = new double[size];
+		work = new double[size];
+		M = new double[size];
+		m = new double[size];
+		l = new double[size];
+		force = new double[size];
+	}
+
+	/**
+	 * Cette méthode fait avancer tous les pendules durant un intervalle de temps (très petit),
+	 * avec la même méthode d'Euler que Simulation.solveStep.
+	 * 
+	 * @param dt le laps de temps entre deux calculs successifs de l'état du système (en s)
+	 */
+	public void solveStep(double dt) {
+		t += dt;
+
+		strategy.react(this, force);
+
+		final double[] theta = this.theta, vAng = this.vAng, aAng = this.aAng;
+		final double[] x = this.x, vx = this.vx, ax = this.ax, work = this.work;
+		final double[] M = this.M, m = this.m, l = this.l, force = this.force;
+		final double g = Simulation.g, pi = Math.PI;
+
+		for (int i = 0; i < size; i++) {
+			double fx = force[i];
+			double sin = Math.sin(theta[i]);
+			double cos = Math.cos(theta[i]);
+			double Mi = M[i], mi = m[i], li = l[i], vAng2 = vAng[i]*vAng[i];
+			double denominator = Mi + mi*sin*sin;
+
+			double axi = (mi*g*sin*cos - mi*li*vAng2*sin + fx) / denominator;
+			double vxi = vx[i] + axi * dt;
+			ax[i] = axi;
+			vx[i] = vxi;
+			x[i] += vxi * dt;
+
+			double aAngi = ((Mi+mi)*g*sin - mi*li*vAng2*sin*cos + fx*cos) / li / denominator;
+			double vAngi = vAng[i] + aAngi * dt;
+			double thetai = theta[i] + vAngi * dt;
+			//on ramène theta dans [-pi, pi] sans branchement
+			thetai = thetai > pi ? thetai - 2*pi : thetai;
+			thetai = thetai < -pi ? thetai + 2*pi : thetai;
+			aAng[i] = aAngi;
+			vAng[i] = vAngi;
+			theta[i] = thetai;
+
+			work[i] += fx * vxi * dt;
+		}
+	}
+
+	/**
+	 * Cette méthode utilise la méthode solveStep pour faire avancer tous les pendules
+	 * durant un intervalle de temps donné en paramètre.
+	 * 
+	 * @param nb_ms l'intervalle de temps (en ms)
+	 */
+	public void solve(long nb_ms) {
+		double dt = 0.001 / precision;
+		for (long i = 0; i < nb_ms * precision; i++)
+			solveStep(dt);
+	}
+
+	/**
+	 * Cette méthode remet le temps à zéro et réinitialise la stratégie.
+	 * Les colonnes ne sont pas modifiées : elles doivent être remplies à nouveau avec set.
+	 */
+	public void reset() {
+		t = 0;
+		strategy.reset();
+	}
+
+	/**
+	 * Cette méthode copie un état dans les colonnes du pendule i.
+	 * 
+	 * @param i l'indice du pendule
+	 * @param state l'état à copier
+	 */
+	public void set(int i, Simulation.State state) {
+		theta[i] = state.theta;
+		vAng[i] = state.vAng;
+		aAng[i] = state.aAng;
+		x[i] = state.x;
+		vx[i] = state.vx;
+		ax[i] = state.ax;
+		work[i] = state.work;
+		M[i] = state.M;
+		m[i] = state.m;
+		l[i] = state.l;
+	}
+
+	/**
+	 * Cette méthode copie les colonnes du pendule i dans l'état donné en paramètre.
+	 * 
+	 * @param i l'indice du pendule
+	 * @param state l'état dans lequel les valeurs sont copiées
+	 */
+	public void get(int i, Simulation.State state) {
+		state.t = t;
+		state.started = t > 0;
+		state.theta = theta[i];
+		state.vAng = vAng[i];
+		state.aAng = aAng[i];
+		state.x = x[i];
+		state.vx = vx[i];
+		state.ax = ax[i];
+		state.work = work[i];
+		state.M = M[i];
+		state.m = m[i];
+		state.l = l[i];
+	}
+
+	/**
+	 * Cette méthode retourne le temps courant de la simulation.
+	 * @return le temps courant (en s)
+	 */
+	public double getTime() {
+		return t;
+	}
+
+	/**
+	 * Cette méthode retourne la stratégie utilisée par la simulation.
+	 * @return la stratégie par lots
+	 */
+	public BatchStrategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Cette méthode permet de changer la stratégie utilisée par la simulation.
+	 * @param strategy la nouvelle stratégie par lots
+	 */
+	public void setStrategy(BatchStrategy strategy) {
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Cette méthode permet de changer la précision du calcul numérique.
+	 * @param precision la nouvelle précision du calcul numérique
+	 */
+	public void setPrecision(int precision) {
+		this.precision = precision;
+	}
+}
@@ -0,0 +1,259 @@
+package alina.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Cette classe enregistre les états de la simulation en binaire, une colonne par grandeur de l'état
+ * (t, x, vx, ...) : chaque colonne est un fichier nom.col du répertoire d'enregistrement, formé d'un
+ * petit en-tête (dont le nombre d'échantillons) suivi des valeurs en double précision (petit-boutiste).
+ * Les fichiers sont projetés en mémoire et dimensionnés à l'avance ; lorsqu'ils sont pleins, leur
+ * taille est doublée et ils sont projetés à nouveau. Ajouter un échantillon ne coûte donc qu'une
+ * écriture en mémoire par valeur, sans formatage, et les valeurs sont gardées sans perte de précision.
+ *
+ * Le nombre d'échantillons est mis à jour dans l'en-tête de la colonne t après chaque ajout (et dans
+ * celui des autres colonnes à la fermeture) : les colonnes peuvent être lues (read) pendant
+ * l'enregistrement. À la fermeture, les fichiers sont ramenés à leur taille utile. L'export en texte (export) se fait après coup, par exemple avec HeadlessMain --export=répertoire.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class ColumnRecorder implements SampleSink {
+	/**
+	 * Les noms des colonnes (les champs de Simulation.State), dans l'ordre des valeurs de append(double[], ...).
+	 */
+	public static final String[] CHANNELS = {"t", "x", "vx", "ax", "theta", "vAng", "aAng", "y", "vy", "ay",
+			"work", "drift", "M", "m", "l"};
+	/**
+	 * Le nombre de colonnes.
+	 */
+	public static final int WIDTH = CHANNELS.length;
+	/**
+	 * La taille de l'en-tête : magic, version, nombre d'échantillons, réservé.
+	 */
+	private static final int HEADER = 32;
+	private static final int MAGIC = 0x43504352, VERSION = 1;
+	/**
+	 * Le nombre maximum d'échantillons d'une colonne (une projection est limitée à 2 Go).
+	 */
+	private static final long MAX_CAPACITY = (Integer.MAX_VALUE - HEADER) / 8;
+
+	/**
+	 * Le répertoire d'enregistrement.
+	 */
+	private final File directory;
+	private final RandomAccessFile[] files = new RandomAccessFile[WIDTH];
+	private final MappedByteBuffer[] maps = new MappedByteBuffer[WIDTH];
+	private final DoubleBuffer[] columns = new DoubleBuffer[WIDTH];
+	/**
+	 * Le nombre d'échantillons enregistrés et le nombre d'échantillons que peuvent contenir les projections actuelles.
+	 */
+	private int count, capacity;
+
+	/**
+	 * Constructeur public qui crée (ou vide) les colonnes du répertoire donné.
+	 *
+	 * @param directory le répertoire d'enregistrement (créé s'il n'existe pas)
+	 * @param initialCapacity le nombre d'échantillons prévus au départ
+	 */
+	public ColumnRecorder(File directory, int initialCapacity) throws IOException {
+		this.directory = directory;
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("cannot create " + directory);
+		for (int c = 0; c < WIDTH; c++) {
+			files[c] = new RandomAccessFile(file(directory, CHANNELS[c]), "rw");
+			files[c].setLength(0);
+		}
+		map(Math.max(1, initialCapacity));
+	}
+
+	private static File file(File directory, String channel) {
+		return new File(directory, channel + ".col");
+	}
+
+	/**
+	 * Cette méthode (re)projette toutes les colonnes avec la capacité donnée.
+	 */
+	private void map(int capacity) throws IOException {
+		for (int c = 0; c < WIDTH; c++) {
+			FileChannel channel = files[c].getChannel();
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + 8L * capacity);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			map.putInt(0, MAGIC);
+			map.putInt(4, VERSION);
+			map.putLong(8, count);
+			maps[c] = map;
+			map.position(HEADER);
+			columns[c] = map.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Cette méthode s'assure que les colonnes peuvent recevoir n échantillons de plus.
+	 */
+	private void ensureCapacity(int n) throws IOException {
+		long needed = (long) count + n;
+		if (needed <= capacity)
+			return;
+		if (needed > MAX_CAPACITY)
+			throw new IOException("recording too long: " + needed + " samples");
+		long grown = capacity;
+		while (grown < needed)
+			grown *= 2;
+		map((int) Math.min(grown, MAX_CAPACITY));
+	}
+
+	@Override
+	public void append(Simulation.State state) throws IOException {
+		ensureCapacity(1);
+		int i = count;
+		columns[0].put(i, state.t);
+		columns[1].put(i, state.x);
+		columns[2].put(i, state.vx);
+		columns[3].put(i, state.ax);
+		columns[4].put(i, state.theta);
+		columns[5].put(i, state.vAng);
+		columns[6].put(i, state.aAng);
+		columns[7].put(i, state.y);
+		columns[8].put(i, state.vy);
+		columns[9].put(i, state.ay);
+		columns[10].put(i, state.work);
+		columns[11].put(i, state.drift);
+		columns[12].put(i, state.M);
+		columns[13].put(i, state.m);
+		columns[14].put(i, state.l);
+		count = i + 1;
+		maps[0].putLong(8, count);
+	}
+
+	@Override
+	public void append(double[][] values, int from, int n) throws IOException {
+		ensureCapacity(n);
+		for (int c = 0; c < WIDTH; c++) {
+			DoubleBuffer column = columns[c];
+			column.position(count);
+			column.put(values[c], from, n);
+		}
+		setCount(count + n);
+	}
+
+	/**
+	 * Cette méthode change le nombre d'échantillons et l'écrit dans l'en-tête de toutes les colonnes.
+	 */
+	private void setCount(int count) {
+		this.count = count;
+		for (int c = 0; c < WIDTH; c++)
+			maps[c].putLong(8, count);
+	}
+
+	/**
+	 * Cette méthode efface les échantillons enregistrés (les fichiers gardent leur taille).
+	 */
+	@Override
+	public void reset() {
+		setCount(0);
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons enregistrés.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Cette méthode retourne le répertoire d'enregistrement.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Cette méthode ramène les fichiers à leur taille utile et les ferme.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (files[0] != null)
+			setCount(count);
+		for (int c = 0; c < WIDTH; c++) {
+			if (files[c] == null)
+				continue;
+			maps[c].force();
+			maps[c] = null;
+			columns[c] = null;
+			files[c].setLength(HEADER + 8L * count);
+			files[c].close();
+			files[c] = null;
+		}
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons d'un enregistrement (donné par la colonne t,
+	 * qui est à jour même pendant l'enregistrement).
+	 *
+	 * @param directory le répertoire d'enregistrement
+	 * @return le nombre d'échantillons
+	 */
+	public static int size(File directory) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(file(directory, CHANNELS[0]), "r")) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			file.getChannel().read(header, 0);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+				throw new IOException("not a column file: " + file(directory, CHANNELS[0]));
+			return (int) header.getLong(8);
+		}
+	}
+
+	/**
+	 * Cette méthode lit une colonne enregistrée (sans conversion : les valeurs sont recopiées telles quelles).
+	 *
+	 * @param directory le répertoire d'enregistrement
+	 * @param channel le nom de la colonne (voir CHANNELS)
+	 * @return les valeurs de la colonne
+	 */
+	public static double[] read(File directory, String channel) throws IOException {
+		int n = size(directory);
+		try (RandomAccessFile file = new RandomAccessFile(file(directory, channel), "r")) {
+			MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER, 8L * n);
+			double[] values = new double[n];
+			map.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+			return values;
+		}
+	}
+
+	/**
+	 * Cette méthode écrit toutes les colonnes enregistrées sous forme de texte, une ligne par échantillon
+	 * (avec toute la précision des valeurs).
+	 *
+	 * @param directory le répertoire d'enregistrement
+	 * @param pw le flux dans lequel le texte est écrit
+	 */
+	public static void export(File directory, PrintWriter pw) throws IOException {
+		double[][] values = new double[WIDTH][];
+		int n = Integer.MAX_VALUE;
+		for (int c = 0; c < WIDTH; c++) {
+			values[c] = read(directory, CHANNELS[c]);
+			n = Math.min(n, values[c].length);
+		}
+
+		StringBuilder line = new StringBuilder();
+		for (int c = 0; c < WIDTH; c++)
+			line.append(c == 0 ? "" : " ").append(CHANNELS[c]);
+		pw.println(line);
+		for (int i = 0; i < n; i++) {
+			line.setLength(0);
+			for (int c = 0; c < WIDTH; c++)
+				line.append(c == 0 ? "" : " ").append(values[c][i]);
+			pw.println(line);
+		}
+		pw.flush();
+	}
+}
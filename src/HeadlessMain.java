@@ -0,0 +1,516 @@
+package alina.sim;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import alina.sim.integrator.DormandPrinceIntegrator;
+import alina.sim.integrator.EulerIntegrator;
+import alina.sim.integrator.Integrator;
+import alina.sim.integrator.LinearIntegrator;
+import alina.sim.integrator.RK4Integrator;
+import alina.sim.integrator.VerletIntegrator;
+import alina.sim.strategy.LQRStrategy;
+import alina.sim.strategy.MPCStrategy;
+import alina.sim.strategy.ManualStrategy;
+import alina.sim.strategy.NullStrategy;
+import alina.sim.strategy.SimpleStrategy;
+import alina.sim.strategy.Strategy;
+import alina.sim.strategy.TableStrategy;
+import alina.sim.sweep.GainTuner;
+import alina.sim.sweep.MonteCarlo;
+import alina.sim.sweep.ParameterSweep;
+import alina.sim.sweep.StrategyFactory;
+import alina.sim.sweep.SweepRange;
+
+/**
+ * Cette classe est le point d'entrée du simulateur sans interface graphique (par exemple sur
+ * un serveur sans écran). Contrairement à Main, elle ne charge aucune classe d'AWT, de Swing ou
+ * de MigLayout : les stratégies ne créent leur panneau que lorsque l'interface le demande.
+ * 
+ * Les paramètres sont donnés sur la ligne de commande sous la forme --clé=valeur, ou dans un
+ * fichier de propriétés (--config=fichier) avec les mêmes clés ; la ligne de commande a la priorité.
+ * Clés reconnues (entre parenthèses les valeurs par défaut) :
+ * theta (22 degrés), vAng (0 rad/s), x (0 m), vx (0 m/s), M (5 kg), m (1 kg), l (0.5 m),
+ * precision (1000 pas/ms), control (0 Hz, la fréquence du contrôleur ; 0 pour l'appeler à chaque
+ * évaluation des dérivées), integrator (Euler, Verlet, RK4, DormandPrince ou Linear, avec
+ * band, la demi-largeur en degrés de la bande où le modèle linéarisé est utilisé, 5.7 par défaut, et
+ * absTol et relTol, les tolérances absolue et relative de l'erreur locale de DormandPrince, 1e-9), strategy
+ * (Null, Manual, Simple, LQR, MPC ou Table), kp (-70), kd (-4), force (0 N, pour Manual), qx (1), qvx (1),
+ * qtheta (10), qvAng (1) et r (0.01) (les pondérations de LQR et de MPC), horizon (20 périodes),
+ * period (20 ms), maxForce (50 N), maxTravel (2 m) et budget (200 µs par résolution) pour MPC, table (le fichier
+ * de la table pour Table ; s'il n'existe pas, la stratégie source, LQR par défaut, est tabulée sur une grille de nodes
+ * noeuds par axe, 15 par défaut, couvrant ±thetaRange degrés (30), ±vAngRange rad/s (3), ±xRange m (2) et
+ * ±vxRange m/s (2), puis la table est enregistrée dans ce fichier ; une table existante doit avoir été calculée
+ * pour les mêmes M, m et l, et la source ne peut pas être Table), duration (10000 ms),
+ * sample (20 ms, l'intervalle entre deux lignes du résultat) et output (le fichier du résultat,
+ * ou - pour la sortie standard).
+ * Les conditions d'arrêt (désactivées par défaut, voir Termination) : failAngle (degrés),
+ * track (m, la demi-longueur de la piste), maxVx (m/s), maxVAng (rad/s), settle (s, le temps
+ * pendant lequel le pendule doit rester à moins de settleAngle degrés, 1 par défaut).
+ * Avec log=fichier, la simulation est enregistrée dans un journal binaire (voir InputLog) ; avec
+ * replay=fichier, le journal est rejoué au bit près (les autres clés, sauf output, sont alors ignorées).
+ * Avec record=répertoire, chaque ligne du résultat est aussi enregistrée en binaire (voir ColumnRecorder),
+ * ou dans une trace compressée avec trace=fichier (voir TraceWriter, chunk échantillons par bloc, 4096
+ * par défaut), ou, avec recordInterval (ms de temps simulé), un échantillon pris par la simulation à chaque intervalle ;
+ * avec export=répertoire, un enregistrement est converti en texte dans output, sans rien simuler.
+ * Avec mode=sweep, montecarlo ou tune, des simulations sont lancées en parallèle (threads, par défaut tous
+ * les processeurs) et leur résultat est écrit dans output : sweep (voir ParameterSweep) balaie les intervalles
+ * rangeM, rangem, rangel, rangeTheta (degrés), rangeKp et rangeKd, donnés sous la forme min:max:nombre
+ * (par défaut la seule valeur de M, m, l, theta, kp, kd) ; montecarlo (voir MonteCarlo) lance runs
+ * simulations (1000) avec la graine seed (42), M, m, l et theta tirés uniformément dans rangeM, rangem,
+ * rangel et rangeTheta (min:max) et le bruit angleNoise (rad), xNoise (m) et forceNoise (N), tiré une fois
+ * par noisePeriod (1 ms de temps simulé) ; tune
+ * (voir GainTuner) règle kp et kd à partir de leurs valeurs, avec au plus budget candidats (60).
+ * La stratégie, la méthode d'intégration et la précision (100 pas/ms par défaut) sont les mêmes clés
+ * qu'une simulation ; une nouvelle stratégie est créée pour chaque simulation. Les résultats ne dépendent
+ * pas du nombre de threads, sauf avec MPC, dont les résolutions sont limitées en temps (budget).
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class HeadlessMain {
+
+	/**
+	 * Cette méthode est le point d'entrée de la simulation sans interface graphique.
+	 * 
+	 * @param args les paramètres de la simulation (--clé=valeur)
+	 */
+	public static void main(String[] args) throws IOException {
+		Properties parameters = readParameters(args);
+		if (parameters.getProperty("export") != null) {
+			PrintWriter pw = createOutput(parameters);
+			ColumnRecorder.export(new File(parameters.getProperty("export")), pw);
+			pw.close();
+			return;
+		}
+		if (parameters.getProperty("replay") != null) {
+			replay(parameters);
+			return;
+		}
+		String mode = parameters.getProperty("mode", "simulate");
+		if (!mode.equals("simulate")) {
+			runBatch(mode, parameters);
+			return;
+		}
+
+		Simulation.State state = new Simulation.State();
+		state.theta = Math.toRadians(getDouble(parameters, "theta", 22));
+		state.vAng = getDouble(parameters, "vAng", 0);
+		state.x = getDouble(parameters, "x", 0);
+		state.vx = getDouble(parameters, "vx", 0);
+		state.M = getDouble(parameters, "M", 5);
+		state.m = getDouble(parameters, "m", 1);
+		state.l = getDouble(parameters, "l", 0.5);
+
+		int precision = (int) getDouble(parameters, "precision", 1000);
+		long duration = (long) getDouble(parameters, "duration", 10000);
+		long sample = Math.max(1, (long) getDouble(parameters, "sample", 20));
+
+		Simulation simulation = new Simulation(state, createStrategy(parameters), precision);
+		simulation.setIntegrator(createIntegrator(parameters));
+		simulation.setControlRate(getDouble(parameters, "control", 0));
+		simulation.setTermination(createTermination(parameters));
+
+		SampleSink recorder = null;
+		Simulation.State recorded = new Simulation.State();
+		double recordInterval = getDouble(parameters, "recordInterval", 0);
+		if (parameters.getProperty("record") != null && parameters.getProperty("trace") != null)
+			throw new IllegalArgumentException("record and trace cannot be used together");
+		if (parameters.getProperty("record") != null)
+			recorder = new ColumnRecorder(new File(parameters.getProperty("record")), 1 << 16);
+		if (parameters.getProperty("trace") != null)
+			recorder = new TraceWriter(new File(parameters.getProperty("trace")), (int) getDouble(parameters, "chunk", 4096));
+		if (recorder != null) {
+			if (recordInterval > 0) {
+				simulation.setRecording(new SampleRing((int) Math.min(1 << 24, 2 * sample / recordInterval + 2)),
+						0.001 * recordInterval);
+				//la remise à zéro ajoute le premier échantillon
+				simulation.reset();
+			}
+		}
+		InputLog inputLog = null;
+		if (parameters.getProperty("log") != null) {
+			inputLog = new InputLog(new File(parameters.getProperty("log")));
+			simulation.setInputLog(inputLog);
+		}
+
+		PrintWriter pw = createOutput(parameters);
+
+		long start = System.nanoTime();
+		pw.printf("%12s %12s %12s %12s %12s %12s %12s%n", "t", "x", "vx", "ax", "theta", "vAng", "drift");
+		write(pw, simulation);
+		record(recorder, simulation, recorded);
+		for (long t = 0; t < duration; t += sample) {
+			simulation.solve(Math.min(sample, duration - t));
+			write(pw, simulation);
+			record(recorder, simulation, recorded);
+			if (simulation.state.isFinished())
+				break;
+		}
+		pw.close();
+		if (recorder != null) {
+			recorder.close();
+			if (simulation.getRecording() != null && simulation.getRecording().getDropped() > 0)
+				System.err.printf("%d samples dropped%n", simulation.getRecording().getDropped());
+		}
+		long wall = System.nanoTime() - start;
+		if (inputLog != null) {
+			inputLog.close();
+			if (inputLog.getError() != null)
+				throw inputLog.getError();
+		}
+
+		if (simulation.strategy instanceof MPCStrategy)
+			System.err.println(((MPCStrategy) simulation.strategy).getReport());
+		if (simulation.state.reason != null)
+			System.err.printf("stopped at %.3f s: %s%n", simulation.state.t, simulation.state.reason);
+		System.err.printf("simulated %.3f s in %.3f s (%.1fx real time), %d derivative evaluations, %d controller updates%n",
+				simulation.state.t, wall * 1e-9, simulation.state.t / (wall * 1e-9), simulation.getEvaluations(),
+				simulation.getControlRate() > 0 ? simulation.getUpdates() : simulation.getEvaluations());
+	}
+
+	/**
+	 * Cette méthode lance un balayage des paramètres, une campagne de Monte Carlo ou un réglage des gains,
+	 * puis écrit son résultat.
+	 */
+	private static void runBatch(String mode, final Properties parameters) throws IOException {
+		//la stratégie est créée une première fois pour vérifier les paramètres (et calculer la table s'il le faut)
+		createStrategy(parameters);
+		StrategyFactory strategyFactory = new StrategyFactory() {
+			@Override
+			public Strategy create(double kp, double kd) {
+				Properties gains = new Properties();
+				gains.putAll(parameters);
+				gains.setProperty("kp", Double.toString(kp));
+				gains.setProperty("kd", Double.toString(kd));
+				return createStrategy(gains);
+			}
+		};
+		Supplier<Integrator> integratorFactory = new Supplier<Integrator>() {
+			@Override
+			public Integrator get() {
+				return createIntegrator(parameters);
+			}
+		};
+		ForkJoinPool pool = parameters.getProperty("threads") != null
+				? new ForkJoinPool((int) getDouble(parameters, "threads", 1)) : ForkJoinPool.commonPool();
+		int precision = (int) getDouble(parameters, "precision", 100);
+		double M = getDouble(parameters, "M", 5), m = getDouble(parameters, "m", 1), l = getDouble(parameters, "l", 0.5);
+		double theta = getDouble(parameters, "theta", 22), kp = getDouble(parameters, "kp", -70), kd = getDouble(parameters, "kd", -4);
+		PrintWriter pw = createOutput(parameters);
+
+		switch (mode) {
+		case "sweep":
+			ParameterSweep sweep = new ParameterSweep();
+			sweep.setRange(ParameterSweep.C_MASS, getRange(parameters, "rangeM", M, 1));
+			sweep.setRange(ParameterSweep.P_MASS, getRange(parameters, "rangem", m, 1));
+			sweep.setRange(ParameterSweep.LENGTH, getRange(parameters, "rangel", l, 1));
+			sweep.setRange(ParameterSweep.ANGLE, getRange(parameters, "rangeTheta", theta, Math.PI / 180));
+			sweep.setRange(ParameterSweep.KP, getRange(parameters, "rangeKp", kp, 1));
+			sweep.setRange(ParameterSweep.KD, getRange(parameters, "rangeKd", kd, 1));
+			sweep.setStrategyFactory(strategyFactory);
+			sweep.setIntegratorFactory(integratorFactory);
+			sweep.setPrecision(precision);
+			sweep.setPool(pool);
+			if (parameters.getProperty("duration") != null)
+				sweep.getEvaluator().setDuration((long) getDouble(parameters, "duration", 0));
+			sweep.run().write(pw);
+			break;
+		case "montecarlo":
+			MonteCarlo monteCarlo = new MonteCarlo(new Supplier<Strategy>() {
+				@Override
+				public Strategy get() {
+					return createStrategy(parameters);
+				}
+			});
+			setUniform(monteCarlo, parameters, "rangeM", ParameterSweep.C_MASS, 1);
+			setUniform(monteCarlo, parameters, "rangem", ParameterSweep.P_MASS, 1);
+			setUniform(monteCarlo, parameters, "rangel", ParameterSweep.LENGTH, 1);
+			setUniform(monteCarlo, parameters, "rangeTheta", ParameterSweep.ANGLE, Math.PI / 180);
+			monteCarlo.setNoise(getDouble(parameters, "angleNoise", 0), getDouble(parameters, "xNoise", 0),
+					getDouble(parameters, "forceNoise", 0));
+			monteCarlo.setNoisePeriod(getDouble(parameters, "noisePeriod", 1) / 1000);
+			monteCarlo.setSeed((long) getDouble(parameters, "seed", 42));
+			monteCarlo.setIntegratorFactory(integratorFactory);
+			monteCarlo.setPrecision(precision);
+			monteCarlo.setPool(pool);
+			if (parameters.getProperty("duration") != null)
+				monteCarlo.getEvaluator().setDuration((long) getDouble(parameters, "duration", 0));
+			monteCarlo.run((int) getDouble(parameters, "runs", 1000)).write(pw);
+			break;
+		case "tune":
+			GainTuner tuner = new GainTuner();
+			tuner.setPhysics(M, m, l);
+			tuner.setStart(kp, kd, getDouble(parameters, "kpStep", 10), getDouble(parameters, "kdStep", 1));
+			tuner.setBudget((int) getDouble(parameters, "budget", 60));
+			tuner.setStrategyFactory(strategyFactory);
+			tuner.setIntegratorFactory(integratorFactory);
+			tuner.setPrecision(precision);
+			tuner.setPool(pool);
+			tuner.run().write(pw);
+			break;
+		default:
+			pw.close();
+			throw new IllegalArgumentException("unknown mode " + mode);
+		}
+		pw.close();
+	}
+
+	/**
+	 * Cette méthode lit un intervalle de valeurs donné sous la forme min:max:nombre (ou une seule valeur).
+	 *
+	 * @param scale le facteur appliqué aux bornes (pour convertir des degrés en radians)
+	 */
+	private static SweepRange getRange(Properties parameters, String key, double value, double scale) {
+		String range = parameters.getProperty(key);
+		if (range == null)
+			return new SweepRange(value * scale);
+		String[] parts = range.split(":");
+		if (parts.length == 1)
+			return new SweepRange(Double.parseDouble(parts[0]) * scale);
+		if (parts.length != 3)
+			throw new IllegalArgumentException("expected min:max:count for " + key + ", got " + range);
+		return new SweepRange(Double.parseDouble(parts[0]) * scale, Double.parseDouble(parts[1]) * scale,
+				Integer.parseInt(parts[2]));
+	}
+
+	/**
+	 * Cette méthode change la loi uniforme d'un paramètre de Monte Carlo, donnée sous la forme min:max.
+	 */
+	private static void setUniform(MonteCarlo monteCarlo, Properties parameters, String key, int parameter, double scale) {
+		String range = parameters.getProperty(key);
+		if (range == null)
+			return;
+		String[] parts = range.split(":");
+		if (parts.length != 2)
+			throw new IllegalArgumentException("expected min:max for " + key + ", got " + range);
+		monteCarlo.setUniform(parameter, Double.parseDouble(parts[0]) * scale, Double.parseDouble(parts[1]) * scale);
+	}
+
+	/**
+	 * Cette méthode rejoue un journal (une ligne du résultat est écrite après chaque appel à solve rejoué).
+	 */
+	private static void replay(Properties parameters) throws IOException {
+		InputLog.Replay replay = InputLog.open(new File(parameters.getProperty("replay")));
+		Simulation simulation = replay.getSimulation();
+		PrintWriter pw = createOutput(parameters);
+
+		long start = System.nanoTime();
+		pw.printf("%12s %12s %12s %12s %12s %12s %12s%n", "t", "x", "vx", "ax", "theta", "vAng", "drift");
+		write(pw, simulation);
+		while (replay.next())
+			write(pw, simulation);
+		pw.close();
+		long wall = System.nanoTime() - start;
+
+		if (simulation.state.reason != null)
+			System.err.printf("stopped at %.3f s: %s%n", simulation.state.t, simulation.state.reason);
+		System.err.printf("replayed %d solves, %.3f s in %.3f s (%.1fx real time)%n", replay.getSolves(),
+				simulation.state.t, wall * 1e-9, simulation.state.t / (wall * 1e-9));
+	}
+
+	/**
+	 * Cette méthode enregistre l'état courant, ou vide l'anneau des échantillons pris par la simulation.
+	 */
+	private static void record(SampleSink recorder, Simulation simulation, Simulation.State recorded) throws IOException {
+		if (recorder == null)
+			return;
+		if (simulation.getRecording() != null) {
+			simulation.getRecording().drainTo(recorder, simulation.getResetCount());
+		} else {
+			simulation.copyState(recorded);
+			recorder.append(recorded);
+		}
+	}
+
+	/**
+	 * Cette méthode ouvre le flux du résultat (le fichier output, ou la sortie standard).
+	 */
+	private static PrintWriter createOutput(Properties parameters) throws IOException {
+		String output = parameters.getProperty("output", "-");
+		return output.equals("-")
+				? new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)))
+				: new PrintWriter(new BufferedWriter(new FileWriter(output)));
+	}
+
+	private static void write(PrintWriter pw, Simulation simulation) {
+		Simulation.State state = simulation.state;
+		pw.printf("%12.6f %12.6f %12.6f %12.6f %12.6f %12.6f %12.4e%n", state.t, state.x, state.vx, state.ax,
+				state.theta, state.vAng, simulation.getEnergyDrift());
+	}
+
+	/**
+	 * Cette méthode lit les paramètres du fichier de configuration (s'il y en a un) puis ceux de la ligne de commande.
+	 */
+	private static Properties readParameters(String[] args) throws IOException {
+		Properties parameters = new Properties();
+		Properties commandLine = new Properties();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || arg.indexOf('=') < 0)
+				throw new IllegalArgumentException("expected --key=value, got " + arg);
+			int i = arg.indexOf('=');
+			commandLine.setProperty(arg.substring(2, i), arg.substring(i + 1));
+		}
+
+		String config = commandLine.getProperty("config");
+		if (config != null) {
+			try (Reader reader = new FileReader(config)) {
+				parameters.load(reader);
+			}
+		}
+		parameters.putAll(commandLine);
+		return parameters;
+	}
+
+	private static double getDouble(Properties parameters, String key, double defaultValue) {
+		String value = parameters.getProperty(key);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+	/**
+	 * Cette méthode crée la stratégie demandée (sans son panneau).
+	 */
+	static Strategy createStrategy(Properties parameters) {
+		String name = parameters.getProperty("strategy", "Simple");
+		switch (name) {
+		case "Null":
+		case "NullStrategy":
+			return new NullStrategy();
+		case "Manual":
+		case "ManualStrategy":
+			return new ManualStrategy(getDouble(parameters, "force", 0));
+		case "Simple":
+		case "SimpleStrategy":
+			return new SimpleStrategy(getDouble(parameters, "kp", -70), getDouble(parameters, "kd", -4));
+		case "MPC":
+		case "MPCStrategy":
+			MPCStrategy mpc = new MPCStrategy((int) getDouble(parameters, "horizon", 20),
+					0.001 * getDouble(parameters, "period", 20),
+					new double[] {getDouble(parameters, "qx", 1), getDouble(parameters, "qvx", 1),
+							getDouble(parameters, "qtheta", 10), getDouble(parameters, "qvAng", 1)},
+					getDouble(parameters, "r", 0.01));
+			mpc.setMaxForce(getDouble(parameters, "maxForce", 50));
+			mpc.setMaxTravel(getDouble(parameters, "maxTravel", 2));
+			mpc.setBudget(getDouble(parameters, "budget", 200));
+			return mpc;
+		case "LQR":
+		case "LQRStrategy":
+			return new LQRStrategy(new LQRStrategy.Weights(getDouble(parameters, "qx", 1), getDouble(parameters, "qvx", 1),
+					getDouble(parameters, "qtheta", 10), getDouble(parameters, "qvAng", 1), getDouble(parameters, "r", 0.01)));
+		case "Table":
+		case "TableStrategy":
+			return createTable(parameters);
+		default:
+			throw new IllegalArgumentException("unknown strategy " + name);
+		}
+	}
+
+	/**
+	 * Cette méthode charge la table demandée (projetée en mémoire), ou la calcule et l'enregistre si le fichier n'existe pas.
+	 * Une table calculée pour d'autres paramètres physiques (M, m, l) que ceux de la simulation est refusée.
+	 */
+	private static TableStrategy createTable(Properties parameters) {
+		File file = new File(parameters.getProperty("table", "table.bin"));
+		Simulation.State state = new Simulation.State();
+		state.M = getDouble(parameters, "M", 5);
+		state.m = getDouble(parameters, "m", 1);
+		state.l = getDouble(parameters, "l", 0.5);
+		try {
+			if (file.exists()) {
+				TableStrategy table = TableStrategy.load(file, true);
+				if (!table.matches(state))
+					throw new IllegalArgumentException("table " + file + " was not computed for M=" + state.M
+							+ ", m=" + state.m + ", l=" + state.l + " (delete it or choose another file)");
+				return table;
+			}
+
+			String sourceName = parameters.getProperty("source", "LQR");
+			if (sourceName.equals("Table") || sourceName.equals("TableStrategy"))
+				throw new IllegalArgumentException("a table cannot be computed from another table");
+			Properties sourceParameters = new Properties();
+			sourceParameters.putAll(parameters);
+			sourceParameters.setProperty("strategy", sourceName);
+			Strategy source = createStrategy(sourceParameters);
+
+			int nodes = (int) getDouble(parameters, "nodes", 15);
+			double theta = Math.toRadians(getDouble(parameters, "thetaRange", 30));
+			double vAng = getDouble(parameters, "vAngRange", 3);
+			double x = getDouble(parameters, "xRange", 2);
+			double vx = getDouble(parameters, "vxRange", 2);
+			TableStrategy table = TableStrategy.tabulate(source, state, new TableStrategy.Axis(-theta, theta, nodes),
+					new TableStrategy.Axis(-vAng, vAng, nodes), new TableStrategy.Axis(-x, x, nodes),
+					new TableStrategy.Axis(-vx, vx, nodes));
+			table.save(file);
+			return table;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("cannot read or write table " + file, e);
+		}
+	}
+
+	/**
+	 * Cette méthode crée les conditions d'arrêt demandées.
+	 */
+	static Termination createTermination(Properties parameters) {
+		Termination termination = new Termination();
+		termination.setAngleLimit(Math.toRadians(getDouble(parameters, "failAngle", Double.POSITIVE_INFINITY)));
+		double track = getDouble(parameters, "track", Double.POSITIVE_INFINITY);
+		termination.setTrack(-track, track);
+		termination.setMaxVelocity(getDouble(parameters, "maxVx", Double.POSITIVE_INFINITY),
+				getDouble(parameters, "maxVAng", Double.POSITIVE_INFINITY));
+		termination.setSettle(Math.toRadians(getDouble(parameters, "settleAngle", 1)), Double.POSITIVE_INFINITY,
+				getDouble(parameters, "settle", 0));
+		return termination;
+	}
+
+	/**
+	 * Cette méthode crée la méthode d'intégration demandée par les paramètres (avec la bande de LinearIntegrator).
+	 */
+	private static Integrator createIntegrator(Properties parameters) {
+		Integrator integrator = createIntegrator(parameters.getProperty("integrator", "Euler"));
+		if (integrator instanceof LinearIntegrator)
+			((LinearIntegrator) integrator).setBand(Math.toRadians(getDouble(parameters, "band", Math.toDegrees(0.1))));
+		if (integrator instanceof DormandPrinceIntegrator) {
+			DormandPrinceIntegrator adaptive = (DormandPrinceIntegrator) integrator;
+			double absTol = getDouble(parameters, "absTol", adaptive.getAbsTol());
+			double relTol = getDouble(parameters, "relTol", adaptive.getRelTol());
+			if (!(absTol > 0) || !(relTol >= 0))
+				throw new IllegalArgumentException("invalid tolerances absTol=" + absTol + ", relTol=" + relTol);
+			adaptive.setTolerances(absTol, relTol);
+		}
+		return integrator;
+	}
+
+	/**
+	 * Cette méthode crée la méthode d'intégration demandée.
+	 */
+	static Integrator createIntegrator(String name) {
+		switch (name) {
+		case "Euler":
+		case "EulerIntegrator":
+			return new EulerIntegrator();
+		case "Verlet":
+		case "VerletIntegrator":
+			return new VerletIntegrator();
+		case "RK4":
+		case "RK4Integrator":
+			return new RK4Integrator();
+		case "DormandPrince":
+		case "DormandPrinceIntegrator":
+			return new DormandPrinceIntegrator();
+		case "Linear":
+		case "LinearIntegrator":
+			return new LinearIntegrator();
+		default:
+			throw new IllegalArgumentException("unknown integrator " + name);
+		}
+	}
+}
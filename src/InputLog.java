@@ -0,0 +1,467 @@
+package alina.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.swing.JPanel;
+
+import alina.sim.integrator.DormandPrinceIntegrator;
+import alina.sim.integrator.Integrator;
+import alina.sim.integrator.LinearIntegrator;
+import alina.sim.strategy.Strategy;
+
+/**
+ * Cette classe enregistre dans un fichier binaire tout ce qui est nécessaire pour rejouer
+ * une simulation au bit près : l'état de départ, la précision, la fréquence du contrôleur, l'intervalle
+ * des échantillons enregistrés (voir Simulation.setRecording), la méthode d'intégration (avec sa bande
+ * ou ses tolérances), les conditions
+ * d'arrêt, puis la suite des appels à Simulation.solve et des forces rendues par la stratégie.
+ * Le rejeu (voir open) n'a donc pas besoin de la stratégie d'origine (par exemple les mouvements
+ * du curseur de ManualStrategy) ni du rythme de l'interface graphique, et se déroule aussi vite
+ * que le permet le calcul.
+ *
+ * Après l'en-tête, le fichier est une suite d'enregistrements, chacun commençant par un entier
+ * de longueur variable (varint, 7 bits par octet) dont les deux bits de poids faible donnent le type :
+ * REPEAT (la force précédente est répétée n fois), FORCE (la nouvelle force, codée par le XOR de ses
+ * bits avec ceux de la force précédente, débarrassé de ses zéros de poids faible), SOLVE (un appel
+ * à solve, avec sa durée en ms) et END. Une force constante (ManualStrategy, NullStrategy) ne coûte
+ * ainsi que quelques octets par appel à solve, et une force entière (curseur) deux ou trois octets.
+ * Une force qui varie continûment coûte en revanche environ 6,3 octets (à peine moins qu'un double)
+ * à chaque appel de la stratégie, c'est-à-dire à chaque pas sans fréquence du contrôleur : environ
+ * 6 Mo par seconde simulée à la précision par défaut (1000 pas/ms), 0,7 Mo à 100 pas/ms, mais seulement
+ * 0,5 Ko à 50 Hz et 8 Ko à 1 kHz avec une fréquence du contrôleur. Le journal peut donc être borné
+ * (voir maxBytes) : il s'arrête alors après le dernier appel à solve qui tient dans la limite, et le
+ * rejeu s'arrête au même endroit.
+ *
+ * Le journal est recommencé à chaque remise à zéro de la simulation (voir Simulation.setInputLog).
+ * Ses méthodes doivent être appelées par le thread de la simulation. En cas d'erreur d'écriture,
+ * l'enregistrement s'arrête et l'erreur est gardée (voir getError) : la simulation n'est pas interrompue.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class InputLog {
+	private static final int MAGIC = 0x4350494C, VERSION = 3;
+	private static final int REPEAT = 0, FORCE = 1, SOLVE = 2, END = 3;
+
+	/**
+	 * Le fichier du journal.
+	 */
+	private final File file;
+	private DataOutputStream out;
+	/**
+	 * Les bits de la dernière force écrite, et le nombre de répétitions pas encore écrites.
+	 */
+	private long previous;
+	private long repeats;
+	/**
+	 * Le nombre de forces et d'appels à solve enregistrés depuis le début du journal.
+	 */
+	private long forces, solves;
+	private IOException error;
+	/**
+	 * La taille maximum du journal (en octets), et le marqueur booléen qui indique qu'elle a été atteinte.
+	 */
+	private final long maxBytes;
+	private boolean truncated;
+
+	/**
+	 * Constructeur public d'un journal sans limite de taille. Le journal n'est écrit qu'à partir de l'appel à start.
+	 *
+	 * @param file le fichier du journal
+	 */
+	public InputLog(File file) {
+		this(file, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructeur public. Le journal n'est écrit qu'à partir de l'appel à start.
+	 *
+	 * @param file le fichier du journal
+	 * @param maxBytes la taille maximum du journal (en octets, dépassée au plus des forces d'un appel à solve)
+	 */
+	public InputLog(File file, long maxBytes) {
+		this.file = file;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Cette méthode recommence le journal (le fichier est vidé) en y écrivant l'état courant
+	 * et les réglages de la simulation donnée.
+	 *
+	 * @param simulation la simulation enregistrée
+	 */
+	public void start(Simulation simulation) {
+		close();
+		error = null;
+		truncated = false;
+		previous = 0;
+		repeats = 0;
+		forces = 0;
+		solves = 0;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(simulation.getPrecision());
+			out.writeDouble(simulation.getControlRate());
+			out.writeDouble(simulation.getForce());
+			out.writeLong(simulation.getStepsToUpdate());
+			out.writeDouble(simulation.getRecording() != null ? simulation.getRecordingInterval() : 0);
+			out.writeLong(simulation.getStepsToSample());
+
+			Integrator integrator = simulation.getIntegrator();
+			out.writeUTF(integrator.getClass().getName());
+			out.writeDouble(integrator instanceof LinearIntegrator ? ((LinearIntegrator) integrator).getBand() : Double.NaN);
+			boolean adaptive = integrator instanceof DormandPrinceIntegrator;
+			out.writeDouble(adaptive ? ((DormandPrinceIntegrator) integrator).getAbsTol() : Double.NaN);
+			out.writeDouble(adaptive ? ((DormandPrinceIntegrator) integrator).getRelTol() : Double.NaN);
+
+			Termination termination = simulation.getTermination();
+			out.writeDouble(termination.getAngleLimit());
+			out.writeDouble(termination.getMinX());
+			out.writeDouble(termination.getMaxX());
+			out.writeDouble(termination.getMaxVx());
+			out.writeDouble(termination.getMaxVAng());
+			out.writeDouble(termination.getSettleAngle());
+			out.writeDouble(termination.getSettleRate());
+			out.writeDouble(termination.getSettleTime());
+
+			Simulation.State state = simulation.state;
+			out.writeBoolean(state.started);
+			double[] values = {state.t, state.M, state.m, state.l, state.theta, state.vAng, state.aAng,
+					state.x, state.vx, state.ax, state.y, state.vy, state.ay, state.work};
+			for (double value : values)
+				out.writeDouble(value);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Cette méthode enregistre un appel à Simulation.solve.
+	 *
+	 * @param nb_ms la durée de l'appel (ms)
+	 */
+	public void solve(long nb_ms) {
+		if (out == null)
+			return;
+		//DataOutputStream.size reste à Integer.MAX_VALUE au-delà de 2 Go
+		if (out.size() >= maxBytes) {
+			truncated = true;
+			close();
+			return;
+		}
+		try {
+			flushRepeats();
+			writeVarLong(out, nb_ms << 2 | SOLVE);
+			solves++;
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Cette méthode enregistre une force rendue par la stratégie.
+	 *
+	 * @param force la force (N)
+	 */
+	public void force(double force) {
+		if (out == null)
+			return;
+		forces++;
+		long bits = Double.doubleToRawLongBits(force);
+		long xor = bits ^ previous;
+		if (xor == 0) {
+			repeats++;
+			return;
+		}
+		try {
+			flushRepeats();
+			int zeros = Long.numberOfTrailingZeros(xor);
+			writeVarLong(out, zeros << 2 | FORCE);
+			writeVarLong(out, xor >>> zeros);
+			previous = bits;
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private void flushRepeats() throws IOException {
+		if (repeats > 0) {
+			writeVarLong(out, repeats << 2 | REPEAT);
+			repeats = 0;
+		}
+	}
+
+	/**
+	 * Cette méthode termine le journal et ferme le fichier.
+	 */
+	public void close() {
+		if (out == null)
+			return;
+		try {
+			flushRepeats();
+			writeVarLong(out, END);
+			out.close();
+		} catch (IOException e) {
+			error = e;
+		}
+		out = null;
+	}
+
+	private void fail(IOException e) {
+		error = e;
+		try {
+			out.close();
+		} catch (IOException ignored) {
+		}
+		out = null;
+	}
+
+	/**
+	 * Cette méthode retourne l'erreur qui a arrêté l'enregistrement.
+	 * @return l'erreur, ou null si le journal est écrit normalement
+	 */
+	public IOException getError() {
+		return error;
+	}
+
+	/**
+	 * Cette méthode permet de savoir si le journal s'est arrêté parce qu'il avait atteint sa taille maximum.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de forces enregistrées depuis le début du journal.
+	 */
+	public long getForces() {
+		return forces;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'appels à solve enregistrés depuis le début du journal.
+	 */
+	public long getSolves() {
+		return solves;
+	}
+
+	/**
+	 * Cette méthode écrit un entier positif sur un nombre variable d'octets (7 bits par octet,
+	 * le bit de poids fort indiquant qu'un autre octet suit).
+	 */
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Cette méthode lit un entier écrit par writeVarLong.
+	 */
+	static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("malformed varint");
+	}
+
+	/**
+	 * Cette méthode ouvre un journal pour le rejouer.
+	 *
+	 * @param file le fichier du journal
+	 * @return le rejeu, dont la simulation est dans l'état enregistré au début du journal
+	 */
+	public static Replay open(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			return new Replay(in);
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Cette classe interne rejoue un journal : chaque appel à next refait l'appel à solve suivant,
+	 * avec une stratégie qui rend les forces enregistrées au lieu de les calculer.
+	 */
+	public static class Replay {
+		private final DataInputStream in;
+		private final Simulation simulation;
+		private long previous, repeats;
+		private long solves;
+		private boolean ended;
+
+		private Replay(DataInputStream in) throws IOException {
+			this.in = in;
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("not an input log");
+			int precision = in.readInt();
+			double controlRate = in.readDouble();
+			double force = in.readDouble();
+			long stepsToUpdate = in.readLong();
+			double recordingInterval = in.readDouble();
+			long stepsToSample = in.readLong();
+
+			String integratorName = in.readUTF();
+			double band = in.readDouble();
+			double absTol = in.readDouble(), relTol = in.readDouble();
+			//le nom de la classe est enregistré, l'intégrateur est créé comme par HeadlessMain
+			Integrator integrator;
+			try {
+				integrator = HeadlessMain.createIntegrator(integratorName.substring(integratorName.lastIndexOf('.') + 1));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("unknown integrator " + integratorName, e);
+			}
+			if (integrator instanceof LinearIntegrator)
+				((LinearIntegrator) integrator).setBand(band);
+			if (integrator instanceof DormandPrinceIntegrator)
+				((DormandPrinceIntegrator) integrator).setTolerances(absTol, relTol);
+
+			Termination termination = new Termination();
+			termination.setAngleLimit(in.readDouble());
+			termination.setTrack(in.readDouble(), in.readDouble());
+			termination.setMaxVelocity(in.readDouble(), in.readDouble());
+			termination.setSettle(in.readDouble(), in.readDouble(), in.readDouble());
+
+			Simulation.State state = new Simulation.State();
+			state.started = in.readBoolean();
+			state.t = in.readDouble();
+			state.M = in.readDouble();
+			state.m = in.readDouble();
+			state.l = in.readDouble();
+			state.theta = in.readDouble();
+			state.vAng = in.readDouble();
+			state.aAng = in.readDouble();
+			state.x = in.readDouble();
+			state.vx = in.readDouble();
+			state.ax = in.readDouble();
+			state.y = in.readDouble();
+			state.vy = in.readDouble();
+			state.ay = in.readDouble();
+			state.work = in.readDouble();
+
+			simulation = new Simulation(state, new ReplayStrategy(), precision);
+			simulation.setIntegrator(integrator);
+			simulation.setTermination(termination);
+			simulation.setControlRate(controlRate);
+			//l'enregistrement découpe les appels à la méthode d'intégration : il fait partie du rejeu
+			if (recordingInterval > 0)
+				simulation.setRecording(new SampleRing(1 << 12), recordingInterval);
+			simulation.restoreController(force, stepsToUpdate, stepsToSample);
+		}
+
+		/**
+		 * Cette méthode refait l'appel à solve suivant du journal.
+		 *
+		 * @return vrai si un appel a été refait, faux à la fin du journal (qui est alors fermé)
+		 */
+		public boolean next() throws IOException {
+			if (ended)
+				return false;
+			long head;
+			try {
+				head = readVarLong(in);
+			} catch (EOFException e) {
+				//journal interrompu (par exemple par l'arrêt du programme) : on rejoue ce qui a été écrit
+				head = END;
+			}
+			if ((head & 3) == END) {
+				ended = true;
+				in.close();
+				return false;
+			}
+			if ((head & 3) != SOLVE)
+				throw new IOException("input log out of sync: expected a solve record");
+			simulation.solve(head >>> 2);
+			solves++;
+			if (repeats != 0)
+				throw new IOException("input log out of sync: " + repeats + " forces left after a solve");
+			return true;
+		}
+
+		/**
+		 * Cette méthode rejoue tout le journal.
+		 */
+		public void run() throws IOException {
+			while (next())
+				;
+		}
+
+		/**
+		 * Cette méthode retourne la simulation rejouée.
+		 */
+		public Simulation getSimulation() {
+			return simulation;
+		}
+
+		/**
+		 * Cette méthode retourne le nombre d'appels à solve rejoués.
+		 */
+		public long getSolves() {
+			return solves;
+		}
+
+		private double nextForce() throws IOException {
+			if (repeats > 0) {
+				repeats--;
+				return Double.longBitsToDouble(previous);
+			}
+			long head = readVarLong(in);
+			switch ((int) (head & 3)) {
+			case REPEAT:
+				repeats = (head >>> 2) - 1;
+				break;
+			case FORCE:
+				previous ^= readVarLong(in) << (head >>> 2);
+				break;
+			default:
+				throw new IOException("input log out of sync: expected a force record");
+			}
+			return Double.longBitsToDouble(previous);
+		}
+
+		/**
+		 * Cette classe interne est la stratégie du rejeu : elle rend les forces du journal, dans l'ordre.
+		 */
+		private class ReplayStrategy implements Strategy {
+			private JPanel panel;
+
+			@Override
+			public void reset() {
+			}
+
+			@Override
+			public double react(Simulation.State state) {
+				try {
+					return nextForce();
+				} catch (IOException e) {
+					throw new IllegalStateException("cannot read the input log", e);
+				}
+			}
+
+			@Override
+			public JPanel getPanel() {
+				if (panel == null)
+					panel = new JPanel();
+				return panel;
+			}
+		}
+	}
+}
@@ -1,5 +1,13 @@
 package alina.sim;
 
+import alina.sim.integrator.DormandPrinceIntegrator;
+import alina.sim.integrator.EulerIntegrator;
+import alina.sim.integrator.Integrator;
+import alina.sim.integrator.LinearIntegrator;
+import alina.sim.integrator.RK4Integrator;
+import alina.sim.integrator.VerletIntegrator;
+import alina.sim.strategy.LQRStrategy;
+import alina.sim.strategy.MPCStrategy;
 import alina.sim.strategy.ManualStrategy;
 import alina.sim.strategy.NullStrategy;
 import alina.sim.strategy.SimpleStrategy;
@@ -20,6 +28,7 @@ import java.awt.event.WindowEvent;
  * Cette classe est la classe principale avec laquelle démarre le projet. 
  * A l'exécution de la méthode main(), le système de fenêtres imbriquées est créé
  * et l'utilisateur peut commencer à interagir avec l'interface graphique.
+ * Pour lancer une simulation sans interface graphique, voir HeadlessMain.
  * 
  * @author alina petrescu
  * @version 2.0
@@ -31,13 +40,17 @@ public class Main {
 	 */
     public static void startInterface() {
     	//Tableau avec les stratégies disponibles à l'exécution
-    	Strategy[] strategies = {new NullStrategy(), new ManualStrategy(), new SimpleStrategy()};
+    	Strategy[] strategies = {new NullStrategy(), new ManualStrategy(), new SimpleStrategy(), new LQRStrategy(),
+    			new MPCStrategy()};
+    	//Tableau avec les méthodes d'intégration disponibles à l'exécution
+    	Integrator[] integrators = {new EulerIntegrator(), new VerletIntegrator(), new RK4Integrator(), new DormandPrinceIntegrator(),
+    			new LinearIntegrator()};
     	//Container de premier niveau (fenêtre principale)
         JFrame frame = new JFrame();
         //Titre de la fenêtre principale
         frame.setTitle("Simulation d'un pendule inversé");
         //Panneau personnalisé qui permet l'agencement des éléments graphiques
-        MainPanel panel = new MainPanel(strategies);
+        final MainPanel panel = new MainPanel(strategies, integrators);
         //On place le panneau personnalisé dans la zone active de la fenêtre principale
         frame.setContentPane(panel);
         //On impose que la JVM s'arrête à la fermeture de la fenêtre principale
@@ -46,7 +59,12 @@ public class Main {
         frame.addWindowListener(new WindowAdapter() {
         	@Override
         	public void windowClosing(WindowEvent we) {
-        		MainPanel.getOutputFiles().close();
+        		//les derniers échantillons de l'anneau sont écrits avant la fermeture des fichiers texte
+        		panel.shutdown();
+        		OutputFiles outputFiles = MainPanel.getOutputFiles();
+        		outputFiles.close();
+        		if (outputFiles.getDropped() > 0)
+        			System.err.printf("%d samples dropped from the output files%n", outputFiles.getDropped());
         	}
 		});
         
@@ -2,85 +2,477 @@ package alina.sim;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
 
 /**
  * Cette classe permet de stocker dans des fichiers texte les résultats du calcul numérique
  * obtenus durant la simulation, à savoir: la position, la vitesse et l'accélération du chariot,
- * ainsi que l'angle theta pour chaque moment courant. 
- * 
+ * ainsi que l'angle theta et la dérive de l'énergie pour chaque moment courant. Les échantillons
+ * sont ajoutés un par un (update) ou par blocs (append, par exemple depuis un SampleRing).
+ *
+ * Les fichiers sont écrits par un thread à part, pour qu'un disque lent ne bloque pas le thread
+ * qui appelle update (celui de l'interface graphique) : les valeurs sont regroupées par lots de
+ * batchSize échantillons, gardés dans des tableaux de doubles, puis transmis au thread d'écriture
+ * par une file de taille bornée. Le formatage des nombres est fait par ce thread, sans String.format.
+ * Lorsque la file est pleine, le comportement dépend de la politique choisie (voir Backpressure).
+ *
  * @author alina petrescu
  * @version 1.0
  */
 public class OutputFiles {
+	/**
+	 * Les politiques possibles lorsque le thread d'écriture ne suit pas (la file des lots est pleine).
+	 */
+	public enum Backpressure {
+		/**
+		 * Le thread appelant attend qu'un lot soit écrit (aucun échantillon n'est perdu).
+		 */
+		BLOCK,
+		/**
+		 * Le lot en cours est abandonné (les échantillons abandonnés sont comptés).
+		 */
+		DROP,
+		/**
+		 * Le lot en cours est gardé et un échantillon sur deux en est retiré : les fichiers couvrent
+		 * toujours toute la simulation, avec une résolution moindre pendant le retard.
+		 */
+		COALESCE
+	}
 
+	/**
+	 * Le nombre d'échantillons d'un lot et le nombre de lots de la file, par défaut.
+	 */
+	public static final int BATCH_SIZE = 64, QUEUE_CAPACITY = 64;
 	/**
 	 * Le nombre de fichiers texte à créer.
 	 */
-	private final int SIZE = 4;
+	private final int SIZE = 5;
 	/**
-	 * La liste d'objets PrintWriter à connecter aux fichiers texte.
+	 * La liste des fichiers texte ouverts en écriture (utilisée seulement par le thread d'écriture).
 	 */
-	private List<PrintWriter> pwList = new ArrayList<>(SIZE);
+	private List<Writer> writers = new ArrayList<>(SIZE);
 	/**
 	 * Le tableau avec les noms des fichiers texte.
 	 */
-	private String[] fileNames = {"xFile", "vxFile", "axFile", "thetaFile"};
+	private String[] fileNames = {"xFile", "vxFile", "axFile", "thetaFile", "driftFile"};
+	/**
+	 * Les colonnes (dans l'ordre de ColumnRecorder.CHANNELS) du temps et des valeurs de chaque fichier,
+	 * pour les échantillons ajoutés par blocs (voir append).
+	 */
+	private static final int TIME_COLUMN = 0;
+	private static final int[] COLUMNS = {1, 2, 3, 4, 11};
 
 	/**
-	 * Constructeur public SANS arguments qui associe à chaque fichier 
-	 * texte à créer un objet de type PrintWriter qui permet au 
-	 * programme d'y stocker les données voulues.
+	 * Un lot d'échantillons : le temps et les valeurs des fichiers, colonne par colonne.
+	 */
+	private static class Batch {
+		final double[] t;
+		final double[][] values;
+		int count;
+
+		Batch(int size, int files) {
+			t = new double[size];
+			values = new double[files][size];
+		}
+	}
+
+	/**
+	 * Les marques transmises au thread d'écriture pour recommencer les fichiers ou les fermer.
+	 */
+	private static final Batch RESET = new Batch(0, 0), CLOSE = new Batch(0, 0);
+
+	private final Backpressure policy;
+	private final int batchSize;
+	/**
+	 * La file des lots à écrire et les lots déjà écrits, réutilisés.
+	 */
+	private final BlockingQueue<Batch> queue;
+	private final BlockingQueue<Batch> free;
+	/**
+	 * Le lot en cours de remplissage (utilisé seulement par le thread appelant).
+	 */
+	private Batch pending;
+	private final Thread writerThread;
+	private boolean closed;
+	/**
+	 * Le nombre d'échantillons transmis au thread d'écriture, abandonnés et écrits depuis la création.
+	 * Chaque compteur n'est modifié que par un seul thread.
+	 */
+	private volatile long queued, dropped, written;
+
+	/**
+	 * Le formatage des nombres (comme String.format avec la langue par défaut) : le séparateur décimal,
+	 * le chiffre zéro et la fin de ligne.
+	 */
+	private final char decimalSeparator, zeroDigit;
+	private final String lineSeparator = System.lineSeparator();
+	private final StringBuilder line = new StringBuilder(256);
+	private char[] chars = new char[1 << 12];
+
+	/**
+	 * Constructeur public SANS arguments qui associe à chaque fichier
+	 * texte à créer un objet de type Writer qui permet au
+	 * programme d'y stocker les données voulues (politique COALESCE, taille
+	 * des lots et de la file par défaut).
 	 */
 	public OutputFiles() {
+		this(Backpressure.COALESCE, BATCH_SIZE, QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Constructeur public qui crée les fichiers texte et démarre le thread d'écriture.
+	 *
+	 * @param policy la politique lorsque la file est pleine
+	 * @param batchSize le nombre d'échantillons d'un lot
+	 * @param queueCapacity le nombre maximum de lots en attente d'écriture
+	 */
+	public OutputFiles(Backpressure policy, int batchSize, int queueCapacity) {
+		this.policy = policy;
+		this.batchSize = Math.max(2, batchSize);
+		queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		free = new ArrayBlockingQueue<>(Math.max(1, queueCapacity) + 2);
+		pending = new Batch(this.batchSize, SIZE);
+
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+		decimalSeparator = symbols.getDecimalSeparator();
+		zeroDigit = symbols.getZeroDigit();
+
+		for(int i=0; i < SIZE; i++)
+			writers.add(null);
+		openFiles();
+
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "OutputFiles");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Cette méthode (re)crée les fichiers texte vides.
+	 */
+	private void openFiles() {
 		for(int i=0; i < SIZE; i++) {
+			closeFile(i);
 			try {
-				pwList.add(i, new PrintWriter(new FileWriter(new File(fileNames[i]+".txt"))));
+				writers.set(i, new BufferedWriter(new FileWriter(new File(fileNames[i]+".txt")), 1 << 16));
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
 	}
-	
+
+	private void closeFile(int i) {
+		Writer writer = writers.get(i);
+		if (writer == null)
+			return;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		writers.set(i, null);
+	}
+
 	/**
-	 *  Cette méthode écrit dans chaque fichier texte une nouvelle ligne
+	 *  Cette méthode ajoute à chaque fichier texte une nouvelle ligne
 	 *  contenant la valeur correspondante de l'état courant de la simulation
 	 *  et le temps représentant le moment de l'appel de la méthode.
-	 * 
+	 *  Les valeurs sont seulement recopiées dans le lot en cours ; elles sont écrites plus tard
+	 *  par le thread d'écriture.
+	 *
 	 * @param state l'état courant de la simulation
 	 */
 	public void update(Simulation.State state) {
-		double[] states = {state.x, state.vx, state.ax, state.theta};
-		for(int i=0; i < pwList.size(); i++) {
-			pwList.get(i).printf("%10.3f     %10.3f%n", state.t, states[i]);
+		if (closed)
+			return;
+		Batch batch = pending;
+		int k = batch.count++;
+		batch.t[k] = state.t;
+		batch.values[0][k] = state.x;
+		batch.values[1][k] = state.vx;
+		batch.values[2][k] = state.ax;
+		batch.values[3][k] = state.theta;
+		batch.values[4][k] = state.drift;
+		if (batch.count == batchSize)
+			submit();
+	}
+
+	/**
+	 * Cette méthode ajoute plusieurs échantillons à la fois, donnés colonne par colonne dans l'ordre
+	 * de ColumnRecorder.CHANNELS (par exemple ceux d'un SampleRing), comme le ferait update pour chacun.
+	 *
+	 * @param values les valeurs (values[c][from + k] est la valeur de la colonne c pour le k-ième échantillon)
+	 * @param from l'indice du premier échantillon dans les tableaux
+	 * @param n le nombre d'échantillons
+	 */
+	public void append(double[][] values, int from, int n) {
+		int end = from + n;
+		while (from < end && !closed) {
+			Batch batch = pending;
+			int count = Math.min(end - from, batchSize - batch.count);
+			System.arraycopy(values[TIME_COLUMN], from, batch.t, batch.count, count);
+			for (int i = 0; i < SIZE; i++)
+				System.arraycopy(values[COLUMNS[i]], from, batch.values[i], batch.count, count);
+			batch.count += count;
+			from += count;
+			if (batch.count == batchSize)
+				submit();
 		}
 	}
-	
+
 	/**
-	 * Cette méthode permet de remplacer les fichiers texte ouverts en écriture
-	 * par des nouveaux fichiers vides et dans lesquels l'écriture commence à 
-	 * nouveau tout au début.
+	 * Cette méthode transmet le lot en cours au thread d'écriture, selon la politique choisie
+	 * si la file est pleine.
 	 */
-	public void reset() {
-		for(int i=0; i < pwList.size(); i++) {
-			pwList.get(i).close();
+	private void submit() {
+		Batch batch = pending;
+		if (batch.count == 0)
+			return;
+		int count = batch.count;
+		if (policy == Backpressure.BLOCK) {
+			putUninterruptibly(batch);
+		} else if (!queue.offer(batch)) {
+			if (policy == Backpressure.DROP) {
+				batch.count = 0;
+				dropped += count;
+			} else {
+				//on garde les échantillons pairs, le lot a de nouveau de la place
+				int kept = (count + 1) / 2;
+				for (int k = 1; k < kept; k++) {
+					batch.t[k] = batch.t[2 * k];
+					for (double[] values : batch.values)
+						values[k] = values[2 * k];
+				}
+				batch.count = kept;
+				dropped += count - kept;
+			}
+			return;
+		}
+		queued += count;
+		Batch next = free.poll();
+		pending = next != null ? next : new Batch(batchSize, SIZE);
+	}
+
+	private void putUninterruptibly(Batch batch) {
+		boolean interrupted = false;
+		while (true) {
 			try {
-				pwList.set(i, new PrintWriter(new FileWriter(new File(fileNames[i]+".txt"))));
-			} catch (Exception e) {
+				queue.put(batch);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Cette méthode est exécutée par le thread d'écriture : elle écrit les lots de la file,
+	 * et vide les tampons des fichiers lorsque la file est vide.
+	 */
+	private void writeLoop() {
+		while (true) {
+			Batch batch;
+			try {
+				batch = queue.take();
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (batch == CLOSE)
+				break;
+			if (batch == RESET) {
+				openFiles();
+				continue;
+			}
+			write(batch);
+			written += batch.count;
+			batch.count = 0;
+			free.offer(batch);
+			if (queue.isEmpty())
+				flushFiles();
+		}
+		for(int i=0; i < SIZE; i++)
+			closeFile(i);
+	}
+
+	/**
+	 * Cette méthode écrit un lot dans les fichiers, avec le format "%10.3f     %10.3f%n".
+	 */
+	private void write(Batch batch) {
+		for(int i=0; i < SIZE; i++) {
+			Writer writer = writers.get(i);
+			if (writer == null)
+				continue;
+			double[] values = batch.values[i];
+			line.setLength(0);
+			for (int k = 0; k < batch.count; k++) {
+				appendFixed(line, batch.t[k], 10, 3);
+				line.append("     ");
+				appendFixed(line, values[k], 10, 3);
+				line.append(lineSeparator);
+			}
+			int length = line.length();
+			if (chars.length < length)
+				chars = new char[2 * length];
+			line.getChars(0, length, chars, 0);
+			try {
+				writer.write(chars, 0, length);
+			} catch (IOException e) {
 				e.printStackTrace();
+				closeFile(i);
+			}
+		}
+	}
+
+	private void flushFiles() {
+		for(int i=0; i < SIZE; i++) {
+			Writer writer = writers.get(i);
+			if (writer == null)
+				continue;
+			try {
+				writer.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+				closeFile(i);
+			}
+		}
+	}
+
+	private static final double[] POWERS_OF_TEN = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6};
+	private static final long[] LONG_POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000};
+
+	/**
+	 * Cette méthode ajoute un nombre avec le format "%width.decimalsf" de String.format. Comme Formatter,
+	 * elle arrondit l'écriture décimale la plus courte du nombre (celle de Double.toString), les cas à
+	 * égale distance étant arrondis en s'éloignant de zéro. Le calcul est fait sur des entiers ; seuls les
+	 * nombres très grands ou non finis, et les valeurs proches d'une moitié, passent par un calcul plus lent.
+	 *
+	 * @param sb la chaîne à laquelle le nombre est ajouté
+	 * @param value le nombre
+	 * @param width la largeur minimum (le nombre est complété à gauche par des espaces)
+	 * @param decimals le nombre de chiffres après la virgule (entre 0 et 6)
+	 */
+	void appendFixed(StringBuilder sb, double value, int width, int decimals) {
+		double magnitude = Math.abs(value);
+		double scaled = magnitude * POWERS_OF_TEN[decimals];
+		if (!(scaled < 1e12)) {
+			sb.append(String.format("%" + width + "." + decimals + "f", value));
+			return;
+		}
+		long units = (long) scaled;
+		double fraction = scaled - units;
+		if (Math.abs(fraction - 0.5) < 1e-3)
+			units = BigDecimal.valueOf(magnitude).setScale(decimals, RoundingMode.HALF_UP).unscaledValue().longValue();
+		else if (fraction > 0.5)
+			units++;
+
+		long power = LONG_POWERS_OF_TEN[decimals];
+		long integer = units / power, fractional = units % power;
+		int integerDigits = 1;
+		for (long p = 10; p <= integer; p *= 10)
+			integerDigits++;
+		//Formatter garde le signe d'un nombre négatif arrondi à zéro (et de -0.0)
+		boolean negative = Double.doubleToRawLongBits(value) < 0;
+		int length = (negative ? 1 : 0) + integerDigits + (decimals > 0 ? decimals + 1 : 0);
+		for (int k = length; k < width; k++)
+			sb.append(' ');
+		if (negative)
+			sb.append('-');
+		int start = sb.length();
+		sb.setLength(start + integerDigits);
+		for (int k = start + integerDigits - 1; k >= start; k--) {
+			sb.setCharAt(k, (char) (zeroDigit + integer % 10));
+			integer /= 10;
+		}
+		if (decimals > 0) {
+			sb.append(decimalSeparator);
+			start = sb.length();
+			sb.setLength(start + decimals);
+			for (int k = start + decimals - 1; k >= start; k--) {
+				sb.setCharAt(k, (char) (zeroDigit + fractional % 10));
+				fractional /= 10;
 			}
 		}
 	}
-	
+
+	/**
+	 * Cette méthode permet de remplacer les fichiers texte ouverts en écriture
+	 * par des nouveaux fichiers vides et dans lesquels l'écriture commence à
+	 * nouveau tout au début. Les lots pas encore écrits sont abandonnés (sans être comptés).
+	 */
+	public void reset() {
+		if (closed)
+			return;
+		pending.count = 0;
+		Batch batch;
+		while ((batch = queue.poll()) != null) {
+			batch.count = 0;
+			free.offer(batch);
+		}
+		putUninterruptibly(RESET);
+	}
+
 	/**
-	 * Cette méthode permet de fermer les canaux de communication entre 
-	 * le programme et les fichiers texte ouverts en écriture.
+	 * Cette méthode permet de fermer les canaux de communication entre
+	 * le programme et les fichiers texte ouverts en écriture, après l'écriture
+	 * des échantillons en attente (au plus une seconde d'attente).
 	 */
 	public void close() {
-		for(int i=0; i < pwList.size(); i++) {
-			pwList.get(i).close();
+		if (closed)
+			return;
+		if (pending.count > 0) {
+			queued += pending.count;
+			putUninterruptibly(pending);
 		}
+		putUninterruptibly(CLOSE);
+		closed = true;
+		try {
+			writerThread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Cette méthode retourne la politique appliquée lorsque la file des lots est pleine.
+	 */
+	public Backpressure getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons transmis au thread d'écriture.
+	 */
+	public long getQueued() {
+		return queued;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons abandonnés parce que la file était pleine.
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons écrits dans les fichiers.
+	 */
+	public long getWritten() {
+		return written;
 	}
-}
\ No newline at end of file
+}
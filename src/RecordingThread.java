@@ -0,0 +1,125 @@
+package alina.sim;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cette classe correspond au thread qui vide l'anneau des échantillons de la simulation (voir SampleRing)
+ * dans un enregistrement (fichiers texte, colonnes, trace...), en dehors du thread de l'interface
+ * graphique : une écriture lente sur le disque ne ralentit donc ni l'affichage ni la simulation
+ * (l'anneau abandonne les échantillons s'il est plein).
+ *
+ * L'enregistrement n'est utilisé que par ce thread, sauf dans les méthodes drain et execute, appelées
+ * par un autre thread lorsqu'il a besoin d'un enregistrement à jour (elles s'excluent mutuellement
+ * avec le vidage périodique). Le déroulement enregistré (le numéro de la remise à zéro de la simulation)
+ * est choisi par l'interface graphique avec setRun : l'enregistrement est alors remis à zéro.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class RecordingThread extends Thread {
+	private final SampleRing ring;
+	private final SampleSink sink;
+	/**
+	 * La durée entre deux vidages de l'anneau (ns).
+	 */
+	private final long period;
+	/**
+	 * Le déroulement à enregistrer et le déroulement enregistré (utilisé seulement sous le verrou).
+	 */
+	private volatile long run = -1;
+	private long recordedRun = -1;
+	private volatile boolean stopped;
+	/**
+	 * Marqueur booléen qui indique que l'enregistrement a échoué (il est alors abandonné).
+	 */
+	private volatile boolean failed;
+
+	/**
+	 * Constructeur public. Le thread doit ensuite être démarré avec start().
+	 *
+	 * @param ring l'anneau rempli par la simulation
+	 * @param sink l'enregistrement (qui ne doit plus être utilisé directement par les autres threads)
+	 * @param period la durée entre deux vidages de l'anneau (ms)
+	 */
+	public RecordingThread(SampleRing ring, SampleSink sink, long period) {
+		super("recording");
+		this.ring = ring;
+		this.sink = sink;
+		this.period = period * 1000000L;
+		setDaemon(true);
+	}
+
+	@Override
+	public void run() {
+		while (!stopped) {
+			drain();
+			LockSupport.parkNanos(this, period);
+		}
+	}
+
+	/**
+	 * Cette méthode vide l'anneau dans l'enregistrement (après l'avoir remis à zéro si le déroulement
+	 * enregistré a changé). Elle est appelée périodiquement par ce thread, mais peut l'être par un autre.
+	 */
+	public synchronized void drain() {
+		if (failed)
+			return;
+		try {
+			long r = run;
+			if (r != recordedRun) {
+				sink.reset();
+				recordedRun = r;
+			}
+			ring.drainTo(sink, r);
+		} catch (IOException e) {
+			e.printStackTrace();
+			failed = true;
+		}
+	}
+
+	/**
+	 * Cette méthode vide l'anneau, puis exécute une commande qui utilise l'enregistrement
+	 * (sans que ce thread ne l'utilise en même temps).
+	 *
+	 * @param command la commande
+	 */
+	public synchronized void execute(Runnable command) {
+		drain();
+		command.run();
+	}
+
+	/**
+	 * Cette méthode choisit le déroulement enregistré : les échantillons des déroulements précédents
+	 * sont abandonnés, et l'enregistrement est remis à zéro au prochain vidage.
+	 *
+	 * @param run le numéro de la remise à zéro de la simulation (voir Simulation.getResetCount)
+	 */
+	public void setRun(long run) {
+		this.run = run;
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Cette méthode arrête le thread, vide une dernière fois l'anneau et ferme l'enregistrement.
+	 */
+	public void shutdown() {
+		stopped = true;
+		LockSupport.unpark(this);
+		try {
+			join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sink.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,131 @@
+package alina.sim;
+
+import java.io.IOException;
+
+/**
+ * Cette classe transmet sans verrou les échantillons enregistrés par la simulation (voir
+ * Simulation.setRecording) d'un thread producteur (celui de la simulation) à un thread consommateur
+ * (par exemple l'interface graphique), qui les vide par blocs dans un enregistrement (SampleSink).
+ *
+ * Les échantillons sont stockés en colonnes (une par grandeur de ColumnRecorder.CHANNELS) dans des
+ * tableaux alloués une fois pour toutes, utilisés comme un anneau : ajouter un échantillon ne coûte
+ * que quelques écritures en mémoire, et vider l'anneau ne fait qu'un ou deux appels à
+ * SampleSink.append par déroulement. Si l'anneau est plein, l'échantillon est abandonné et compté
+ * (la simulation n'attend jamais le consommateur).
+ *
+ * Chaque échantillon porte le numéro de la remise à zéro (Simulation.getResetCount) pendant laquelle
+ * il a été pris, pour que le consommateur ne mélange pas les échantillons de deux déroulements.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class SampleRing {
+	/**
+	 * Le nombre d'échantillons que peut contenir l'anneau (une puissance de 2).
+	 */
+	public final int capacity;
+	private final int mask;
+	private final double[][] columns = new double[ColumnRecorder.WIDTH][];
+	private final long[] runs;
+	/**
+	 * Le nombre d'échantillons ajoutés (écrit seulement par le producteur) et le nombre
+	 * d'échantillons retirés (écrit seulement par le consommateur) depuis la création.
+	 */
+	private volatile long head, tail;
+	private volatile long dropped;
+
+	/**
+	 * Constructeur public.
+	 *
+	 * @param capacity le nombre minimum d'échantillons (arrondi à la puissance de 2 supérieure)
+	 */
+	public SampleRing(int capacity) {
+		this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = this.capacity - 1;
+		for (int c = 0; c < columns.length; c++)
+			columns[c] = new double[this.capacity];
+		runs = new long[this.capacity];
+	}
+
+	/**
+	 * Cette méthode ajoute un échantillon (appelée par le thread de la simulation).
+	 *
+	 * @param state l'état enregistré
+	 * @param drift la dérive de l'énergie de cet état
+	 * @param run le numéro de la remise à zéro de la simulation
+	 * @return vrai si l'échantillon a été ajouté, faux si l'anneau est plein
+	 */
+	public boolean add(Simulation.State state, double drift, long run) {
+		long h = head;
+		if (h - tail >= capacity) {
+			dropped++;
+			return false;
+		}
+		int i = (int) h & mask;
+		final double[][] columns = this.columns;
+		columns[0][i] = state.t;
+		columns[1][i] = state.x;
+		columns[2][i] = state.vx;
+		columns[3][i] = state.ax;
+		columns[4][i] = state.theta;
+		columns[5][i] = state.vAng;
+		columns[6][i] = state.aAng;
+		columns[7][i] = state.y;
+		columns[8][i] = state.vy;
+		columns[9][i] = state.ay;
+		columns[10][i] = state.work;
+		columns[11][i] = drift;
+		columns[12][i] = state.M;
+		columns[13][i] = state.m;
+		columns[14][i] = state.l;
+		runs[i] = run;
+		//l'écriture volatile publie les valeurs ci-dessus au consommateur
+		head = h + 1;
+		return true;
+	}
+
+	/**
+	 * Cette méthode vide l'anneau dans un enregistrement (appelée par le thread consommateur).
+	 * Les échantillons d'une remise à zéro antérieure à run sont abandonnés ; ceux d'une remise à zéro
+	 * postérieure restent dans l'anneau, jusqu'à ce que le consommateur passe lui-même à ce déroulement.
+	 *
+	 * @param recorder l'enregistrement
+	 * @param run le numéro de la remise à zéro en cours d'enregistrement
+	 * @return le nombre d'échantillons ajoutés à l'enregistrement
+	 */
+	public int drainTo(SampleSink recorder, long run) throws IOException {
+		long t = tail, h = head;
+		int drained = 0;
+		while (t < h) {
+			int i = (int) t & mask;
+			long r = runs[i];
+			if (r > run)
+				break;
+			//le bloc contigu d'échantillons du même déroulement, sans faire le tour de l'anneau
+			int end = i + 1, limit = (int) Math.min(capacity, i + (h - t));
+			while (end < limit && runs[end] == r)
+				end++;
+			if (r == run) {
+				recorder.append(columns, i, end - i);
+				drained += end - i;
+			}
+			t += end - i;
+			tail = t;
+		}
+		return drained;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons en attente dans l'anneau.
+	 */
+	public int size() {
+		return (int) (head - tail);
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons abandonnés parce que l'anneau était plein.
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+}
@@ -0,0 +1,41 @@
+package alina.sim;
+
+import java.io.IOException;
+
+/**
+ * Interface publique qui doit être implémentée par les enregistrements d'états de la simulation
+ * (ColumnRecorder, TraceWriter), dans lesquels un SampleRing peut aussi être vidé.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public interface SampleSink {
+
+	/**
+	 * Cette méthode ajoute un échantillon (toutes les grandeurs de l'état donné).
+	 *
+	 * @param state l'état enregistré
+	 */
+	void append(Simulation.State state) throws IOException;
+
+	/**
+	 * Cette méthode ajoute plusieurs échantillons à la fois, donnés colonne par colonne
+	 * (values[c][from + k] est la valeur de la colonne c pour le k-ième échantillon),
+	 * dans l'ordre de ColumnRecorder.CHANNELS.
+	 *
+	 * @param values les valeurs
+	 * @param from l'indice du premier échantillon dans les tableaux
+	 * @param n le nombre d'échantillons
+	 */
+	void append(double[][] values, int from, int n) throws IOException;
+
+	/**
+	 * Cette méthode efface les échantillons enregistrés (au début d'un nouveau déroulement).
+	 */
+	void reset() throws IOException;
+
+	/**
+	 * Cette méthode termine l'enregistrement.
+	 */
+	void close() throws IOException;
+}
@@ -1,5 +1,7 @@
 package alina.sim;
 
+import alina.sim.integrator.EulerIntegrator;
+import alina.sim.integrator.Integrator;
 import alina.sim.strategy.SimpleStrategy;
 import alina.sim.strategy.Strategy;
 
@@ -17,6 +19,10 @@ public class Simulation {
 	 * L'accélération gravitationnelle.
 	 */
     public static final double g = 9.81;
+    /**
+     * La dimension du vecteur d'état utilisé par les méthodes d'intégration (x, vx, theta, vAng, work).
+     */
+    public static final int DIM = 5;
     /**
      * L'état de départ de la simulation.
      */
@@ -33,7 +39,67 @@ public class Simulation {
      * La "précision" du calcul numérique (i.e. le nombre de 
      * sous-intervalles temporaires égaux dt pour 1 ms).
      */
-    private static int precision = 1000;
+    private int precision = 1000;
+    /**
+     * La méthode d'intégration numérique utilisée pour faire avancer la simulation.
+     */
+    private Integrator integrator = new EulerIntegrator();
+    /**
+     * Le nombre d'évaluations des dérivées depuis le dernier reset.
+     */
+    private long evaluations;
+    /**
+     * L'état auxiliaire transmis à la stratégie lors des évaluations intermédiaires des dérivées.
+     */
+    private final State stage = new State();
+    /**
+     * L'énergie mécanique de l'état de départ (J).
+     */
+    private double startEnergy;
+    /**
+     * Le nombre de remises à zéro de la simulation.
+     */
+    private long resetCount;
+    /**
+     * Les conditions d'arrêt vérifiées après chaque pas de temps.
+     */
+    private Termination termination = new Termination();
+    /**
+     * La fréquence d'échantillonnage du contrôleur (Hz). Si elle est nulle, la stratégie est appelée
+     * à chaque évaluation des dérivées (comme avant) ; sinon, la force est calculée une fois par période
+     * et maintenue constante jusqu'à la mise à jour suivante (bloqueur d'ordre zéro).
+     */
+    private double controlRate;
+    /**
+     * La force maintenue entre deux mises à jour du contrôleur (N).
+     */
+    private double force;
+    /**
+     * La force utilisée par le dernier appel de derivatives.
+     */
+    private double lastForce;
+    /**
+     * Le nombre de pas de temps dt restant avant la prochaine mise à jour du contrôleur.
+     */
+    private long stepsToUpdate;
+    /**
+     * Le nombre de mises à jour du contrôleur depuis le dernier reset.
+     */
+    private long updates;
+    /**
+     * Le journal dans lequel les appels à solve et les forces de la stratégie sont enregistrés (null si aucun).
+     */
+    private InputLog inputLog;
+    /**
+     * L'anneau dans lequel des échantillons de l'état sont ajoutés pendant solve (null si aucun),
+     * et l'intervalle de temps simulé entre deux échantillons (s).
+     */
+    private SampleRing recording;
+    private double recordingInterval;
+    /**
+     * Le nombre de pas de temps dt restant avant le prochain échantillon.
+     */
+    private long stepsToSample;
 
     /**
      * Le constructeur SANS arguments de la classe simulation.
@@ -55,7 +121,8 @@ public class Simulation {
 		this.startState = new State (startState);
 		this.state = new State (startState);
 		this.strategy = strategy;
-		Simulation.precision = precision;
+		this.precision = precision;
+		this.startEnergy = startState.energy();
 	}
 
     /**
@@ -68,17 +135,19 @@ public class Simulation {
      * @param dt le laps de temps entre deux calculs successifs de l'état du système (en s)
      */
 	public void solveStep(double dt) {
-        if (state.failed)
+        if (state.isFinished())
             return;
 
         state.started = true;
+        evaluations++;
         
         //On avance le temps avec le laps dt
         state.t += dt;
 
         //En fonction de l'état actuel du système, la méthode react implémentée dans la stratégie
         //choisie pour la simulation, calcule et retourne la "bonne" valeur de la force de stabilisation du pendule.
-        double fx = strategy.react(state);
+        //Si le contrôleur a sa propre fréquence, on utilise la force maintenue depuis sa dernière mise à jour.
+        double fx = controlRate > 0 ? force : react(state);
 
         double sin = Math.sin(state.theta);
         double cos = Math.cos(state.theta);
@@ -95,24 +164,180 @@ public class Simulation {
         state.aAng = ((M+m)*g*sin - m*l*vAng2*sin*cos + fx*cos) / l / (M + m*sin*sin);
         state.vAng += state.aAng * dt;
         state.theta += state.vAng * dt;
+        state.theta = wrap(state.theta);
+
+        //Le travail fourni par la force de stabilisation (pour le bilan d'énergie)
+        state.work += fx * state.vx * dt;
 
-        if (state.theta > Math.PI)
-            state.theta -= 2*Math.PI;
-        if (state.theta < -Math.PI)
-            state.theta += 2*Math.PI;
+        termination.check(state);
     }
     
     /**
-     * Cette méthode utilise la méthode solveStep pour permettre de faire avancer 
+     * Cette méthode calcule les dérivées du vecteur d'état y = (x, vx, theta, vAng, work) au temps t,
+     * à savoir dydt = (vx, ax, vAng, aAng, fx*vx). La force est donnée par la stratégie, qui reçoit un
+     * état auxiliaire correspondant au vecteur y (l'état courant n'est pas modifié), sauf si le contrôleur
+     * a sa propre fréquence : la force maintenue est alors utilisée telle quelle.
+     * Cette méthode est utilisée par les méthodes d'intégration d'ordre supérieur.
+     * 
+     * @param t le temps (en s)
+     * @param y le vecteur d'état
+     * @param dydt le tableau dans lequel les dérivées sont stockées
+     */
+    public void derivatives(double t, double[] y, double[] dydt) {
+        evaluations++;
+
+        double fx = force;
+        if (controlRate <= 0) {
+            stage.t = t;
+            stage.started = true;
+            stage.M = state.M;
+            stage.m = state.m;
+            stage.l = state.l;
+            stage.x = y[0];
+            stage.vx = y[1];
+            stage.theta = wrap(y[2]);
+            stage.vAng = y[3];
+
+            fx = react(stage);
+        }
+        lastForce = fx;
+        model(fx, y, dydt);
+    }
+
+    /**
+     * Cette méthode calcule les dérivées du vecteur d'état y avec la dernière force utilisée par
+     * derivatives, sans appeler la stratégie (ni compter une évaluation). Elle permet de calculer les
+     * accélérations à la fin d'un pas, au point finalement retenu par la méthode d'intégration.
+     * 
+     * @param y le vecteur d'état
+     * @param dydt le tableau dans lequel les dérivées sont stockées
+     */
+    public void finalDerivatives(double[] y, double[] dydt) {
+        model(lastForce, y, dydt);
+    }
+
+    /**
+     * Cette méthode calcule les dérivées du vecteur d'état y pour une force donnée (équations du mouvement).
+     */
+    private void model(double fx, double[] y, double[] dydt) {
+        double sin = Math.sin(y[2]);
+        double cos = Math.cos(y[2]);
+        double M = state.M, m = state.m, l = state.l, vAng2 = y[3]*y[3];
+
+        double ax = (m*g*sin*cos - m*l*vAng2*sin + fx) / (M + m*sin*sin);
+        double aAng = ((M+m)*g*sin - m*l*vAng2*sin*cos + fx*cos) / l / (M + m*sin*sin);
+
+        dydt[0] = y[1];
+        dydt[1] = ax;
+        dydt[2] = y[3];
+        dydt[3] = aAng;
+        dydt[4] = fx * y[1];
+    }
+
+    /**
+     * Cette méthode demande la force à la stratégie et l'enregistre dans le journal s'il y en a un.
+     */
+    private double react(State state) {
+        double fx = strategy.react(state);
+        if (inputLog != null)
+            inputLog.force(fx);
+        return fx;
+    }
+
+    /**
+     * Cette méthode copie les composantes de l'état courant dans le vecteur d'état y = (x, vx, theta, vAng, work).
+     * 
+     * @param y le tableau dans lequel le vecteur d'état est stocké
+     */
+    public void getVector(double[] y) {
+        y[0] = state.x;
+        y[1] = state.vx;
+        y[2] = state.theta;
+        y[3] = state.vAng;
+        y[4] = state.work;
+    }
+
+    /**
+     * Cette méthode remplace l'état courant par le vecteur d'état y = (x, vx, theta, vAng, work) au temps t,
+     * puis vérifie les conditions d'arrêt.
+     * 
+     * @param t le nouveau temps (en s)
+     * @param y le nouveau vecteur d'état
+     * @param dydt les dérivées du vecteur d'état (dont on garde les accélérations)
+     */
+    public void setVector(double t, double[] y, double[] dydt) {
+        state.started = true;
+        state.t = t;
+        state.x = y[0];
+        state.vx = y[1];
+        state.ax = dydt[1];
+        state.theta = wrap(y[2]);
+        state.vAng = y[3];
+        state.aAng = dydt[3];
+        state.work = y[4];
+
+        termination.check(state);
+    }
+
+    /**
+     * Cette méthode ramène un angle dans l'intervalle [-pi, pi].
+     */
+    private static double wrap(double theta) {
+        if (theta > Math.PI)
+            theta -= 2*Math.PI;
+        if (theta < -Math.PI)
+            theta += 2*Math.PI;
+        return theta;
+    }
+    
+    /**
+     * Cette méthode utilise la méthode d'intégration choisie pour permettre de faire avancer 
      * la simulation durant un intervalle de temps donné en paramètre.
+     * Si le contrôleur a sa propre fréquence, l'intervalle est découpé aux instants d'échantillonnage :
+     * la stratégie est appelée au début de chaque période et la méthode d'intégration avance ensuite
+     * jusqu'à l'instant suivant avec une force constante. La période est arrondie à un nombre entier
+     * de pas dt (au moins un). De même, si la simulation est enregistrée (voir setRecording),
+     * l'intervalle est aussi découpé aux instants des échantillons, qui sont ajoutés à l'anneau.
      * 
      * @param nb_ms l'intervalle de temps (en ms)
      */
     public void solve(long nb_ms) {
     	//le pas de temps "infinitésimal" en secondes
         double dt = 0.001 / precision;
-        for (int i = 0; i < nb_ms * precision; i++)
-            solveStep(dt);
+        if (inputLog != null)
+            inputLog.solve(nb_ms);
+        if (controlRate <= 0 && recording == null) {
+            integrator.advance(this, 0.001 * nb_ms, dt);
+            return;
+        }
+
+        long period = controlRate > 0 ? Math.max(1, Math.round(1000 * precision / controlRate)) : 0;
+        long samplePeriod = Math.max(1, Math.round(1000 * precision * recordingInterval));
+        long steps = nb_ms * precision;
+        while (steps > 0 && !state.isFinished()) {
+            if (controlRate > 0 && stepsToUpdate <= 0) {
+                state.started = true;
+                force = react(state);
+                updates++;
+                integrator.invalidate();
+                stepsToUpdate = period;
+            }
+            if (recording != null && stepsToSample <= 0)
+                stepsToSample = samplePeriod;
+
+            long n = steps;
+            if (controlRate > 0)
+                n = Math.min(n, stepsToUpdate);
+            if (recording != null)
+                n = Math.min(n, stepsToSample);
+            integrator.advance(this, n * dt, dt);
+            steps -= n;
+            stepsToUpdate -= n;
+            stepsToSample -= n;
+            //le dernier état d'une simulation arrêtée est toujours enregistré
+            if (recording != null && (stepsToSample <= 0 || state.isFinished()))
+                recording.add(state, getEnergyDrift(), resetCount);
+        }
     }
     
 	/**
@@ -121,9 +346,26 @@ public class Simulation {
 	 */
     public void reset() {
         state = new State(startState);
+        evaluations = 0;
+        updates = 0;
+        stepsToUpdate = 0;
+        stepsToSample = 0;
+        force = 0;
+        resetCount++;
+        startEnergy = startState.energy();
+        state.failed = false;
+        state.reason = null;
 
+        if (termination != null)
+            termination.reset();
         if (strategy != null)
             strategy.reset();
+        if (integrator != null)
+            integrator.reset();
+        if (inputLog != null)
+            inputLog.start(this);
+        if (recording != null)
+            recording.add(state, 0, resetCount);
         //System.out.println(state.l);
 //        System.out.println(state.m);
     }
@@ -143,7 +385,37 @@ public class Simulation {
      * @return l'état courant du pendule
      */
     public State getState() {
-        return new State(state);
+        State copy = new State(state);
+        copy.drift = getEnergyDrift();
+        return copy;
+    }
+
+    /**
+     * Cette méthode recopie l'état courant dans l'état donné en paramètre (sans créer de nouvel objet).
+     * @param copy l'état dans lequel l'état courant est recopié
+     */
+    public void copyState(State copy) {
+        copy.copy(state);
+        copy.drift = getEnergyDrift();
+    }
+
+    /**
+     * Cette méthode retourne le nombre de remises à zéro de la simulation, ce qui permet de savoir
+     * si un état recopié appartient encore au même déroulement de la simulation.
+     * @return le nombre d'appels à reset
+     */
+    public long getResetCount() {
+        return resetCount;
+    }
+
+    /**
+     * Cette méthode retourne la dérive de l'énergie, i.e. l'écart entre l'énergie mécanique courante
+     * et l'énergie de départ augmentée du travail fourni par la stratégie. Pour une solution exacte,
+     * cette valeur reste nulle : elle mesure donc l'erreur commise par la méthode d'intégration.
+     * @return la dérive de l'énergie (J)
+     */
+    public double getEnergyDrift() {
+        return state.energy() - startEnergy - state.work;
     }
 
     /**
@@ -151,7 +423,142 @@ public class Simulation {
      * @param precision la nouvelle précision du calcul numérique
      */
     public void setPrecision(int precision) {
-        Simulation.precision = precision;
+        this.precision = precision;
+    }
+
+    /**
+     * Cette méthode retourne la précision du calcul numérique.
+     * @return la précision du calcul numérique
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Cette méthode retourne les conditions d'arrêt de la simulation.
+     * @return les conditions d'arrêt
+     */
+    public Termination getTermination() {
+        return termination;
+    }
+
+    /**
+     * Cette méthode permet de changer les conditions d'arrêt de la simulation.
+     * @param termination les nouvelles conditions d'arrêt
+     */
+    public void setTermination(Termination termination) {
+        this.termination = termination;
+        termination.reset();
+    }
+
+    /**
+     * Cette méthode permet de changer la fréquence d'échantillonnage du contrôleur.
+     * @param controlRate la nouvelle fréquence (Hz), ou 0 pour appeler la stratégie à chaque évaluation
+     */
+    public void setControlRate(double controlRate) {
+        this.controlRate = Math.max(0, controlRate);
+        stepsToUpdate = 0;
+    }
+
+    /**
+     * Cette méthode retourne la fréquence d'échantillonnage du contrôleur.
+     * @return la fréquence (Hz), ou 0 si la stratégie est appelée à chaque évaluation
+     */
+    public double getControlRate() {
+        return controlRate;
+    }
+
+    /**
+     * Cette méthode retourne la force maintenue depuis la dernière mise à jour du contrôleur.
+     * @return la force maintenue (N)
+     */
+    public double getForce() {
+        return force;
+    }
+
+    /**
+     * Cette méthode retourne le nombre de pas de temps dt restant avant la prochaine mise à jour du contrôleur.
+     */
+    long getStepsToUpdate() {
+        return stepsToUpdate;
+    }
+
+    /**
+     * Cette méthode retourne le nombre de pas de temps dt restant avant le prochain échantillon.
+     */
+    long getStepsToSample() {
+        return stepsToSample;
+    }
+
+    /**
+     * Cette méthode remet la force maintenue et le nombre de pas avant la prochaine mise à jour
+     * du contrôleur et avant le prochain échantillon aux valeurs enregistrées dans un journal (voir InputLog).
+     */
+    void restoreController(double force, long stepsToUpdate, long stepsToSample) {
+        this.force = force;
+        this.stepsToUpdate = stepsToUpdate;
+        this.stepsToSample = stepsToSample;
+    }
+
+    /**
+     * Cette méthode permet d'enregistrer l'état de la simulation à intervalles réguliers de temps simulé,
+     * depuis solve (et non une fois par image de l'interface graphique). Les échantillons sont ajoutés
+     * à l'anneau donné, qui doit être vidé par un autre thread (voir SampleRing.drainTo).
+     * Pour un échantillon tous les N pas de temps dt, l'intervalle vaut N / (1000 * précision).
+     * La méthode d'intégration s'arrête à chaque échantillon : une méthode adaptative (DormandPrince)
+     * fait donc des pas un peu différents de ceux d'une simulation sans enregistrement.
+     *
+     * @param recording l'anneau des échantillons, ou null pour arrêter l'enregistrement
+     * @param interval l'intervalle de temps simulé entre deux échantillons (s)
+     */
+    public void setRecording(SampleRing recording, double interval) {
+        this.recording = recording;
+        this.recordingInterval = interval;
+        stepsToSample = 0;
+    }
+
+    /**
+     * Cette méthode retourne l'anneau dans lequel les échantillons sont ajoutés.
+     * @return l'anneau, ou null si la simulation n'est pas enregistrée
+     */
+    public SampleRing getRecording() {
+        return recording;
+    }
+
+    /**
+     * Cette méthode retourne l'intervalle de temps simulé entre deux échantillons.
+     * @return l'intervalle (s)
+     */
+    public double getRecordingInterval() {
+        return recordingInterval;
+    }
+
+    /**
+     * Cette méthode permet d'enregistrer la simulation dans un journal, qui commence avec l'état courant
+     * et recommence à chaque remise à zéro (voir InputLog).
+     * @param inputLog le journal, ou null pour arrêter l'enregistrement
+     */
+    public void setInputLog(InputLog inputLog) {
+        this.inputLog = inputLog;
+        if (inputLog != null)
+            inputLog.start(this);
+    }
+
+    /**
+     * Cette méthode retourne le journal dans lequel la simulation est enregistrée.
+     * @return le journal, ou null si la simulation n'est pas enregistrée
+     */
+    public InputLog getInputLog() {
+        return inputLog;
+    }
+
+    /**
+     * Cette méthode retourne le nombre de mises à jour du contrôleur (i.e. d'appels à la stratégie
+     * lorsque le contrôleur a sa propre fréquence) depuis le dernier reset.
+     * @return le nombre de mises à jour du contrôleur
+     */
+    public long getUpdates() {
+        return updates;
     }
 
     /**
@@ -181,6 +588,32 @@ public class Simulation {
         reset();
     }
 
+    /**
+     * Cette méthode retourne la méthode d'intégration utilisée par la simulation.
+     * @return la méthode d'intégration utilisée par la simulation
+     */
+    public Integrator getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * Cette méthode permet de changer la méthode d'intégration utilisée par la simulation.
+     * @param integrator la nouvelle méthode d'intégration
+     */
+    public void setIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+        reset();
+    }
+
+    /**
+     * Cette méthode retourne le nombre d'évaluations des dérivées (i.e. d'appels à la stratégie)
+     * depuis le dernier reset, ce qui permet de comparer le coût des méthodes d'intégration.
+     * @return le nombre d'évaluations des dérivées
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
     /**
      * Cette classe interne correspond à l'état du système à un instant donné
      * (et permet de stocker des informations comme la position, l'angle, les vitesses, les accélérations, ...).
@@ -200,6 +633,10 @@ public class Simulation {
     	 * Marqueur booléen pour savoir si la simulation a échoué ou pas.
     	 */
         public boolean failed;
+        /**
+    	 * La raison pour laquelle la simulation a été arrêtée, ou null si elle continue (voir Termination).
+    	 */
+        public Termination.Reason reason;
         /**
     	 * La masse du pendule inversé (kg).
     	 */
@@ -248,6 +685,14 @@ public class Simulation {
     	 * L'accélération verticale du chariot (m/s^2).
     	 */
         public double ay;
+        /**
+    	 * Le travail fourni par la force de stabilisation depuis le départ (J).
+    	 */
+        public double work;
+        /**
+    	 * La dérive de l'énergie au moment où l'état a été copié (J), voir Simulation.getEnergyDrift.
+    	 */
+        public double drift;
         
         /**
          * Constructeur sans arguments (qui laisse tous les champs initialisés avec les valeurs par défaut implicites).
@@ -260,10 +705,20 @@ public class Simulation {
          * @param state l'état qui est clôné
          */
         public State(State state) {
+            copy(state);
+        }
+
+        /**
+         * Cette méthode recopie dans cet état toutes les valeurs de l'état donné en paramètre
+         * (sans créer de nouvel objet).
+         * @param state l'état qui est recopié
+         */
+        public void copy(State state) {
             this.t = state.t;
 
             this.started = state.started;
             this.failed = state.failed;
+            this.reason = state.reason;
 
             this.M = state.M;
             this.m = state.m;
@@ -280,6 +735,28 @@ public class Simulation {
             this.y = state.y;
             this.vy = state.vy;
             this.ay = state.ay;
+
+            this.work = state.work;
+            this.drift = state.drift;
+        }
+
+        /**
+         * Cette méthode permet de savoir si la simulation est terminée (échec ou condition d'arrêt).
+         * @return vrai si la simulation ne doit plus avancer
+         */
+        public boolean isFinished() {
+            return failed || reason != null;
+        }
+
+        /**
+         * Cette méthode calcule l'énergie mécanique (cinétique + potentielle) du système,
+         * avec la masse m placée en (x - l*sin(theta), l*cos(theta)).
+         * @return l'énergie mécanique (J)
+         */
+        public double energy() {
+            double cos = Math.cos(theta);
+            double kinetic = 0.5*(M + m)*vx*vx - m*l*vx*vAng*cos + 0.5*m*l*l*vAng*vAng;
+            return kinetic + m*g*l*cos;
         }
     }
 }
\ No newline at end of file
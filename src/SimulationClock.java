@@ -0,0 +1,132 @@
+package alina.sim;
+
+/**
+ * Cette classe correspond à l'horloge à pas fixe de la simulation : la simulation avance toujours
+ * par quanta identiques de temps simulé, et le temps réel écoulé ne décide que du nombre de quanta
+ * à calculer. Le temps réel (multiplié par la vitesse) est ajouté à un accumulateur, duquel on retire
+ * un quantum à chaque avancement ; la trajectoire ne dépend donc pas des irrégularités du timer
+ * ou des pauses du ramasse-miettes, et deux déroulements avec les mêmes paramètres sont identiques.
+ * 
+ * Si la simulation ne suit plus le temps réel, le retard accumulé est borné : au-delà de maxBacklog,
+ * le temps en trop est abandonné (la simulation ralentit au lieu de vouloir rattraper indéfiniment).
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class SimulationClock {
+	/**
+	 * Le quantum de temps simulé (ms).
+	 */
+	private long quantum;
+	/**
+	 * Le retard maximum qui peut être rattrapé (ns de temps simulé).
+	 */
+	private long maxBacklog;
+	/**
+	 * Le temps simulé dû mais pas encore calculé (ns).
+	 */
+	private double accumulator;
+	/**
+	 * Le temps réel du dernier appel à tick (ns).
+	 */
+	private long last;
+	/**
+	 * Le temps simulé abandonné depuis la création de l'horloge (ns), lisible depuis un autre thread.
+	 */
+	private volatile double dropped;
+
+	/**
+	 * Constructeur public.
+	 * 
+	 * @param quantum le quantum de temps simulé (ms)
+	 * @param maxBacklog le retard maximum qui peut être rattrapé (ms de temps simulé)
+	 */
+	public SimulationClock(long quantum, long maxBacklog) {
+		setQuantum(quantum);
+		this.maxBacklog = maxBacklog * 1000000;
+		reset(System.nanoTime());
+	}
+
+	/**
+	 * Cette méthode remet l'accumulateur à zéro (par exemple quand la simulation est mise en pause).
+	 * 
+	 * @param now le temps réel courant (ns, voir System.nanoTime)
+	 */
+	public void reset(long now) {
+		last = now;
+		accumulator = 0;
+	}
+
+	/**
+	 * Cette méthode ajoute à l'accumulateur le temps réel écoulé depuis le dernier appel,
+	 * multiplié par la vitesse, en abandonnant ce qui dépasse le retard maximum.
+	 * 
+	 * @param now le temps réel courant (ns, voir System.nanoTime)
+	 * @param speed la vitesse de déroulement (1 correspond au temps réel)
+	 */
+	public void tick(long now, double speed) {
+		accumulator += (now - last) * speed;
+		last = now;
+		if (accumulator > maxBacklog) {
+			dropped += accumulator - maxBacklog;
+			accumulator = maxBacklog;
+		}
+	}
+
+	/**
+	 * Cette méthode retire un quantum de l'accumulateur, s'il en contient au moins un.
+	 * 
+	 * @return vrai si un quantum doit être calculé
+	 */
+	public boolean take() {
+		double q = quantum * 1e6;
+		if (accumulator < q)
+			return false;
+		accumulator -= q;
+		return true;
+	}
+
+	/**
+	 * Cette méthode retourne le temps réel à attendre avant que l'accumulateur contienne un quantum.
+	 * 
+	 * @param speed la vitesse de déroulement
+	 * @return la durée à attendre (ns)
+	 */
+	public long timeToNextQuantum(double speed) {
+		return (long) ((quantum * 1e6 - accumulator) / speed);
+	}
+
+	/**
+	 * Cette méthode retourne le quantum de temps simulé.
+	 * @return le quantum (ms)
+	 */
+	public long getQuantum() {
+		return quantum;
+	}
+
+	/**
+	 * Cette méthode permet de changer le quantum de temps simulé.
+	 * @param quantum le nouveau quantum (ms, au moins 1)
+	 */
+	public void setQuantum(long quantum) {
+		if (quantum < 1)
+			throw new IllegalArgumentException("quantum must be at least 1 ms");
+		this.quantum = quantum;
+	}
+
+	/**
+	 * Cette méthode permet de changer le retard maximum qui peut être rattrapé.
+	 * @param maxBacklog le retard maximum (ms de temps simulé)
+	 */
+	public void setMaxBacklog(long maxBacklog) {
+		this.maxBacklog = maxBacklog * 1000000;
+	}
+
+	/**
+	 * Cette méthode retourne le temps simulé abandonné parce que la simulation ne suivait pas le temps réel.
+	 * @return le temps abandonné (ms)
+	 */
+	public double getDroppedTime() {
+		return dropped * 1e-6;
+	}
+}
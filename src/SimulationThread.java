@@ -0,0 +1,261 @@
+package alina.sim;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cette classe correspond au thread qui fait avancer la simulation, en dehors du thread de
+ * l'interface graphique. Après chaque avancement, l'état courant est recopié dans un StateBuffer
+ * où l'interface graphique vient prendre le dernier état quand elle le souhaite.
+ * 
+ * Le temps simulé avance par quanta fixes donnés par une SimulationClock : le temps réel ne décide
+ * que du nombre de quanta calculés, ce qui rend la trajectoire indépendante des irrégularités du timer.
+ * 
+ * La simulation n'est utilisée que par ce thread : les autres threads lui envoient des commandes
+ * (remise à zéro, changement de stratégie, ...) avec la méthode submit, qui sont exécutées entre
+ * deux avancements.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class SimulationThread extends Thread {
+	private final Simulation simulation;
+	private final StateBuffer buffer = new StateBuffer();
+	private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+	/**
+	 * L'horloge à pas fixe (utilisée seulement par ce thread).
+	 */
+	private final SimulationClock clock;
+	/**
+	 * La durée entre deux publications de l'état (ns).
+	 */
+	private final long period;
+	private volatile boolean running;
+	private volatile boolean stopped;
+	/**
+	 * La vitesse de déroulement de la simulation (1 correspond au temps réel).
+	 */
+	private volatile double speed = 1;
+	/**
+	 * Marqueur booléen du mode "turbo" : la simulation avance aussi vite que possible,
+	 * sans suivre le temps réel (l'état est toujours publié à la même fréquence).
+	 */
+	private volatile boolean turbo;
+	/**
+	 * Le temps simulé auquel la simulation s'arrête (s), ou 0 s'il n'y a pas de limite.
+	 */
+	private volatile double stopTime;
+	/**
+	 * La vitesse obtenue entre les deux dernières publications (s de temps simulé par s de temps réel).
+	 */
+	private volatile double achievedSpeed;
+	/**
+	 * Le temps simulé et le temps réel (ns) de la dernière publication.
+	 */
+	private double lastPublishedTime;
+	private long lastPublishedNanos = System.nanoTime();
+
+	/**
+	 * Constructeur public. Le thread doit ensuite être démarré avec start().
+	 * 
+	 * @param simulation la simulation (qui ne doit plus être utilisée directement par les autres threads)
+	 * @param framesPerSecond le nombre de publications de l'état par seconde
+	 * @param quantum le quantum de temps simulé (ms)
+	 * @param maxBacklog le retard maximum qui peut être rattrapé (ms de temps simulé)
+	 */
+	public SimulationThread(Simulation simulation, int framesPerSecond, long quantum, long maxBacklog) {
+		super("simulation");
+		this.simulation = simulation;
+		this.period = 1000000000L / framesPerSecond;
+		this.clock = new SimulationClock(quantum, maxBacklog);
+		setDaemon(true);
+		publish();
+	}
+
+	@Override
+	public void run() {
+		long nextPublish = System.nanoTime();
+		while (!stopped) {
+			runCommands();
+
+			long wait = period;
+			if (running) {
+				if (turbo) {
+					//en mode turbo, on calcule des quanta jusqu'à la prochaine publication
+					clock.reset(System.nanoTime());
+					while (running && turbo && commands.isEmpty() && System.nanoTime() - nextPublish < 0)
+						advance();
+				} else {
+					clock.tick(System.nanoTime(), speed);
+					//on calcule les quanta dus, en s'interrompant si une commande arrive
+					while (running && !turbo && commands.isEmpty() && clock.take())
+						advance();
+				}
+
+				long now = System.nanoTime();
+				//l'état est aussi publié dès que la simulation s'arrête d'elle-même
+				if (now - nextPublish >= 0 || !running) {
+					publish();
+					nextPublish = now + period;
+				}
+				wait = turbo ? 0 : Math.min(nextPublish - now, clock.timeToNextQuantum(speed));
+			} else {
+				clock.reset(System.nanoTime());
+			}
+
+			if (wait > 0 && commands.isEmpty())
+				LockSupport.parkNanos(this, wait);
+		}
+	}
+
+	/**
+	 * Cette méthode fait avancer la simulation d'un quantum, puis l'arrête si le pendule est tombé
+	 * ou si le temps d'arrêt est atteint.
+	 */
+	private void advance() {
+		simulation.solve(clock.getQuantum());
+		Simulation.State state = simulation.state;
+		if (state.isFinished() || (stopTime > 0 && state.t >= stopTime))
+			running = false;
+	}
+
+	/**
+	 * Cette méthode exécute les commandes reçues depuis le dernier avancement.
+	 */
+	private void runCommands() {
+		Runnable command;
+		boolean executed = false;
+		while ((command = commands.poll()) != null) {
+			command.run();
+			executed = true;
+		}
+		if (executed)
+			publish();
+	}
+
+	/**
+	 * Cette méthode recopie l'état courant dans le tampon arrière et le publie.
+	 */
+	private void publish() {
+		long now = System.nanoTime();
+		double t = simulation.state.t;
+		if (now > lastPublishedNanos && t >= lastPublishedTime)
+			achievedSpeed = (t - lastPublishedTime) / ((now - lastPublishedNanos) * 1e-9);
+		lastPublishedTime = t;
+		lastPublishedNanos = now;
+
+		simulation.copyState(buffer.getBack());
+		buffer.publish(simulation.getResetCount());
+	}
+
+	/**
+	 * Cette méthode fait avancer la simulation d'un nombre entier de quanta, au moins égal à la durée donnée.
+	 * Elle doit être appelée par le thread de la simulation (par exemple dans une commande).
+	 * 
+	 * @param nb_ms la durée minimum (ms)
+	 */
+	public void step(long nb_ms) {
+		long quantum = clock.getQuantum();
+		for (long t = 0; t < nb_ms; t += quantum)
+			simulation.solve(quantum);
+	}
+
+	/**
+	 * Cette méthode envoie une commande au thread de la simulation. La commande est exécutée
+	 * par ce thread avant le prochain avancement, puis l'état courant est publié.
+	 * 
+	 * @param command la commande (qui peut utiliser la simulation)
+	 */
+	public void submit(Runnable command) {
+		commands.add(command);
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Cette méthode arrête le thread après l'avancement en cours.
+	 */
+	public void shutdown() {
+		stopped = true;
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Cette méthode retourne le tampon dans lequel les états de la simulation sont publiés.
+	 * @return le tampon des états
+	 */
+	public StateBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Cette méthode permet de lancer ou d'arrêter l'avancement de la simulation.
+	 * @param running vrai pour que la simulation avance
+	 */
+	public void setRunning(boolean running) {
+		this.running = running;
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Cette méthode permet de savoir si la simulation avance.
+	 * @return vrai si la simulation avance
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Cette méthode permet de changer le quantum de temps simulé.
+	 * @param quantum le nouveau quantum (ms)
+	 */
+	public void setQuantum(final long quantum) {
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				clock.setQuantum(quantum);
+			}
+		});
+	}
+
+	/**
+	 * Cette méthode retourne le temps simulé abandonné parce que la simulation ne suivait pas le temps réel.
+	 * @return le temps abandonné (ms)
+	 */
+	public double getDroppedTime() {
+		return clock.getDroppedTime();
+	}
+
+	/**
+	 * Cette méthode permet d'activer ou de désactiver le mode turbo.
+	 * @param turbo vrai pour que la simulation avance aussi vite que possible
+	 */
+	public void setTurbo(boolean turbo) {
+		this.turbo = turbo;
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Cette méthode permet de changer le temps simulé auquel la simulation s'arrête.
+	 * @param stopTime le temps d'arrêt (s), ou 0 pour ne pas arrêter la simulation
+	 */
+	public void setStopTime(double stopTime) {
+		this.stopTime = stopTime;
+	}
+
+	/**
+	 * Cette méthode retourne la vitesse obtenue entre les deux dernières publications de l'état.
+	 * @return le nombre de secondes simulées par seconde de temps réel
+	 */
+	public double getAchievedSpeed() {
+		return achievedSpeed;
+	}
+
+	/**
+	 * Cette méthode permet de changer la vitesse de déroulement de la simulation.
+	 * @param speed la nouvelle vitesse (1 correspond au temps réel)
+	 */
+	public void setSpeed(double speed) {
+		this.speed = speed;
+	}
+}
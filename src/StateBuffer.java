@@ -0,0 +1,88 @@
+package alina.sim;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cette classe permet de transmettre sans verrou les états de la simulation d'un thread
+ * (le "producteur", qui fait avancer la simulation) à un autre (le "consommateur", l'interface
+ * graphique). Elle utilise un triple tampon : le producteur écrit dans le tampon arrière,
+ * le consommateur lit le tampon avant, et le tampon du milieu contient le dernier état publié.
+ * Les échanges se font par une seule opération atomique, si bien qu'aucun des deux threads
+ * n'attend jamais l'autre, et qu'aucun objet n'est créé après la construction.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class StateBuffer {
+	/**
+	 * Le bit qui indique que le tampon du milieu contient un état qui n'a pas encore été lu.
+	 */
+	private static final int FRESH = 4;
+	private static final int INDEX = 3;
+
+	private final Simulation.State[] states = {new Simulation.State(), new Simulation.State(), new Simulation.State()};
+	/**
+	 * Le numéro associé à chaque état publié (par exemple le nombre de remises à zéro de la simulation).
+	 */
+	private final long[] stamps = new long[3];
+	/**
+	 * L'indice du tampon du milieu, avec le bit FRESH.
+	 */
+	private final AtomicInteger middle = new AtomicInteger(1);
+	/**
+	 * L'indice du tampon arrière (utilisé seulement par le producteur).
+	 */
+	private int back = 0;
+	/**
+	 * L'indice du tampon avant (utilisé seulement par le consommateur).
+	 */
+	private int front = 2;
+
+	/**
+	 * Cette méthode retourne le tampon arrière, dans lequel le producteur écrit le prochain état.
+	 * @return le tampon arrière
+	 */
+	public Simulation.State getBack() {
+		return states[back];
+	}
+
+	/**
+	 * Cette méthode publie le tampon arrière : il devient le tampon du milieu, et l'ancien tampon
+	 * du milieu devient le nouveau tampon arrière.
+	 * 
+	 * @param stamp le numéro associé à l'état publié
+	 */
+	public void publish(long stamp) {
+		stamps[back] = stamp;
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * Cette méthode permet au consommateur de prendre le dernier état publié (s'il y en a un nouveau) :
+	 * le tampon du milieu devient le tampon avant.
+	 * 
+	 * @return vrai si un nouvel état a été pris, faux si le tampon avant est déjà le dernier état publié
+	 */
+	public boolean update() {
+		if ((middle.get() & FRESH) == 0)
+			return false;
+		front = middle.getAndSet(front) & INDEX;
+		return true;
+	}
+
+	/**
+	 * Cette méthode retourne le tampon avant. Il n'est modifié par personne jusqu'au prochain appel à update.
+	 * @return le dernier état pris par le consommateur
+	 */
+	public Simulation.State getFront() {
+		return states[front];
+	}
+
+	/**
+	 * Cette méthode retourne le numéro associé au tampon avant.
+	 * @return le numéro de l'état du tampon avant
+	 */
+	public long getFrontStamp() {
+		return stamps[front];
+	}
+}
@@ -0,0 +1,260 @@
+package alina.sim;
+
+/**
+ * Cette classe regroupe les conditions d'arrêt d'une simulation : angle trop grand, chariot
+ * hors de la piste, vitesse qui diverge, valeur NaN ou pendule stabilisé depuis un certain temps.
+ * Les conditions sont vérifiées par la simulation après chaque pas de temps ; dès que l'une
+ * d'entre elles est remplie, la raison de l'arrêt est stockée dans l'état (et le marqueur failed
+ * est mis s'il s'agit d'un échec), de sorte que les pas suivants ne coûtent plus rien.
+ *
+ * Par défaut, seule la détection des valeurs NaN est active ; les autres conditions sont
+ * désactivées (limites infinies, temps de stabilisation nul).
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class Termination {
+	/**
+	 * Les raisons pour lesquelles une simulation peut être arrêtée.
+	 */
+	public enum Reason {
+		/**
+		 * Une composante de l'état n'est plus un nombre (le calcul a divergé).
+		 */
+		NAN(true),
+		/**
+		 * L'angle du pendule a dépassé la limite (le pendule est tombé).
+		 */
+		ANGLE(true),
+		/**
+		 * Le chariot est sorti de la piste.
+		 */
+		TRACK(true),
+		/**
+		 * La vitesse du chariot ou la vitesse angulaire du pendule a dépassé la limite.
+		 */
+		VELOCITY(true),
+		/**
+		 * Le pendule est resté dans la tolérance pendant le temps demandé (la simulation a réussi).
+		 */
+		SETTLED(false);
+
+		private final boolean failure;
+
+		private Reason(boolean failure) {
+			this.failure = failure;
+		}
+
+		/**
+		 * Cette méthode permet de savoir si l'arrêt correspond à un échec de la stratégie.
+		 * @return vrai s'il s'agit d'un échec
+		 */
+		public boolean isFailure() {
+			return failure;
+		}
+	}
+
+	/**
+	 * L'angle au-delà duquel le pendule est considéré comme tombé (rad).
+	 */
+	private double angleLimit = Double.POSITIVE_INFINITY;
+	/**
+	 * Les bornes de la piste du chariot (m).
+	 */
+	private double minX = Double.NEGATIVE_INFINITY, maxX = Double.POSITIVE_INFINITY;
+	/**
+	 * Les vitesses maximales du chariot (m/s) et du pendule (rad/s).
+	 */
+	private double maxVx = Double.POSITIVE_INFINITY, maxVAng = Double.POSITIVE_INFINITY;
+	/**
+	 * La tolérance sur l'angle (rad) et sur la vitesse angulaire (rad/s) pour la stabilisation.
+	 */
+	private double settleAngle = Math.toRadians(1), settleRate = Double.POSITIVE_INFINITY;
+	/**
+	 * Le temps pendant lequel le pendule doit rester dans la tolérance (s), 0 pour ne pas s'arrêter.
+	 */
+	private double settleTime;
+	/**
+	 * Le temps depuis lequel le pendule est dans la tolérance (s), ou NaN s'il n'y est pas.
+	 */
+	private double settledSince = Double.NaN;
+
+	/**
+	 * Constructeur sans arguments (seule la détection des valeurs NaN est active).
+	 */
+	public Termination() {
+	}
+
+	/**
+	 * Constructeur par recopie des conditions (le suivi de la stabilisation repart de zéro),
+	 * par exemple pour donner à chaque simulation d'un balayage sa propre copie.
+	 * @param termination les conditions qui sont recopiées
+	 */
+	public Termination(Termination termination) {
+		this.angleLimit = termination.angleLimit;
+		this.minX = termination.minX;
+		this.maxX = termination.maxX;
+		this.maxVx = termination.maxVx;
+		this.maxVAng = termination.maxVAng;
+		this.settleAngle = termination.settleAngle;
+		this.settleRate = termination.settleRate;
+		this.settleTime = termination.settleTime;
+	}
+
+	/**
+	 * Cette méthode remet à zéro le suivi de la stabilisation (au début d'une nouvelle simulation).
+	 */
+	public void reset() {
+		settledSince = Double.NaN;
+	}
+
+	/**
+	 * Cette méthode vérifie les conditions d'arrêt pour l'état donné. Si l'une d'entre elles est
+	 * remplie, la raison est stockée dans l'état et le marqueur failed est mis en cas d'échec.
+	 *
+	 * @param state l'état courant de la simulation
+	 * @return la raison de l'arrêt, ou null si la simulation continue
+	 */
+	public Reason check(Simulation.State state) {
+		double theta = state.theta, vAng = state.vAng, x = state.x, vx = state.vx;
+
+		Reason reason = null;
+		if (Double.isNaN(theta + vAng + x + vx))
+			reason = Reason.NAN;
+		else if (Math.abs(theta) > angleLimit)
+			reason = Reason.ANGLE;
+		else if (x < minX || x > maxX)
+			reason = Reason.TRACK;
+		else if (Math.abs(vx) > maxVx || Math.abs(vAng) > maxVAng)
+			reason = Reason.VELOCITY;
+		else if (settleTime > 0) {
+			if (Math.abs(theta) <= settleAngle && Math.abs(vAng) <= settleRate) {
+				if (Double.isNaN(settledSince))
+					settledSince = state.t;
+				else if (state.t - settledSince >= settleTime)
+					reason = Reason.SETTLED;
+			} else {
+				settledSince = Double.NaN;
+			}
+		}
+
+		if (reason != null) {
+			state.reason = reason;
+			state.failed = reason.isFailure();
+		}
+		return reason;
+	}
+
+	/**
+	 * Cette méthode permet de changer l'angle au-delà duquel le pendule est considéré comme tombé.
+	 * @param angleLimit l'angle (rad)
+	 */
+	public void setAngleLimit(double angleLimit) {
+		this.angleLimit = angleLimit;
+	}
+
+	/**
+	 * Cette méthode retourne l'angle au-delà duquel le pendule est considéré comme tombé.
+	 * @return l'angle (rad)
+	 */
+	public double getAngleLimit() {
+		return angleLimit;
+	}
+
+	/**
+	 * Cette méthode permet de changer les bornes de la piste du chariot.
+	 * @param minX la borne de gauche (m)
+	 * @param maxX la borne de droite (m)
+	 */
+	public void setTrack(double minX, double maxX) {
+		this.minX = minX;
+		this.maxX = maxX;
+	}
+
+	/**
+	 * Cette méthode retourne la borne de gauche de la piste du chariot.
+	 * @return la borne (m)
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Cette méthode retourne la borne de droite de la piste du chariot.
+	 * @return la borne (m)
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Cette méthode permet de changer les vitesses au-delà desquelles le calcul est considéré comme divergent.
+	 * @param maxVx la vitesse maximale du chariot (m/s)
+	 * @param maxVAng la vitesse angulaire maximale du pendule (rad/s)
+	 */
+	public void setMaxVelocity(double maxVx, double maxVAng) {
+		this.maxVx = maxVx;
+		this.maxVAng = maxVAng;
+	}
+
+	/**
+	 * Cette méthode retourne la vitesse maximale du chariot.
+	 * @return la vitesse (m/s)
+	 */
+	public double getMaxVx() {
+		return maxVx;
+	}
+
+	/**
+	 * Cette méthode retourne la vitesse angulaire maximale du pendule.
+	 * @return la vitesse angulaire (rad/s)
+	 */
+	public double getMaxVAng() {
+		return maxVAng;
+	}
+
+	/**
+	 * Cette méthode permet de changer la condition de stabilisation : la simulation est arrêtée
+	 * lorsque l'angle et la vitesse angulaire restent dans la tolérance pendant le temps donné.
+	 * @param settleAngle la tolérance sur l'angle (rad)
+	 * @param settleRate la tolérance sur la vitesse angulaire (rad/s)
+	 * @param settleTime le temps (s), ou 0 pour ne pas arrêter une simulation stabilisée
+	 */
+	public void setSettle(double settleAngle, double settleRate, double settleTime) {
+		this.settleAngle = settleAngle;
+		this.settleRate = settleRate;
+		this.settleTime = settleTime;
+	}
+
+	/**
+	 * Cette méthode retourne la tolérance sur l'angle pour la stabilisation.
+	 * @return la tolérance (rad)
+	 */
+	public double getSettleAngle() {
+		return settleAngle;
+	}
+
+	/**
+	 * Cette méthode retourne la tolérance sur la vitesse angulaire pour la stabilisation.
+	 * @return la tolérance (rad/s)
+	 */
+	public double getSettleRate() {
+		return settleRate;
+	}
+
+	/**
+	 * Cette méthode retourne le temps pendant lequel le pendule doit rester dans la tolérance.
+	 * @return le temps (s), ou 0 si une simulation stabilisée n'est pas arrêtée
+	 */
+	public double getSettleTime() {
+		return settleTime;
+	}
+
+	/**
+	 * Cette méthode retourne le temps depuis lequel le pendule est dans la tolérance.
+	 * @return le temps (s), ou NaN si le pendule n'est pas dans la tolérance
+	 */
+	public double getSettledSince() {
+		return settledSince;
+	}
+}
@@ -0,0 +1,357 @@
+package alina.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Cette classe lit une trace écrite par TraceWriter. Seul l'index des blocs est gardé en mémoire :
+ * chercher un instant (seek) ne demande qu'une recherche dichotomique dans l'index, puis la lecture
+ * et le décodage d'un seul bloc. Le dernier bloc décodé est gardé, si bien que la lecture d'échantillons
+ * successifs ne décode chaque bloc qu'une fois.
+ *
+ * Si le fichier n'a pas d'index (trace en cours d'écriture ou interrompue), les blocs sont retrouvés
+ * en lisant leurs en-têtes à la suite ; refresh ajoute les blocs écrits depuis.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class TraceReader implements AutoCloseable {
+	private final RandomAccessFile file;
+	private final String[] channels;
+	private final int chunkSize;
+	/**
+	 * La position de la fin du dernier bloc connu (pour refresh) et le marqueur de l'index final.
+	 */
+	private long scanned;
+	private boolean complete;
+	/**
+	 * L'index des blocs : position, premier et dernier temps, nombre d'échantillons et indice du premier échantillon.
+	 */
+	private long[] offsets = new long[16];
+	private double[] firstTimes = new double[16], lastTimes = new double[16];
+	private int[] counts = new int[16];
+	private long[] starts = new long[17];
+	private int chunks;
+	/**
+	 * Le dernier bloc décodé, colonne par colonne, et son indice.
+	 */
+	private final double[][] columns;
+	private int cached = -1;
+	private byte[] buffer = new byte[1 << 16];
+	/**
+	 * La position de lecture dans le bloc en cours de décodage.
+	 */
+	private int position;
+
+	/**
+	 * Constructeur public qui ouvre une trace et lit son index.
+	 *
+	 * @param file le fichier de la trace
+	 */
+	public TraceReader(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			if (this.file.readInt() != TraceWriter.MAGIC || this.file.readInt() != TraceWriter.VERSION)
+				throw new IOException("not a trace file: " + file);
+			chunkSize = this.file.readInt();
+			channels = new String[this.file.readInt()];
+			for (int c = 0; c < channels.length; c++)
+				channels[c] = this.file.readUTF();
+			if (channels.length != ColumnRecorder.WIDTH)
+				throw new IOException("unexpected channels in " + file);
+			columns = new double[channels.length][chunkSize];
+			scanned = this.file.getFilePointer();
+			if (!readIndex())
+				refresh();
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Cette méthode lit l'index à la fin du fichier, s'il y en a un.
+	 */
+	private boolean readIndex() throws IOException {
+		long size = file.length();
+		if (size < scanned + TraceWriter.TRAILER_SIZE)
+			return false;
+		file.seek(size - TraceWriter.TRAILER_SIZE);
+		long indexOffset = file.readLong();
+		if (file.readInt() != TraceWriter.TRAILER || indexOffset < scanned || indexOffset >= size)
+			return false;
+		file.seek(indexOffset);
+		if (file.readInt() != TraceWriter.INDEX)
+			return false;
+		int n = file.readInt();
+		byte[] index = new byte[n * (8 + 8 + 8 + 4)];
+		file.readFully(index);
+		ByteBuffer entries = ByteBuffer.wrap(index);
+		for (int k = 0; k < n; k++)
+			add(entries.getLong(), entries.getDouble(), entries.getDouble(), entries.getInt());
+		scanned = indexOffset;
+		complete = true;
+		return true;
+	}
+
+	/**
+	 * Cette méthode ajoute à l'index les blocs écrits depuis le dernier appel (pour une trace en cours
+	 * d'écriture). Un bloc n'est ajouté que lorsqu'il est entièrement écrit.
+	 *
+	 * @return le nombre de blocs ajoutés
+	 */
+	public int refresh() throws IOException {
+		if (complete)
+			return 0;
+		int before = chunks;
+		long size = file.length();
+		byte[] header = new byte[TraceWriter.CHUNK_HEADER];
+		while (scanned + TraceWriter.CHUNK_HEADER <= size) {
+			file.seek(scanned);
+			file.readFully(header);
+			ByteBuffer h = ByteBuffer.wrap(header);
+			int magic = h.getInt();
+			//l'index suit le dernier bloc : la trace a été fermée et tous ses blocs sont connus
+			if (magic == TraceWriter.INDEX)
+				complete = true;
+			if (magic != TraceWriter.CHUNK)
+				break;
+			int n = h.getInt();
+			double first = h.getDouble(), last = h.getDouble();
+			int length = h.getInt();
+			if (scanned + TraceWriter.CHUNK_HEADER + length > size)
+				break;
+			add(scanned, first, last, n);
+			scanned += TraceWriter.CHUNK_HEADER + length;
+		}
+		return chunks - before;
+	}
+
+	private void add(long offset, double first, double last, int n) {
+		if (chunks == offsets.length) {
+			int grown = 2 * chunks;
+			offsets = Arrays.copyOf(offsets, grown);
+			firstTimes = Arrays.copyOf(firstTimes, grown);
+			lastTimes = Arrays.copyOf(lastTimes, grown);
+			counts = Arrays.copyOf(counts, grown);
+			starts = Arrays.copyOf(starts, grown + 1);
+		}
+		offsets[chunks] = offset;
+		firstTimes[chunks] = first;
+		lastTimes[chunks] = last;
+		counts[chunks] = n;
+		starts[chunks + 1] = starts[chunks] + n;
+		chunks++;
+	}
+
+	/**
+	 * Cette méthode retourne l'indice du bloc qui contient l'instant donné (le dernier bloc qui commence
+	 * avant cet instant, ou le premier bloc si l'instant précède le début de la trace).
+	 *
+	 * @param t l'instant (s)
+	 * @return l'indice du bloc, ou -1 si la trace est vide
+	 */
+	public int seek(double t) {
+		int lo = 0, hi = chunks - 1;
+		if (hi < 0)
+			return -1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (firstTimes[mid] <= t)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Cette méthode lit et décode un bloc (sauf s'il vient d'être décodé).
+	 *
+	 * @param chunk l'indice du bloc
+	 * @return les colonnes du bloc (valables jusqu'au prochain décodage), avec getCount(chunk) échantillons
+	 */
+	public double[][] readChunk(int chunk) throws IOException {
+		if (chunk == cached)
+			return columns;
+		int n = counts[chunk];
+		file.seek(offsets[chunk] + TraceWriter.CHUNK_HEADER - 4);
+		int length = file.readInt();
+		if (buffer.length < length)
+			buffer = new byte[length];
+		file.readFully(buffer, 0, length);
+
+		cached = -1;
+		position = 0;
+		decodeTime(columns[0], n);
+		for (int c = 1; c < columns.length; c++)
+			decodeXor(columns[c], n);
+		cached = chunk;
+		return columns;
+	}
+
+	private void decodeTime(double[] values, int n) {
+		long previous = 0, delta = 0;
+		for (int i = 0; i < n; i++) {
+			long zigzag = readVarLong();
+			long dd = (zigzag >>> 1) ^ -(zigzag & 1);
+			delta += dd;
+			previous += delta;
+			values[i] = Double.longBitsToDouble(previous);
+		}
+	}
+
+	private void decodeXor(double[] values, int n) throws IOException {
+		long previous = 0;
+		int i = 0;
+		while (i < n) {
+			long head = readVarLong();
+			if (head == 0) {
+				long run = readVarLong();
+				if (run > n - i)
+					throw new IOException("corrupted trace chunk");
+				double value = Double.longBitsToDouble(previous);
+				for (long k = 0; k < run; k++)
+					values[i++] = value;
+			} else {
+				previous ^= readVarLong() << (head - 1);
+				values[i++] = Double.longBitsToDouble(previous);
+			}
+		}
+	}
+
+	private long readVarLong() {
+		long value = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = buffer[position++];
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+
+	/**
+	 * Cette méthode recopie dans l'état donné l'échantillon de la trace pris à l'instant donné
+	 * (le dernier échantillon qui ne le suit pas, ou le premier de la trace).
+	 *
+	 * @param t l'instant (s)
+	 * @param state l'état dans lequel l'échantillon est recopié
+	 * @return l'indice de l'échantillon dans la trace, ou -1 si la trace est vide
+	 */
+	public long get(double t, Simulation.State state) throws IOException {
+		int chunk = seek(t);
+		if (chunk < 0)
+			return -1;
+		double[][] values = readChunk(chunk);
+		int lo = 0, hi = counts[chunk] - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (values[0][mid] <= t)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		copy(values, lo, state);
+		return starts[chunk] + lo;
+	}
+
+	/**
+	 * Cette méthode recopie dans l'état donné l'échantillon d'indice donné.
+	 *
+	 * @param index l'indice de l'échantillon (entre 0 et size() - 1)
+	 * @param state l'état dans lequel l'échantillon est recopié
+	 */
+	public void get(long index, Simulation.State state) throws IOException {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("sample " + index + " of " + size());
+		int chunk = Arrays.binarySearch(starts, 0, chunks + 1, index);
+		if (chunk < 0)
+			chunk = -chunk - 2;
+		copy(readChunk(chunk), (int) (index - starts[chunk]), state);
+	}
+
+	private static void copy(double[][] values, int i, Simulation.State state) {
+		state.t = values[0][i];
+		state.x = values[1][i];
+		state.vx = values[2][i];
+		state.ax = values[3][i];
+		state.theta = values[4][i];
+		state.vAng = values[5][i];
+		state.aAng = values[6][i];
+		state.y = values[7][i];
+		state.vy = values[8][i];
+		state.ay = values[9][i];
+		state.work = values[10][i];
+		state.drift = values[11][i];
+		state.M = values[12][i];
+		state.m = values[13][i];
+		state.l = values[14][i];
+		state.started = true;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de blocs connus.
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * Cette méthode retourne l'indice du premier échantillon d'un bloc.
+	 */
+	public long getStart(int chunk) {
+		return starts[chunk];
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons d'un bloc.
+	 */
+	public int getCount(int chunk) {
+		return counts[chunk];
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons connus.
+	 */
+	public long size() {
+		return starts[chunks];
+	}
+
+	/**
+	 * Cette méthode retourne le temps du premier échantillon.
+	 * @return le temps (s), ou NaN si la trace est vide
+	 */
+	public double getStartTime() {
+		return chunks > 0 ? firstTimes[0] : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode retourne le temps du dernier échantillon connu.
+	 * @return le temps (s), ou NaN si la trace est vide
+	 */
+	public double getEndTime() {
+		return chunks > 0 ? lastTimes[chunks - 1] : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode permet de savoir si la trace a été fermée (son index a été lu).
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Cette méthode retourne les noms des colonnes de la trace.
+	 */
+	public String[] getChannels() {
+		return channels.clone();
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
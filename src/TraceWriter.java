@@ -0,0 +1,279 @@
+package alina.sim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Cette classe écrit une trace compressée de la simulation, faite pour garder de très longs
+ * enregistrements et y retrouver rapidement n'importe quel instant (voir TraceReader).
+ *
+ * Le fichier commence par un en-tête (le nom des colonnes de ColumnRecorder.CHANNELS et la taille
+ * des blocs), suivi de blocs d'au plus chunkSize échantillons. Chaque bloc est indépendant des autres :
+ * il commence par le nombre d'échantillons, le premier et le dernier temps et la longueur des données,
+ * puis contient les colonnes l'une après l'autre. Le temps est codé par la différence seconde de ses
+ * bits (nulle pour un pas constant), les autres colonnes par le XOR de chaque valeur avec la précédente,
+ * sans ses zéros de poids faible ; les suites de XOR nuls (les paramètres M, m, l, ou une grandeur
+ * constante) sont codées par leur longueur. Les entiers sont de longueur variable (voir InputLog).
+ *
+ * À la fermeture, un index (la position et les temps de chaque bloc) est ajouté à la fin du fichier.
+ * Un fichier en cours d'écriture, ou dont l'écriture a été interrompue, reste lisible : le lecteur
+ * retrouve alors les blocs en lisant leurs en-têtes à la suite.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class TraceWriter implements SampleSink {
+	static final int MAGIC = 0x43505452, VERSION = 1;
+	static final int CHUNK = 0x43484E4B, INDEX = 0x43505449, TRAILER = 0x43505845;
+	/**
+	 * La taille de l'en-tête d'un bloc : marque, nombre d'échantillons, premier et dernier temps, longueur.
+	 */
+	static final int CHUNK_HEADER = 4 + 4 + 8 + 8 + 4;
+	/**
+	 * La taille de la fin du fichier : position de l'index et marque.
+	 */
+	static final int TRAILER_SIZE = 8 + 4;
+
+	private final File file;
+	/**
+	 * Le nombre maximum d'échantillons d'un bloc.
+	 */
+	private final int chunkSize;
+	/**
+	 * Les échantillons du bloc en cours, colonne par colonne.
+	 */
+	private final double[][] pending = new double[ColumnRecorder.WIDTH][];
+	private int count;
+	/**
+	 * Les données codées du bloc en cours.
+	 */
+	private byte[] buffer;
+	private int length;
+	private DataOutputStream out;
+	/**
+	 * La position courante dans le fichier.
+	 */
+	private long position;
+	/**
+	 * L'index des blocs écrits.
+	 */
+	private long[] offsets = new long[16];
+	private double[] firstTimes = new double[16], lastTimes = new double[16];
+	private int[] counts = new int[16];
+	private int chunks;
+	private long samples;
+
+	/**
+	 * Constructeur public qui crée (ou vide) le fichier de la trace.
+	 *
+	 * @param file le fichier
+	 * @param chunkSize le nombre maximum d'échantillons d'un bloc
+	 */
+	public TraceWriter(File file, int chunkSize) throws IOException {
+		this.file = file;
+		this.chunkSize = Math.max(1, chunkSize);
+		for (int c = 0; c < pending.length; c++)
+			pending[c] = new double[this.chunkSize];
+		buffer = new byte[16 * this.chunkSize];
+		open();
+	}
+
+	private void open() throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(chunkSize);
+		out.writeInt(ColumnRecorder.WIDTH);
+		for (String channel : ColumnRecorder.CHANNELS)
+			out.writeUTF(channel);
+		position = out.size();
+		count = 0;
+		chunks = 0;
+		samples = 0;
+	}
+
+	@Override
+	public void append(Simulation.State state) throws IOException {
+		int i = count;
+		pending[0][i] = state.t;
+		pending[1][i] = state.x;
+		pending[2][i] = state.vx;
+		pending[3][i] = state.ax;
+		pending[4][i] = state.theta;
+		pending[5][i] = state.vAng;
+		pending[6][i] = state.aAng;
+		pending[7][i] = state.y;
+		pending[8][i] = state.vy;
+		pending[9][i] = state.ay;
+		pending[10][i] = state.work;
+		pending[11][i] = state.drift;
+		pending[12][i] = state.M;
+		pending[13][i] = state.m;
+		pending[14][i] = state.l;
+		if (++count == chunkSize)
+			writeChunk();
+	}
+
+	@Override
+	public void append(double[][] values, int from, int n) throws IOException {
+		while (n > 0) {
+			int k = Math.min(n, chunkSize - count);
+			for (int c = 0; c < pending.length; c++)
+				System.arraycopy(values[c], from, pending[c], count, k);
+			count += k;
+			from += k;
+			n -= k;
+			if (count == chunkSize)
+				writeChunk();
+		}
+	}
+
+	/**
+	 * Cette méthode code et écrit le bloc en cours.
+	 */
+	private void writeChunk() throws IOException {
+		if (count == 0)
+			return;
+		length = 0;
+		encodeTime(pending[0], count);
+		for (int c = 1; c < pending.length; c++)
+			encodeXor(pending[c], count);
+
+		if (chunks == offsets.length) {
+			int grown = 2 * chunks;
+			offsets = Arrays.copyOf(offsets, grown);
+			firstTimes = Arrays.copyOf(firstTimes, grown);
+			lastTimes = Arrays.copyOf(lastTimes, grown);
+			counts = Arrays.copyOf(counts, grown);
+		}
+		offsets[chunks] = position;
+		firstTimes[chunks] = pending[0][0];
+		lastTimes[chunks] = pending[0][count - 1];
+		counts[chunks] = count;
+		chunks++;
+		samples += count;
+
+		out.writeInt(CHUNK);
+		out.writeInt(count);
+		out.writeDouble(pending[0][0]);
+		out.writeDouble(pending[0][count - 1]);
+		out.writeInt(length);
+		out.write(buffer, 0, length);
+		position += CHUNK_HEADER + length;
+		count = 0;
+	}
+
+	/**
+	 * Cette méthode code le temps par la différence seconde des bits de ses valeurs (qui sont croissantes).
+	 */
+	private void encodeTime(double[] values, int n) {
+		long previous = 0, delta = 0;
+		for (int i = 0; i < n; i++) {
+			long bits = Double.doubleToRawLongBits(values[i]);
+			long d = bits - previous;
+			long dd = d - delta;
+			//zigzag : les petites valeurs négatives restent petites
+			writeVarLong((dd << 1) ^ (dd >> 63));
+			previous = bits;
+			delta = d;
+		}
+	}
+
+	/**
+	 * Cette méthode code une colonne par le XOR de chaque valeur avec la précédente.
+	 * Un XOR nul commence une suite de zéros, codée par 0 puis sa longueur ; un XOR non nul
+	 * est codé par son nombre de zéros de poids faible (plus un) puis ses bits restants.
+	 */
+	private void encodeXor(double[] values, int n) {
+		long previous = 0;
+		int i = 0;
+		while (i < n) {
+			long bits = Double.doubleToRawLongBits(values[i]);
+			long xor = bits ^ previous;
+			if (xor == 0) {
+				int run = 1;
+				while (i + run < n && Double.doubleToRawLongBits(values[i + run]) == bits)
+					run++;
+				writeVarLong(0);
+				writeVarLong(run);
+				i += run;
+			} else {
+				int zeros = Long.numberOfTrailingZeros(xor);
+				writeVarLong(zeros + 1);
+				writeVarLong(xor >>> zeros);
+				i++;
+			}
+			previous = bits;
+		}
+	}
+
+	private void writeVarLong(long value) {
+		if (length + 10 > buffer.length)
+			buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+		while ((value & ~0x7FL) != 0) {
+			buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[length++] = (byte) value;
+	}
+
+	/**
+	 * Cette méthode écrit le bloc en cours (même incomplet) et vide le tampon du fichier,
+	 * pour que les échantillons déjà ajoutés soient visibles par un lecteur.
+	 */
+	public void flush() throws IOException {
+		writeChunk();
+		out.flush();
+	}
+
+	/**
+	 * Cette méthode vide la trace (le fichier est recommencé).
+	 */
+	@Override
+	public void reset() throws IOException {
+		if (out != null)
+			out.close();
+		open();
+	}
+
+	/**
+	 * Cette méthode écrit le dernier bloc et l'index, puis ferme le fichier.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (out == null)
+			return;
+		writeChunk();
+		long indexOffset = position;
+		out.writeInt(INDEX);
+		out.writeInt(chunks);
+		for (int k = 0; k < chunks; k++) {
+			out.writeLong(offsets[k]);
+			out.writeDouble(firstTimes[k]);
+			out.writeDouble(lastTimes[k]);
+			out.writeInt(counts[k]);
+		}
+		out.writeLong(indexOffset);
+		out.writeInt(TRAILER);
+		out.close();
+		out = null;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'échantillons ajoutés à la trace.
+	 */
+	public long size() {
+		return samples + count;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'octets écrits dans le fichier (sans le bloc en cours).
+	 */
+	public long getBytes() {
+		return position;
+	}
+}
@@ -0,0 +1,366 @@
+package alina.sim;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cette classe est un environnement d'apprentissage par renforcement vectorisé : elle gère un grand
+ * nombre de pendules inversés (les environnements) et les fait avancer tous ensemble avec step,
+ * qui reçoit une action (la force à appliquer) par environnement et rend l'observation, la récompense
+ * et la fin d'épisode de chacun.
+ *
+ * Comme dans BatchSimulation, l'état est stocké en colonnes et les équations sont celles de
+ * Simulation.solveStep (méthode d'Euler) : chaque action est maintenue pendant period secondes,
+ * découpées en substeps pas. Les résultats sont écrits dans des tableaux primitifs publics
+ * (observations, rewards, terminated, truncated) qui sont réutilisés d'un pas à l'autre : step
+ * n'alloue rien, et l'appelant doit copier ce qu'il veut garder avant le pas suivant.
+ *
+ * Un épisode se termine (terminated) quand l'angle ou la position du chariot sortent des limites,
+ * ou est interrompu (truncated) après maxSteps actions. Dans les deux cas l'environnement est
+ * remis à zéro automatiquement : observations contient alors le premier état du nouvel épisode,
+ * et le dernier état de l'épisode fini est copié dans finalObservations. La récompense vaut 1
+ * pour chaque action (y compris la dernière d'un épisode), comme dans le cart-pole classique.
+ *
+ * Les états initiaux sont tirés uniformément dans [-initialRange, initialRange] avec un générateur
+ * propre à chaque environnement, initialisé par reset(seed) : les épisodes ne dépendent que de la
+ * graine et de l'indice de l'environnement, et sont identiques au bit près quel que soit le nombre
+ * de threads utilisés par step.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class VectorEnvironment {
+	/**
+	 * Le nombre de valeurs de l'observation d'un environnement, et leurs indices
+	 * (observations[i * OBSERVATION + THETA] est l'angle de l'environnement i).
+	 */
+	public static final int OBSERVATION = 4, X = 0, VX = 1, THETA = 2, VANG = 3;
+	/**
+	 * Le nombre minimum d'environnements avancés par une même tâche lors d'un pas en parallèle.
+	 */
+	private static final int GRAIN = 1024;
+
+	/**
+	 * Le nombre d'environnements.
+	 */
+	public final int size;
+	/**
+	 * Les observations (x, vx, theta, vAng) de tous les environnements, à la suite.
+	 */
+	public final double[] observations;
+	/**
+	 * Les dernières observations des épisodes qui viennent de se terminer (valables pour les
+	 * environnements dont terminated ou truncated est vrai).
+	 */
+	public final double[] finalObservations;
+	/**
+	 * La récompense du dernier pas de chaque environnement.
+	 */
+	public final double[] rewards;
+	/**
+	 * Marqueurs booléens pour savoir si l'épisode de chaque environnement vient d'échouer
+	 * (terminated) ou d'atteindre le nombre maximum de pas (truncated).
+	 */
+	public final boolean[] terminated, truncated;
+	/**
+	 * Les colonnes des paramètres physiques des environnements (5 kg, 1 kg et 0.5 m par défaut).
+	 */
+	public final double[] M, m, l;
+
+	private final double[] theta, vAng, x, vx;
+	/**
+	 * Le nombre de pas de l'épisode en cours de chaque environnement.
+	 */
+	private final int[] steps;
+	/**
+	 * L'état du générateur aléatoire de chaque environnement.
+	 */
+	private final long[] random;
+	private final double period;
+	private final int substeps;
+	private double maxForce = 10;
+	private double angleLimit = Math.toRadians(12), trackLimit = 2.4;
+	private int maxSteps = 500;
+	private double initialRange = 0.05;
+	private long episodes, totalSteps;
+	private ForkJoinPool pool;
+
+	/**
+	 * Le constructeur AVEC arguments de l'environnement vectorisé.
+	 *
+	 * @param size le nombre d'environnements
+	 * @param period la durée pendant laquelle chaque action est appliquée (s)
+	 * @param substeps le nombre de pas d'intégration par action
+	 */
+	public VectorEnvironment(int size, double period, int substeps) {
+		if (size < 1 || !(period > 0) || substeps < 1)
+			throw new IllegalArgumentException("invalid environment " + size + " x " + period + " s / " + substeps);
+		this.size = size;
+		this.period = period;
+		this.substeps = substeps;
+
+		observations = new double[size * OBSERVATION];
+		finalObservations = new double[size * OBSERVATION];
+		rewards = new double[size];
+		terminated = new boolean[size];
+		truncated = new boolean[size];
+		M = new double[size];
+		m = new double[size];
+		l = new double[size];
+		theta = new double[size];
+		vAng = new double[size];
+		x = new double[size];
+		vx = new double[size];
+		steps = new int[size];
+		random = new long[size];
+		Arrays.fill(M, 5);
+		Arrays.fill(m, 1);
+		Arrays.fill(l, 0.5);
+	}
+
+	/**
+	 * Constructeur public avec les valeurs habituelles du cart-pole : 20 ms par action, en 20 pas.
+	 *
+	 * @param size le nombre d'environnements
+	 */
+	public VectorEnvironment(int size) {
+		this(size, 0.02, 20);
+	}
+
+	/**
+	 * Cette méthode initialise les générateurs avec la graine donnée et commence un nouvel épisode
+	 * dans tous les environnements.
+	 *
+	 * @param seed la graine
+	 * @return le tableau des observations
+	 */
+	public double[] reset(long seed) {
+		for (int i = 0; i < size; i++) {
+			random[i] = mix(seed + (i + 1) * 0x9E3779B97F4A7C15L);
+			restart(i);
+			terminated[i] = false;
+			truncated[i] = false;
+			rewards[i] = 0;
+		}
+		episodes = 0;
+		totalSteps = 0;
+		return observations;
+	}
+
+	/**
+	 * Cette méthode applique une action à chaque environnement et les fait avancer d'une période,
+	 * en parallèle si un pool de threads a été donné (voir setPool).
+	 *
+	 * @param actions la force à appliquer à chaque chariot (N), ramenée dans [-maxForce, maxForce]
+	 * @return le tableau des observations
+	 */
+	public double[] step(double[] actions) {
+		if (actions.length < size)
+			throw new IllegalArgumentException("expected " + size + " actions, got " + actions.length);
+		if (pool == null || size <= GRAIN)
+			step(actions, 0, size);
+		else
+			pool.invoke(new StepTask(actions, 0, size));
+
+		long finished = 0;
+		for (int i = 0; i < size; i++)
+			if (terminated[i] || truncated[i])
+				finished++;
+		episodes += finished;
+		totalSteps += size;
+		return observations;
+	}
+
+	/**
+	 * Cette méthode fait avancer les environnements d'indices from (inclus) à to (exclu).
+	 */
+	private void step(double[] actions, int from, int to) {
+		final double[] theta = this.theta, vAng = this.vAng, x = this.x, vx = this.vx;
+		final double[] M = this.M, m = this.m, l = this.l;
+		final double g = Simulation.g, pi = Math.PI, dt = period / substeps;
+
+		for (int i = from; i < to; i++) {
+			double fx = Math.max(-maxForce, Math.min(maxForce, actions[i]));
+			double Mi = M[i], mi = m[i], li = l[i];
+			double thetai = theta[i], vAngi = vAng[i], xi = x[i], vxi = vx[i];
+			for (int k = 0; k < substeps; k++) {
+				//les mêmes équations que Simulation.solveStep
+				double sin = Math.sin(thetai);
+				double cos = Math.cos(thetai);
+				double vAng2 = vAngi*vAngi;
+				double denominator = Mi + mi*sin*sin;
+
+				double axi = (mi*g*sin*cos - mi*li*vAng2*sin + fx) / denominator;
+				vxi += axi * dt;
+				xi += vxi * dt;
+
+				double aAngi = ((Mi+mi)*g*sin - mi*li*vAng2*sin*cos + fx*cos) / li / denominator;
+				vAngi += aAngi * dt;
+				thetai += vAngi * dt;
+				thetai = thetai > pi ? thetai - 2*pi : thetai;
+				thetai = thetai < -pi ? thetai + 2*pi : thetai;
+			}
+			theta[i] = thetai;
+			vAng[i] = vAngi;
+			x[i] = xi;
+			vx[i] = vxi;
+			steps[i]++;
+
+			rewards[i] = 1;
+			boolean failed = Math.abs(thetai) > angleLimit || Math.abs(xi) > trackLimit || thetai != thetai || xi != xi;
+			terminated[i] = failed;
+			truncated[i] = !failed && steps[i] >= maxSteps;
+			if (failed || truncated[i]) {
+				observe(i, finalObservations, xi, vxi, thetai, vAngi);
+				restart(i);
+			} else
+				observe(i, observations, xi, vxi, thetai, vAngi);
+		}
+	}
+
+	/**
+	 * Cette méthode commence un nouvel épisode dans l'environnement i.
+	 */
+	private void restart(int i) {
+		x[i] = uniform(i);
+		vx[i] = uniform(i);
+		theta[i] = uniform(i);
+		vAng[i] = uniform(i);
+		steps[i] = 0;
+		observe(i, observations, x[i], vx[i], theta[i], vAng[i]);
+	}
+
+	private static void observe(int i, double[] buffer, double x, double vx, double theta, double vAng) {
+		int offset = i * OBSERVATION;
+		buffer[offset + X] = x;
+		buffer[offset + VX] = vx;
+		buffer[offset + THETA] = theta;
+		buffer[offset + VANG] = vAng;
+	}
+
+	/**
+	 * Cette méthode tire un nombre uniforme dans [-initialRange, initialRange] avec le générateur
+	 * de l'environnement i (SplitMix64, comme SplittableRandom, mais sans objet par environnement).
+	 */
+	private double uniform(int i) {
+		long seed = random[i] += 0x9E3779B97F4A7C15L;
+		double u = (mix(seed) >>> 11) * 0x1.0p-53;
+		return initialRange * (2 * u - 1);
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Cette classe interne coupe l'intervalle des environnements en deux jusqu'à GRAIN environnements
+	 * par tâche. Chaque environnement n'est écrit que par une seule tâche.
+	 */
+	@SuppressWarnings("serial")
+	private class StepTask extends RecursiveAction {
+		private final double[] actions;
+		private final int from, to;
+
+		StepTask(double[] actions, int from, int to) {
+			this.actions = actions;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				step(actions, from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new StepTask(actions, from, middle), new StepTask(actions, middle, to));
+		}
+	}
+
+	/**
+	 * Cette méthode copie l'état de l'environnement i dans l'état donné en paramètre
+	 * (par exemple pour l'afficher ou le comparer avec une Simulation).
+	 *
+	 * @param i l'indice de l'environnement
+	 * @param state l'état dans lequel les valeurs sont copiées
+	 */
+	public void get(int i, Simulation.State state) {
+		state.theta = theta[i];
+		state.vAng = vAng[i];
+		state.x = x[i];
+		state.vx = vx[i];
+		state.M = M[i];
+		state.m = m[i];
+		state.l = l[i];
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'épisodes terminés ou interrompus depuis le dernier reset.
+	 */
+	public long getEpisodes() {
+		return episodes;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de pas d'environnement effectués depuis le dernier reset.
+	 */
+	public long getTotalSteps() {
+		return totalSteps;
+	}
+
+	/**
+	 * Cette méthode retourne la durée pendant laquelle chaque action est appliquée.
+	 * @return la période (s)
+	 */
+	public double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Cette méthode permet de changer la force maximale que peut demander une action.
+	 * @param maxForce la force maximale (N)
+	 */
+	public void setMaxForce(double maxForce) {
+		this.maxForce = maxForce;
+	}
+
+	/**
+	 * Cette méthode permet de changer les limites au-delà desquelles un épisode échoue.
+	 *
+	 * @param angleLimit l'angle maximal (rad)
+	 * @param trackLimit la distance maximale du chariot à l'origine (m)
+	 */
+	public void setLimits(double angleLimit, double trackLimit) {
+		this.angleLimit = angleLimit;
+		this.trackLimit = trackLimit;
+	}
+
+	/**
+	 * Cette méthode permet de changer le nombre maximum d'actions d'un épisode.
+	 * @param maxSteps le nombre maximum d'actions
+	 */
+	public void setMaxSteps(int maxSteps) {
+		this.maxSteps = maxSteps;
+	}
+
+	/**
+	 * Cette méthode permet de changer l'intervalle dans lequel sont tirées les quatre valeurs de l'état initial.
+	 * @param initialRange la demi-largeur de l'intervalle
+	 */
+	public void setInitialRange(double initialRange) {
+		this.initialRange = initialRange;
+	}
+
+	/**
+	 * Cette méthode permet de faire avancer les environnements en parallèle avec le pool donné
+	 * (par exemple ForkJoinPool.commonPool()), ou dans le thread appelant avec null (par défaut).
+	 * @param pool le pool de threads
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+}
@@ -0,0 +1,250 @@
+package alina.sim.integrator;
+
+import alina.sim.Simulation;
+
+/**
+ * Cette classe implémente la méthode de Dormand-Prince 5(4) à pas adaptatif.
+ * A chaque pas, deux solutions (d'ordre 5 et d'ordre 4) sont calculées avec les mêmes
+ * évaluations des dérivées ; leur différence donne une estimation de l'erreur locale
+ * qui permet d'agrandir ou de réduire le pas pour respecter les tolérances demandées.
+ * La dernière évaluation d'un pas accepté est réutilisée comme première évaluation du pas
+ * suivant (propriété "FSAL"), ce qui fait six évaluations par pas.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class DormandPrinceIntegrator implements Integrator {
+	private static final double C2 = 1.0 / 5, C3 = 3.0 / 10, C4 = 4.0 / 5, C5 = 8.0 / 9;
+	private static final double A21 = 1.0 / 5;
+	private static final double A31 = 3.0 / 40, A32 = 9.0 / 40;
+	private static final double A41 = 44.0 / 45, A42 = -56.0 / 15, A43 = 32.0 / 9;
+	private static final double A51 = 19372.0 / 6561, A52 = -25360.0 / 2187, A53 = 64448.0 / 6561,
+			A54 = -212.0 / 729;
+	private static final double A61 = 9017.0 / 3168, A62 = -355.0 / 33, A63 = 46732.0 / 5247,
+			A64 = 49.0 / 176, A65 = -5103.0 / 18656;
+	private static final double A71 = 35.0 / 384, A73 = 500.0 / 1113, A74 = 125.0 / 192,
+			A75 = -2187.0 / 6784, A76 = 11.0 / 84;
+	/**
+	 * Les coefficients de l'erreur (différence entre les solutions d'ordre 5 et d'ordre 4).
+	 */
+	private static final double E1 = 71.0 / 57600, E3 = -71.0 / 16695, E4 = 71.0 / 1920,
+			E5 = -17253.0 / 339200, E6 = 22.0 / 525, E7 = -1.0 / 40;
+
+	/**
+	 * Le facteur de sécurité et les bornes du facteur de changement du pas.
+	 */
+	private static final double SAFETY = 0.9, MIN_FACTOR = 0.2, MAX_FACTOR = 5;
+	/**
+	 * Le pas le plus petit accepté sans contrôle de l'erreur (en s).
+	 */
+	private static final double MIN_STEP = 1e-12;
+
+	/**
+	 * La tolérance absolue sur l'erreur locale.
+	 */
+	private double absTol;
+	/**
+	 * La tolérance relative sur l'erreur locale.
+	 */
+	private double relTol;
+	/**
+	 * Le pas maximum (en s), ou 0 si le pas n'est pas limité.
+	 */
+	private double maxStep;
+	/**
+	 * Le pas courant (en s), ou 0 si aucun pas n'a encore été fait.
+	 */
+	private double h;
+	/**
+	 * Marqueur booléen qui indique si k1 contient les dérivées au point yLast.
+	 */
+	private boolean fsal;
+
+	private final double[] y = new double[Simulation.DIM];
+	private final double[] yNew = new double[Simulation.DIM];
+	private final double[] yLast = new double[Simulation.DIM];
+	private final double[] tmp = new double[Simulation.DIM];
+	private final double[] k1 = new double[Simulation.DIM];
+	private final double[] k2 = new double[Simulation.DIM];
+	private final double[] k3 = new double[Simulation.DIM];
+	private final double[] k4 = new double[Simulation.DIM];
+	private final double[] k5 = new double[Simulation.DIM];
+	private final double[] k6 = new double[Simulation.DIM];
+	private final double[] k7 = new double[Simulation.DIM];
+
+	/**
+	 * Constructeur SANS arguments avec des tolérances par défaut.
+	 */
+	public DormandPrinceIntegrator() {
+		this(1e-9, 1e-9);
+	}
+
+	/**
+	 * Constructeur AVEC arguments.
+	 * 
+	 * @param absTol la tolérance absolue sur l'erreur locale
+	 * @param relTol la tolérance relative sur l'erreur locale
+	 */
+	public DormandPrinceIntegrator(double absTol, double relTol) {
+		this.absTol = absTol;
+		this.relTol = relTol;
+	}
+
+	@Override
+	public void reset() {
+		h = 0;
+		fsal = false;
+	}
+
+	@Override
+	public void invalidate() {
+		fsal = false;
+	}
+
+	@Override
+	public void advance(Simulation simulation, double duration, double dt) {
+		Simulation.State state = simulation.state;
+		if (state.isFinished() || duration <= 0)
+			return;
+
+		double t = state.t;
+		double tEnd = t + duration;
+		simulation.getVector(y);
+
+		//Si l'état a été modifié depuis le dernier pas, les dérivées mémorisées ne sont plus valables
+		for (int i = 0; i < y.length && fsal; i++)
+			if (y[i] != yLast[i])
+				fsal = false;
+		if (!fsal)
+			simulation.derivatives(t, y, k1);
+		if (h <= 0)
+			h = dt;
+
+		while (t < tEnd) {
+			double step = h;
+			if (maxStep > 0 && step > maxStep)
+				step = maxStep;
+			boolean last = t + step >= tEnd;
+			if (last)
+				step = tEnd - t;
+
+			double err = tryStep(simulation, t, step);
+
+			if (err <= 1 || step <= MIN_STEP) {
+				t = last ? tEnd : t + step;
+				System.arraycopy(yNew, 0, y, 0, y.length);
+				System.arraycopy(k7, 0, k1, 0, k1.length);
+				//le dernier pas raccourci ne doit pas servir à estimer le pas suivant
+				if (!last || step >= h)
+					h = nextStep(step, err, true);
+				//les conditions d'arrêt sont vérifiées après chaque pas accepté
+				simulation.setVector(t, y, k1);
+				if (state.isFinished())
+					break;
+			} else {
+				h = nextStep(step, err, false);
+			}
+		}
+
+		simulation.setVector(t, y, k1);
+		simulation.getVector(yLast);
+		//setVector ramène theta dans [-pi, pi] : k1 reste valable pour l'état ramené
+		fsal = true;
+	}
+
+	/**
+	 * Cette méthode calcule un pas de la méthode à partir du point (t, y) et stocke
+	 * la solution d'ordre 5 dans yNew et les dérivées en ce point dans k7.
+	 * 
+	 * @return la norme de l'erreur locale estimée, rapportée aux tolérances
+	 */
+	private double tryStep(Simulation simulation, double t, double h) {
+		int n = y.length;
+		for (int i = 0; i < n; i++)
+			tmp[i] = y[i] + h * A21 * k1[i];
+		simulation.derivatives(t + C2 * h, tmp, k2);
+		for (int i = 0; i < n; i++)
+			tmp[i] = y[i] + h * (A31 * k1[i] + A32 * k2[i]);
+		simulation.derivatives(t + C3 * h, tmp, k3);
+		for (int i = 0; i < n; i++)
+			tmp[i] = y[i] + h * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+		simulation.derivatives(t + C4 * h, tmp, k4);
+		for (int i = 0; i < n; i++)
+			tmp[i] = y[i] + h * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+		simulation.derivatives(t + C5 * h, tmp, k5);
+		for (int i = 0; i < n; i++)
+			tmp[i] = y[i] + h * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i]);
+		simulation.derivatives(t + h, tmp, k6);
+		for (int i = 0; i < n; i++)
+			yNew[i] = y[i] + h * (A71 * k1[i] + A73 * k3[i] + A74 * k4[i] + A75 * k5[i] + A76 * k6[i]);
+		simulation.derivatives(t + h, yNew, k7);
+
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			double e = h * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i]);
+			double scale = absTol + relTol * Math.max(Math.abs(y[i]), Math.abs(yNew[i]));
+			sum += (e / scale) * (e / scale);
+		}
+		double err = Math.sqrt(sum / n);
+		//une valeur NaN (divergence) est traitée comme une erreur infinie
+		return err == err ? err : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Cette méthode calcule le pas suivant à partir de l'erreur du pas qui vient d'être essayé.
+	 */
+	private static double nextStep(double h, double err, boolean accepted) {
+		double factor;
+		if (err == 0)
+			factor = MAX_FACTOR;
+		else
+			factor = Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, SAFETY * Math.pow(err, -0.2)));
+		//après un pas rejeté, on ne doit pas agrandir le pas
+		if (!accepted)
+			factor = Math.min(factor, 1);
+		return Math.max(h * factor, MIN_STEP);
+	}
+
+	/**
+	 * Cette méthode permet de changer les tolérances de l'erreur locale.
+	 * 
+	 * @param absTol la nouvelle tolérance absolue
+	 * @param relTol la nouvelle tolérance relative
+	 */
+	public void setTolerances(double absTol, double relTol) {
+		this.absTol = absTol;
+		this.relTol = relTol;
+	}
+
+	/**
+	 * Cette méthode retourne la tolérance absolue.
+	 * @return la tolérance absolue
+	 */
+	public double getAbsTol() {
+		return absTol;
+	}
+
+	/**
+	 * Cette méthode retourne la tolérance relative.
+	 * @return la tolérance relative
+	 */
+	public double getRelTol() {
+		return relTol;
+	}
+
+	/**
+	 * Cette méthode permet de limiter le pas de la méthode.
+	 * @param maxStep le pas maximum (en s), ou 0 pour ne pas limiter le pas
+	 */
+	public void setMaxStep(double maxStep) {
+		this.maxStep = maxStep;
+	}
+
+	/**
+	 * Cette méthode retourne le pas courant de la méthode.
+	 * @return le pas courant (en s)
+	 */
+	public double getStep() {
+		return h;
+	}
+}
@@ -0,0 +1,18 @@
+package alina.sim.integrator;
+
+import alina.sim.Simulation;
+
+/**
+ * Cette classe correspond à la méthode d'Euler utilisée depuis le début par la simulation
+ * (voir Simulation.solveStep). Elle reste disponible pour pouvoir comparer les autres méthodes.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class EulerIntegrator extends FixedStepIntegrator {
+
+	@Override
+	public void step(Simulation simulation, double dt) {
+		simulation.solveStep(dt);
+	}
+}
@@ -0,0 +1,37 @@
+package alina.sim.integrator;
+
+import alina.sim.Simulation;
+
+/**
+ * Cette classe abstraite regroupe les méthodes d'intégration à pas constant : l'intervalle
+ * de temps est découpé en sous-intervalles égaux dt et la méthode step est appelée pour chacun d'eux.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public abstract class FixedStepIntegrator implements Integrator {
+
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public void invalidate() {
+	}
+
+	@Override
+	public void advance(Simulation simulation, double duration, double dt) {
+		long steps = Math.round(duration / dt);
+		Simulation.State state = simulation.state;
+		for (long i = 0; i < steps && !state.isFinished(); i++)
+			step(simulation, dt);
+	}
+
+	/**
+	 * Cette méthode fait avancer l'état courant de la simulation d'un seul pas de temps.
+	 * 
+	 * @param simulation la simulation dont l'état courant est avancé
+	 * @param dt le pas de temps (en s)
+	 */
+	public abstract void step(Simulation simulation, double dt);
+}
@@ -0,0 +1,34 @@
+package alina.sim.integrator;
+
+import alina.sim.Simulation;
+
+/**
+ * Interface publique qui doit être implémentée par toutes les méthodes d'intégration numérique
+ * utilisées par la simulation pour résoudre les équations du mouvement du pendule inversé.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public interface Integrator {
+
+	/**
+	 * Cette méthode permet de remettre les valeurs du début (par exemple le dernier pas adaptatif).
+	 */
+	void reset();
+
+	/**
+	 * Cette méthode signale que les dérivées ont changé de façon discontinue (par exemple lorsque
+	 * le contrôleur met à jour la force maintenue) : les dérivées mémorisées ne sont plus valables.
+	 */
+	void invalidate();
+
+	/**
+	 * Cette méthode fait avancer l'état courant de la simulation durant l'intervalle de temps
+	 * donné en paramètre.
+	 * 
+	 * @param simulation la simulation dont l'état courant est avancé
+	 * @param duration l'intervalle de temps à parcourir (en s)
+	 * @param dt le pas de temps nominal donné par la précision de la simulation (en s)
+	 */
+	void advance(Simulation simulation, double duration, double dt);
+}
@@ -0,0 +1,156 @@
+package alina.sim.integrator;
+
+import alina.sim.Simulation;
+import alina.sim.linear.LinearModel;
+
+/**
+ * Cette classe fait avancer la simulation avec le modèle linéarisé autour de la position verticale
+ * (voir LinearModel) tant que le pendule reste près de la verticale. Comme la force est maintenue
+ * constante entre deux mises à jour du contrôleur, la solution du modèle linéarisé sur un intervalle
+ * est exacte : chaque intervalle coûte un produit matrice-vecteur 4x4 au lieu de milliers de pas.
+ *
+ * Les matrices de transition ne sont calculées qu'une fois pour des paramètres physiques (M, m, l)
+ * et une durée donnés ; les quelques dernières durées rencontrées sont gardées en mémoire (une
+ * période entière du contrôleur et les morceaux de période aux limites des appels à solve).
+ *
+ * La méthode d'intégration de secours (Euler par défaut) est utilisée avec le modèle complet lorsque
+ * |theta| sort de la bande donnée au début d'un intervalle, ainsi que lorsque le contrôleur n'a pas
+ * de fréquence propre (la force n'est alors pas constante sur l'intervalle).
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class LinearIntegrator implements Integrator {
+	/**
+	 * Le nombre de durées dont les matrices de transition sont gardées en mémoire.
+	 */
+	private static final int CACHE_SIZE = 4;
+
+	/**
+	 * La méthode d'intégration utilisée en dehors de la bande.
+	 */
+	private final Integrator fallback;
+	/**
+	 * La demi-largeur de la bande autour de la verticale dans laquelle le modèle linéarisé est utilisé (rad).
+	 */
+	private double band = 0.1;
+	private LinearModel model;
+	private final LinearModel.Discrete[] cache = new LinearModel.Discrete[CACHE_SIZE];
+	private int next;
+	private final double[] y = new double[Simulation.DIM];
+	private final double[] dydt = new double[Simulation.DIM];
+	private final double[] z = new double[LinearModel.DIM];
+	private final double[] zNext = new double[LinearModel.DIM];
+	private final double[] dzdt = new double[LinearModel.DIM];
+	/**
+	 * Le nombre d'intervalles faits avec le modèle linéarisé et avec la méthode de secours.
+	 */
+	private long linearSteps, fallbackSteps;
+
+	/**
+	 * Le constructeur sans arguments (la méthode de secours est la méthode d'Euler).
+	 */
+	public LinearIntegrator() {
+		this(new EulerIntegrator());
+	}
+
+	/**
+	 * Le constructeur avec la méthode d'intégration de secours.
+	 * @param fallback la méthode utilisée avec le modèle complet en dehors de la bande
+	 */
+	public LinearIntegrator(Integrator fallback) {
+		this.fallback = fallback;
+	}
+
+	@Override
+	public void reset() {
+		fallback.reset();
+		linearSteps = 0;
+		fallbackSteps = 0;
+	}
+
+	@Override
+	public void invalidate() {
+		fallback.invalidate();
+	}
+
+	@Override
+	public void advance(Simulation simulation, double duration, double dt) {
+		Simulation.State state = simulation.state;
+		if (state.isFinished() || duration <= 0)
+			return;
+
+		if (simulation.getControlRate() <= 0 || !(Math.abs(state.theta) <= band)) {
+			fallbackSteps++;
+			fallback.advance(simulation, duration, dt);
+			return;
+		}
+
+		LinearModel.Discrete discrete = discretization(state, duration);
+		double f = simulation.getForce();
+		simulation.getVector(y);
+		System.arraycopy(y, 0, z, 0, LinearModel.DIM);
+		discrete.step(z, f, zNext);
+
+		//la force est constante : son travail est f fois le déplacement du chariot
+		y[4] += f * (zNext[LinearModel.X] - z[LinearModel.X]);
+		System.arraycopy(zNext, 0, y, 0, LinearModel.DIM);
+		model.derivatives(zNext, f, dzdt);
+		System.arraycopy(dzdt, 0, dydt, 0, LinearModel.DIM);
+		dydt[4] = f * zNext[LinearModel.VX];
+
+		linearSteps++;
+		simulation.setVector(state.t + duration, y, dydt);
+	}
+
+	/**
+	 * Cette méthode retourne le modèle discret pour les paramètres physiques de l'état et la durée donnés,
+	 * en le calculant seulement s'il n'est pas déjà en mémoire.
+	 */
+	private LinearModel.Discrete discretization(Simulation.State state, double duration) {
+		if (model == null || !model.matches(state.M, state.m, state.l)) {
+			model = new LinearModel(state);
+			for (int i = 0; i < CACHE_SIZE; i++)
+				cache[i] = null;
+		}
+
+		for (int i = 0; i < CACHE_SIZE; i++)
+			if (cache[i] != null && cache[i].period == duration)
+				return cache[i];
+
+		LinearModel.Discrete discrete = model.discretize(duration);
+		cache[next] = discrete;
+		next = (next + 1) % CACHE_SIZE;
+		return discrete;
+	}
+
+	/**
+	 * Cette méthode permet de changer la demi-largeur de la bande dans laquelle le modèle linéarisé est utilisé.
+	 * @param band la demi-largeur (rad)
+	 */
+	public void setBand(double band) {
+		this.band = band;
+	}
+
+	/**
+	 * Cette méthode retourne la demi-largeur de la bande dans laquelle le modèle linéarisé est utilisé.
+	 * @return la demi-largeur (rad)
+	 */
+	public double getBand() {
+		return band;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'intervalles faits avec le modèle linéarisé depuis le dernier reset.
+	 */
+	public long getLinearSteps() {
+		return linearSteps;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre d'intervalles faits avec la méthode de secours depuis le dernier reset.
+	 */
+	public long getFallbackSteps() {
+		return fallbackSteps;
+	}
+}
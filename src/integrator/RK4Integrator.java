@@ -0,0 +1,48 @@
+package alina.sim.integrator;
+
+import alina.sim.Simulation;
+
+/**
+ * Cette classe implémente la méthode de Runge-Kutta classique d'ordre 4.
+ * Elle demande quatre évaluations des dérivées par pas, mais permet d'utiliser des pas
+ * beaucoup plus grands que la méthode d'Euler pour une erreur comparable.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class RK4Integrator extends FixedStepIntegrator {
+	private final double[] y = new double[Simulation.DIM];
+	private final double[] tmp = new double[Simulation.DIM];
+	private final double[] k1 = new double[Simulation.DIM];
+	private final double[] k2 = new double[Simulation.DIM];
+	private final double[] k3 = new double[Simulation.DIM];
+	private final double[] k4 = new double[Simulation.DIM];
+
+	@Override
+	public void step(Simulation simulation, double dt) {
+		Simulation.State state = simulation.state;
+		if (state.isFinished())
+			return;
+
+		double t = state.t;
+		simulation.getVector(y);
+
+		simulation.derivatives(t, y, k1);
+		for (int i = 0; i < y.length; i++)
+			tmp[i] = y[i] + 0.5 * dt * k1[i];
+		simulation.derivatives(t + 0.5 * dt, tmp, k2);
+		for (int i = 0; i < y.length; i++)
+			tmp[i] = y[i] + 0.5 * dt * k2[i];
+		simulation.derivatives(t + 0.5 * dt, tmp, k3);
+		for (int i = 0; i < y.length; i++)
+			tmp[i] = y[i] + dt * k3[i];
+		simulation.derivatives(t + dt, tmp, k4);
+
+		for (int i = 0; i < y.length; i++)
+			y[i] += dt / 6 * (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]);
+
+		//les accélérations enregistrées sont celles du nouvel état (avec la force de la dernière évaluation)
+		simulation.finalDerivatives(y, k1);
+		simulation.setVector(t + dt, y, k1);
+	}
+}
@@ -0,0 +1,80 @@
+package alina.sim.integrator;
+
+import alina.sim.Simulation;
+
+/**
+ * Cette classe implémente la méthode de Störmer-Verlet (sous la forme "kick-drift-kick") :
+ * les vitesses avancent d'un demi-pas, puis les positions d'un pas entier avec ces vitesses,
+ * et enfin les vitesses du second demi-pas avec les accélérations au nouveau point.
+ * Cette méthode semi-implicite est d'ordre 2 et symétrique en temps, de sorte que l'erreur
+ * sur l'énergie reste petite au lieu de s'accumuler, même avec des pas grossiers.
+ * 
+ * Comme l'accélération dépend aussi des vitesses, elle est évaluée au nouveau point avec une
+ * prédiction des nouvelles vitesses. Cette évaluation sert aussi au premier demi-pas du pas
+ * suivant, de sorte que la méthode ne coûte qu'une seule évaluation des dérivées par pas.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class VerletIntegrator extends FixedStepIntegrator {
+	private final double[] y = new double[Simulation.DIM];
+	private final double[] yLast = new double[Simulation.DIM];
+	private final double[] a0 = new double[Simulation.DIM];
+	private final double[] a1 = new double[Simulation.DIM];
+	/**
+	 * Marqueur booléen qui indique si a0 contient les accélérations au point yLast.
+	 */
+	private boolean cached;
+
+	@Override
+	public void reset() {
+		cached = false;
+	}
+
+	@Override
+	public void invalidate() {
+		cached = false;
+	}
+
+	@Override
+	public void step(Simulation simulation, double dt) {
+		Simulation.State state = simulation.state;
+		if (state.isFinished())
+			return;
+
+		double t = state.t;
+		simulation.getVector(y);
+
+		//Si l'état a été modifié depuis le dernier pas, les accélérations mémorisées ne sont plus valables
+		for (int i = 0; i < y.length && cached; i++)
+			if (y[i] != yLast[i])
+				cached = false;
+		if (!cached)
+			simulation.derivatives(t, y, a0);
+
+		double w = y[4];
+		//premier demi-pas des vitesses
+		y[1] += 0.5 * dt * a0[1];
+		y[3] += 0.5 * dt * a0[3];
+		//pas entier des positions
+		y[0] += dt * y[1];
+		y[2] += dt * y[3];
+
+		//prédiction des nouvelles vitesses pour évaluer les accélérations au nouveau point
+		double vx = y[1], vAng = y[3];
+		y[1] = vx + 0.5 * dt * a0[1];
+		y[3] = vAng + 0.5 * dt * a0[3];
+		simulation.derivatives(t + dt, y, a1);
+
+		//second demi-pas des vitesses
+		y[1] = vx + 0.5 * dt * a1[1];
+		y[3] = vAng + 0.5 * dt * a1[3];
+		//le travail de la force est intégré avec la méthode des trapèzes
+		y[4] = w + 0.5 * dt * (a0[4] + a1[4]);
+
+		simulation.setVector(t + dt, y, a1);
+		simulation.getVector(yLast);
+		System.arraycopy(a1, 0, a0, 0, a0.length);
+		cached = true;
+	}
+}
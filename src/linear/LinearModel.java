@@ -0,0 +1,175 @@
+package alina.sim.linear;
+
+import alina.sim.Simulation;
+
+/**
+ * Cette classe correspond au modèle du pendule inversé linéarisé autour de la position verticale
+ * (theta = 0, vAng = 0), avec le vecteur d'état z = (x, vx, theta, vAng) et la force f :
+ * dz/dt = A z + B f, où (en remplaçant sin(theta) par theta, cos(theta) par 1 et en négligeant
+ * les termes d'ordre 2 des équations de Simulation.solveStep)
+ * ax = (m g theta + f) / M et aAng = ((M + m) g theta + f) / (l M).
+ *
+ * Lorsque la force est constante durant une période T (bloqueur d'ordre zéro), la solution exacte
+ * du modèle est z(T) = Phi z(0) + Gamma f, avec Phi = exp(A T) et Gamma = intégrale de exp(A s) B
+ * entre 0 et T. Ces deux matrices sont obtenues ensemble par l'exponentielle de la matrice augmentée
+ * [[A, B], [0, 0]] multipliée par T.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class LinearModel {
+	/**
+	 * La dimension du vecteur d'état du modèle linéarisé (x, vx, theta, vAng).
+	 */
+	public static final int DIM = 4;
+	/**
+	 * Les indices des composantes du vecteur d'état (dans le même ordre que Simulation.getVector).
+	 */
+	public static final int X = 0, VX = 1, THETA = 2, VANG = 3;
+
+	private final double M, m, l;
+	private final double[][] a;
+	private final double[] b;
+
+	/**
+	 * Le constructeur qui linéarise le modèle pour les paramètres physiques donnés.
+	 *
+	 * @param M la masse du chariot (kg)
+	 * @param m la masse du pendule (kg)
+	 * @param l la longueur de la tige (m)
+	 */
+	public LinearModel(double M, double m, double l) {
+		this.M = M;
+		this.m = m;
+		this.l = l;
+
+		double g = Simulation.g;
+		a = new double[DIM][DIM];
+		a[X][VX] = 1;
+		a[VX][THETA] = m * g / M;
+		a[THETA][VANG] = 1;
+		a[VANG][THETA] = (M + m) * g / (l * M);
+
+		b = new double[DIM];
+		b[VX] = 1 / M;
+		b[VANG] = 1 / (l * M);
+	}
+
+	/**
+	 * Le constructeur qui linéarise le modèle pour les paramètres physiques de l'état donné.
+	 * @param state l'état dont on prend M, m et l
+	 */
+	public LinearModel(Simulation.State state) {
+		this(state.M, state.m, state.l);
+	}
+
+	/**
+	 * Cette méthode permet de savoir si le modèle correspond aux paramètres physiques donnés.
+	 */
+	public boolean matches(double M, double m, double l) {
+		return this.M == M && this.m == m && this.l == l;
+	}
+
+	/**
+	 * Cette méthode retourne une copie de la matrice A du modèle.
+	 */
+	public double[][] getA() {
+		return Matrices.copy(a);
+	}
+
+	/**
+	 * Cette méthode retourne une copie du vecteur B du modèle.
+	 */
+	public double[] getB() {
+		return b.clone();
+	}
+
+	/**
+	 * Cette méthode calcule la dérivée dz/dt = A z + B f (sans allocation).
+	 *
+	 * @param z le vecteur d'état
+	 * @param f la force (N)
+	 * @param dzdt le tableau dans lequel la dérivée est stockée
+	 */
+	public void derivatives(double[] z, double f, double[] dzdt) {
+		for (int i = 0; i < DIM; i++) {
+			double sum = b[i] * f;
+			for (int j = 0; j < DIM; j++)
+				sum += a[i][j] * z[j];
+			dzdt[i] = sum;
+		}
+	}
+
+	/**
+	 * Cette méthode calcule la discrétisation exacte du modèle pour une force constante durant la période donnée.
+	 *
+	 * @param period la période (s)
+	 * @return le modèle discret correspondant
+	 */
+	public Discrete discretize(double period) {
+		double[][] augmented = new double[DIM + 1][DIM + 1];
+		for (int i = 0; i < DIM; i++) {
+			for (int j = 0; j < DIM; j++)
+				augmented[i][j] = a[i][j] * period;
+			augmented[i][DIM] = b[i] * period;
+		}
+
+		double[][] e = Matrices.exp(augmented);
+		double[] phi = new double[DIM * DIM];
+		double[] gamma = new double[DIM];
+		for (int i = 0; i < DIM; i++) {
+			for (int j = 0; j < DIM; j++)
+				phi[i * DIM + j] = e[i][j];
+			gamma[i] = e[i][DIM];
+		}
+		return new Discrete(period, phi, gamma);
+	}
+
+	/**
+	 * Cette classe interne immuable correspond au modèle discret z(k+1) = Phi z(k) + Gamma f(k)
+	 * pour une période donnée. Phi est stockée ligne par ligne dans un tableau à une dimension.
+	 */
+	public static final class Discrete {
+		/**
+		 * La période de discrétisation (s).
+		 */
+		public final double period;
+		private final double[] phi;
+		private final double[] gamma;
+
+		private Discrete(double period, double[] phi, double[] gamma) {
+			this.period = period;
+			this.phi = phi;
+			this.gamma = gamma;
+		}
+
+		/**
+		 * Cette méthode fait avancer le vecteur d'état d'une période (un produit matrice-vecteur 4x4, sans allocation).
+		 *
+		 * @param z le vecteur d'état au début de la période
+		 * @param f la force constante durant la période (N)
+		 * @param next le tableau dans lequel le vecteur d'état à la fin de la période est stocké (différent de z)
+		 */
+		public void step(double[] z, double f, double[] next) {
+			for (int i = 0; i < DIM; i++) {
+				int row = i * DIM;
+				next[i] = phi[row] * z[0] + phi[row + 1] * z[1] + phi[row + 2] * z[2] + phi[row + 3] * z[3]
+						+ gamma[i] * f;
+			}
+		}
+
+		/**
+		 * Cette méthode retourne le coefficient (i, j) de la matrice Phi.
+		 */
+		public double getPhi(int i, int j) {
+			return phi[i * DIM + j];
+		}
+
+		/**
+		 * Cette méthode retourne la composante i du vecteur Gamma.
+		 */
+		public double getGamma(int i) {
+			return gamma[i];
+		}
+	}
+}
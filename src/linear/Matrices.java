@@ -0,0 +1,176 @@
+package alina.sim.linear;
+
+/**
+ * Cette classe regroupe quelques opérations sur les petites matrices denses (tableaux double[][]
+ * de quelques lignes) dont ont besoin le modèle linéarisé et les stratégies qui l'utilisent.
+ * Ces opérations allouent leur résultat : elles sont faites une seule fois pour un jeu de
+ * paramètres, jamais pendant un pas de la simulation.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public final class Matrices {
+
+	private Matrices() {
+	}
+
+	/**
+	 * Cette méthode retourne la matrice identité de taille n.
+	 */
+	public static double[][] identity(int n) {
+		double[][] c = new double[n][n];
+		for (int i = 0; i < n; i++)
+			c[i][i] = 1;
+		return c;
+	}
+
+	/**
+	 * Cette méthode retourne une copie de la matrice a.
+	 */
+	public static double[][] copy(double[][] a) {
+		double[][] c = new double[a.length][];
+		for (int i = 0; i < a.length; i++)
+			c[i] = a[i].clone();
+		return c;
+	}
+
+	/**
+	 * Cette méthode retourne le produit a*b.
+	 */
+	public static double[][] multiply(double[][] a, double[][] b) {
+		int n = a.length, k = b.length, p = b[0].length;
+		double[][] c = new double[n][p];
+		for (int i = 0; i < n; i++)
+			for (int l = 0; l < k; l++) {
+				double ail = a[i][l];
+				if (ail == 0)
+					continue;
+				for (int j = 0; j < p; j++)
+					c[i][j] += ail * b[l][j];
+			}
+		return c;
+	}
+
+	/**
+	 * Cette méthode retourne le produit de la matrice a par le vecteur v.
+	 */
+	public static double[] multiply(double[][] a, double[] v) {
+		double[] c = new double[a.length];
+		for (int i = 0; i < a.length; i++) {
+			double sum = 0;
+			for (int j = 0; j < v.length; j++)
+				sum += a[i][j] * v[j];
+			c[i] = sum;
+		}
+		return c;
+	}
+
+	/**
+	 * Cette méthode retourne la combinaison linéaire alpha*a + beta*b.
+	 */
+	public static double[][] add(double alpha, double[][] a, double beta, double[][] b) {
+		int n = a.length, p = a[0].length;
+		double[][] c = new double[n][p];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < p; j++)
+				c[i][j] = alpha * a[i][j] + beta * b[i][j];
+		return c;
+	}
+
+	/**
+	 * Cette méthode retourne la transposée de la matrice a.
+	 */
+	public static double[][] transpose(double[][] a) {
+		int n = a.length, p = a[0].length;
+		double[][] c = new double[p][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < p; j++)
+				c[j][i] = a[i][j];
+		return c;
+	}
+
+	/**
+	 * Cette méthode retourne la norme 1 de la matrice a (la plus grande somme des valeurs absolues d'une colonne).
+	 */
+	public static double norm1(double[][] a) {
+		double norm = 0;
+		for (int j = 0; j < a[0].length; j++) {
+			double sum = 0;
+			for (int i = 0; i < a.length; i++)
+				sum += Math.abs(a[i][j]);
+			norm = Math.max(norm, sum);
+		}
+		return norm;
+	}
+
+	/**
+	 * Cette méthode calcule l'exponentielle de la matrice carrée a par la méthode "scaling and squaring" :
+	 * la matrice est divisée par 2^s pour que sa norme soit inférieure à 1/2, son exponentielle est
+	 * calculée par la série de Taylor (qui converge alors très vite), puis le résultat est élevé au carré s fois.
+	 */
+	public static double[][] exp(double[][] a) {
+		int n = a.length;
+		double norm = norm1(a);
+		int s = norm > 0.5 ? (int) Math.ceil(Math.log(norm / 0.5) / Math.log(2)) : 0;
+		double[][] scaled = add(Math.pow(2, -s), a, 0, a);
+
+		double[][] result = identity(n);
+		double[][] term = identity(n);
+		for (int k = 1; k <= 20; k++) {
+			term = multiply(term, scaled);
+			for (int i = 0; i < n; i++)
+				for (int j = 0; j < n; j++)
+					term[i][j] /= k;
+			result = add(1, result, 1, term);
+			if (norm1(term) <= 1e-18 * norm1(result))
+				break;
+		}
+
+		for (int i = 0; i < s; i++)
+			result = multiply(result, result);
+		return result;
+	}
+
+	/**
+	 * Cette méthode résout le système linéaire a*x = b (b peut contenir plusieurs colonnes)
+	 * par l'élimination de Gauss avec pivot partiel ; a et b ne sont pas modifiées.
+	 *
+	 * @throws IllegalArgumentException si la matrice a est singulière
+	 */
+	public static double[][] solve(double[][] a, double[][] b) {
+		int n = a.length, p = b[0].length;
+		double[][] lu = copy(a);
+		double[][] x = copy(b);
+
+		for (int k = 0; k < n; k++) {
+			int pivot = k;
+			for (int i = k + 1; i < n; i++)
+				if (Math.abs(lu[i][k]) > Math.abs(lu[pivot][k]))
+					pivot = i;
+			if (lu[pivot][k] == 0)
+				throw new IllegalArgumentException("singular matrix");
+
+			double[] row = lu[k]; lu[k] = lu[pivot]; lu[pivot] = row;
+			row = x[k]; x[k] = x[pivot]; x[pivot] = row;
+
+			for (int i = k + 1; i < n; i++) {
+				double factor = lu[i][k] / lu[k][k];
+				if (factor == 0)
+					continue;
+				for (int j = k; j < n; j++)
+					lu[i][j] -= factor * lu[k][j];
+				for (int j = 0; j < p; j++)
+					x[i][j] -= factor * x[k][j];
+			}
+		}
+
+		for (int k = n - 1; k >= 0; k--)
+			for (int j = 0; j < p; j++) {
+				double sum = x[k][j];
+				for (int i = k + 1; i < n; i++)
+					sum -= lu[k][i] * x[i][j];
+				x[k][j] = sum / lu[k][k];
+			}
+		return x;
+	}
+}
@@ -0,0 +1,128 @@
+package alina.sim.linear;
+
+/**
+ * Cette classe résout l'équation algébrique de Riccati en temps continu
+ * A' P + P A - P B R^-1 B' P + Q = 0, dont la solution donne le gain optimal K = R^-1 B' P
+ * de la commande linéaire quadratique (LQR), ainsi que sa version en temps discret.
+ *
+ * La méthode utilisée est celle de la fonction signe de la matrice hamiltonienne
+ * H = [[A, -B R^-1 B'], [-Q, -A']] : l'itération de Newton Z = (Z + Z^-1) / 2 (avec un facteur
+ * d'échelle qui accélère la convergence) converge vers W = sign(H), et P est la solution du système
+ * [[W12], [W22 + I]] P = -[[W11 + I], [W21]], résolu au sens des moindres carrés.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public final class Riccati {
+	private static final int MAX_ITERATIONS = 100;
+	private static final double TOLERANCE = 1e-13;
+
+	private Riccati() {
+	}
+
+	/**
+	 * Cette méthode résout l'équation de Riccati en temps continu.
+	 *
+	 * @param a la matrice A (n x n)
+	 * @param b la matrice B (n x p)
+	 * @param q la matrice de pondération de l'état Q (n x n, symétrique, semi-définie positive)
+	 * @param r la matrice de pondération de la commande R (p x p, symétrique, définie positive)
+	 * @return la solution stabilisante P (n x n)
+	 * @throws IllegalArgumentException si l'itération ne converge pas (système non stabilisable)
+	 */
+	public static double[][] care(double[][] a, double[][] b, double[][] q, double[][] r) {
+		int n = a.length;
+		double[][] g = Matrices.multiply(b, Matrices.solve(r, Matrices.transpose(b)));
+
+		double[][] z = new double[2 * n][2 * n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++) {
+				z[i][j] = a[i][j];
+				z[i][n + j] = -g[i][j];
+				z[n + i][j] = -q[i][j];
+				z[n + i][n + j] = -a[j][i];
+			}
+
+		double[][] identity = Matrices.identity(2 * n);
+		boolean converged = false;
+		for (int k = 0; k < MAX_ITERATIONS && !converged; k++) {
+			double[][] inverse = Matrices.solve(z, identity);
+			//le facteur d'échelle c = sqrt(|Z^-1| / |Z|) rend les premières itérations beaucoup plus rapides
+			double c = Math.sqrt(Matrices.norm1(inverse) / Matrices.norm1(z));
+			double[][] next = Matrices.add(0.5 * c, z, 0.5 / c, inverse);
+			converged = Matrices.norm1(Matrices.add(1, next, -1, z)) <= TOLERANCE * Matrices.norm1(next);
+			z = next;
+		}
+		if (!converged)
+			throw new IllegalArgumentException("Riccati iteration did not converge");
+
+		//[[W12], [W22 + I]] P = -[[W11 + I], [W21]]
+		double[][] lhs = new double[2 * n][n];
+		double[][] rhs = new double[2 * n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++) {
+				lhs[i][j] = z[i][n + j];
+				lhs[n + i][j] = z[n + i][n + j] + (i == j ? 1 : 0);
+				rhs[i][j] = -z[i][j] - (i == j ? 1 : 0);
+				rhs[n + i][j] = -z[n + i][j];
+			}
+		double[][] lhsT = Matrices.transpose(lhs);
+		double[][] p = Matrices.solve(Matrices.multiply(lhsT, lhs), Matrices.multiply(lhsT, rhs));
+
+		//on symétrise le résultat pour éliminer les erreurs d'arrondi
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < i; j++)
+				p[i][j] = p[j][i] = 0.5 * (p[i][j] + p[j][i]);
+		return p;
+	}
+
+	/**
+	 * Cette méthode résout l'équation de Riccati en temps discret
+	 * P = Q + Phi' P Phi - Phi' P Gamma (R + Gamma' P Gamma)^-1 Gamma' P Phi
+	 * en répétant la récurrence de Riccati (qui converge pour un système stabilisable) à partir de P = Q.
+	 * La récurrence est écrite sous la forme P = Q + (Phi - Gamma K)' P (Phi - Gamma K) + K' R K, avec
+	 * K = (R + Gamma' P Gamma)^-1 Gamma' P Phi, qui garde P symétrique et définie positive malgré les arrondis.
+	 *
+	 * @param phi la matrice de transition Phi (n x n)
+	 * @param gamma la matrice de commande Gamma (n x p)
+	 * @param q la matrice de pondération de l'état Q (n x n)
+	 * @param r la matrice de pondération de la commande R (p x p)
+	 * @return la solution P (n x n)
+	 * @throws IllegalArgumentException si la récurrence ne converge pas
+	 */
+	public static double[][] dare(double[][] phi, double[][] gamma, double[][] q, double[][] r) {
+		int n = phi.length;
+		double[][] gammaT = Matrices.transpose(gamma);
+		double[][] p = Matrices.copy(q);
+		for (int k = 0; k < 100 * MAX_ITERATIONS; k++) {
+			double[][] s = Matrices.add(1, r, 1, Matrices.multiply(gammaT, Matrices.multiply(p, gamma)));
+			double[][] gain = Matrices.solve(s, Matrices.multiply(gammaT, Matrices.multiply(p, phi)));
+			double[][] closed = Matrices.add(1, phi, -1, Matrices.multiply(gamma, gain));
+			double[][] next = Matrices.add(1, q, 1, Matrices.add(1,
+					Matrices.multiply(Matrices.transpose(closed), Matrices.multiply(p, closed)), 1,
+					Matrices.multiply(Matrices.transpose(gain), Matrices.multiply(r, gain))));
+			for (int i = 0; i < n; i++)
+				for (int j = 0; j < i; j++)
+					next[i][j] = next[j][i] = 0.5 * (next[i][j] + next[j][i]);
+			boolean converged = Matrices.norm1(Matrices.add(1, next, -1, p)) <= TOLERANCE * Matrices.norm1(next);
+			p = next;
+			if (converged)
+				return p;
+		}
+		throw new IllegalArgumentException("Riccati recursion did not converge");
+	}
+
+	/**
+	 * Cette méthode calcule le gain optimal K = R^-1 B' P de la commande u = -K x.
+	 *
+	 * @param a la matrice A (n x n)
+	 * @param b la matrice B (n x p)
+	 * @param q la matrice de pondération de l'état Q (n x n)
+	 * @param r la matrice de pondération de la commande R (p x p)
+	 * @return le gain K (p x n)
+	 */
+	public static double[][] lqr(double[][] a, double[][] b, double[][] q, double[][] r) {
+		double[][] p = care(a, b, q, r);
+		return Matrices.solve(r, Matrices.multiply(Matrices.transpose(b), p));
+	}
+}
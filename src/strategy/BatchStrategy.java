@@ -0,0 +1,28 @@
+package alina.sim.strategy;
+
+import alina.sim.BatchSimulation;
+
+/**
+ * Interface publique qui doit être implémentée par les stratégies capables de calculer
+ * en une seule fois la force à appliquer à tous les pendules d'une simulation par lots.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public interface BatchStrategy {
+
+	/**
+	 * Cette méthode permet de remettre les valeurs du début.
+	 */
+	void reset();
+
+	/**
+	 * La méthode react reçoit en paramètre la simulation par lots, dont les colonnes
+	 * (theta, vAng, x, vx, ...) décrivent l'état actuel de chaque pendule.
+	 * Elle calcule et stocke dans le tableau force la force à appliquer à chaque chariot.
+	 * 
+	 * @param batch la simulation par lots
+	 * @param force le tableau dans lequel les forces sont stockées (une par pendule)
+	 */
+	void react(BatchSimulation batch, double[] force);
+}
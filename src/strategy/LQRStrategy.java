@@ -0,0 +1,337 @@
+package alina.sim.strategy;
+
+import alina.sim.Simulation;
+import alina.sim.linear.LinearModel;
+import alina.sim.linear.Riccati;
+import net.miginfocom.swing.MigLayout;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cette classe implémente la commande linéaire quadratique (LQR) : le modèle est linéarisé autour
+ * de la position verticale (voir LinearModel) et la force f = -K z minimise l'intégrale de
+ * z' Q z + R f^2, avec z = (x, vx, theta, vAng), Q = diag(qx, qvx, qtheta, qvAng) et les
+ * pondérations choisies par l'utilisateur.
+ *
+ * Le gain K est obtenu en résolvant l'équation de Riccati (voir Riccati.care), ce qui n'est fait
+ * qu'une seule fois pour chaque combinaison (M, m, l, Q, R) : les gains calculés sont gardés dans
+ * un cache partagé par toutes les instances, de sorte que les remises à zéro et les simulations
+ * d'un balayage avec les mêmes paramètres ne résolvent pas l'équation une seconde fois. Le cache
+ * ne garde que les CACHE_SIZE derniers gains utilisés : une campagne dont les paramètres sont tirés
+ * au hasard n'y accumule pas un gain par simulation.
+ * La méthode react se contente ensuite d'un produit scalaire à quatre termes, sans allocation.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class LQRStrategy implements Strategy {
+	/**
+	 * Le nombre maximum de gains gardés dans le cache.
+	 */
+	public static final int CACHE_SIZE = 64;
+	/**
+	 * Le cache des gains, partagé par toutes les instances (les clés contiennent tous les paramètres),
+	 * dans l'ordre d'utilisation : le gain utilisé le moins récemment est retiré lorsque le cache est plein.
+	 * Il est protégé par son propre verrou (l'équation de Riccati est résolue en dehors).
+	 */
+	private static final Map<Key, Gain> cache = new LinkedHashMap<Key, Gain>(2 * CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Gain> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Les pondérations courantes (remplacées d'un seul coup par les sliders).
+	 */
+	private volatile Weights weights;
+	/**
+	 * Le dernier gain utilisé, qui sert tant que les paramètres physiques et les pondérations ne changent pas.
+	 */
+	private volatile Gain gain;
+	private JPanel panel;
+
+	/**
+	 * Le constructeur sans arguments, avec les pondérations Q = diag(1, 1, 10, 1) et R = 0.01.
+	 */
+	public LQRStrategy() {
+		this(new Weights(1, 1, 10, 1, 0.01));
+	}
+
+	/**
+	 * Le constructeur avec les pondérations données.
+	 * @param weights les pondérations de l'état et de la force
+	 */
+	public LQRStrategy(Weights weights) {
+		this.weights = weights;
+	}
+
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public double react(Simulation.State state) {
+		Gain k = gain;
+		if (k == null || k.M != state.M || k.m != state.m || k.l != state.l || k.weights != weights)
+			gain = k = getGain(state.M, state.m, state.l, weights);
+
+		return -(k.kx * state.x + k.kvx * state.vx + k.ktheta * state.theta + k.kvAng * state.vAng);
+	}
+
+	/**
+	 * Cette méthode retourne le gain pour les paramètres donnés, en résolvant l'équation de Riccati
+	 * seulement s'il n'est pas déjà dans le cache.
+	 *
+	 * @param M la masse du chariot (kg)
+	 * @param m la masse du pendule (kg)
+	 * @param l la longueur de la tige (m)
+	 * @param weights les pondérations
+	 * @return le gain correspondant
+	 */
+	public static Gain getGain(double M, double m, double l, Weights weights) {
+		Key key = new Key(M, m, l, weights);
+		Gain k;
+		synchronized (cache) {
+			k = cache.get(key);
+		}
+		if (k == null) {
+			k = solve(M, m, l, weights);
+			synchronized (cache) {
+				Gain previous = cache.get(key);
+				if (previous != null)
+					k = previous;
+				else
+					cache.put(key, k);
+			}
+		}
+		return k;
+	}
+
+	private static Gain solve(double M, double m, double l, Weights weights) {
+		LinearModel model = new LinearModel(M, m, l);
+		double[] b = model.getB();
+		double[][] bColumn = new double[LinearModel.DIM][1];
+		for (int i = 0; i < LinearModel.DIM; i++)
+			bColumn[i][0] = b[i];
+
+		double[][] q = new double[LinearModel.DIM][LinearModel.DIM];
+		q[LinearModel.X][LinearModel.X] = weights.qx;
+		q[LinearModel.VX][LinearModel.VX] = weights.qvx;
+		q[LinearModel.THETA][LinearModel.THETA] = weights.qtheta;
+		q[LinearModel.VANG][LinearModel.VANG] = weights.qvAng;
+
+		double[][] k = Riccati.lqr(model.getA(), bColumn, q, new double[][] {{weights.r}});
+		return new Gain(M, m, l, weights, k[0]);
+	}
+
+	/**
+	 * Cette méthode vide le cache des gains.
+	 */
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de gains dans le cache.
+	 */
+	public static int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Cette méthode retourne les pondérations courantes.
+	 */
+	public Weights getWeights() {
+		return weights;
+	}
+
+	/**
+	 * Cette méthode remplace les pondérations (le gain correspondant est calculé au prochain appel de react).
+	 * @param weights les nouvelles pondérations
+	 */
+	public void setWeights(Weights weights) {
+		this.weights = weights;
+	}
+
+	/**
+	 * Le panneau n'est créé qu'au premier appel (voir SimpleStrategy.getPanel).
+	 */
+	@Override
+	public JPanel getPanel() {
+		if (panel == null)
+			panel = WeightPanel.create(this);
+		return panel;
+	}
+
+	/**
+	 * Cette classe interne immuable regroupe les pondérations de l'état (diagonale de Q) et de la force (R).
+	 */
+	public static final class Weights {
+		public final double qx, qvx, qtheta, qvAng, r;
+
+		public Weights(double qx, double qvx, double qtheta, double qvAng, double r) {
+			this.qx = qx;
+			this.qvx = qvx;
+			this.qtheta = qtheta;
+			this.qvAng = qvAng;
+			this.r = r;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Weights))
+				return false;
+			Weights w = (Weights) o;
+			return Double.compare(qx, w.qx) == 0 && Double.compare(qvx, w.qvx) == 0
+					&& Double.compare(qtheta, w.qtheta) == 0 && Double.compare(qvAng, w.qvAng) == 0
+					&& Double.compare(r, w.r) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = Double.hashCode(qx);
+			h = 31 * h + Double.hashCode(qvx);
+			h = 31 * h + Double.hashCode(qtheta);
+			h = 31 * h + Double.hashCode(qvAng);
+			return 31 * h + Double.hashCode(r);
+		}
+	}
+
+	/**
+	 * Cette classe interne immuable correspond au gain calculé pour des paramètres physiques et des pondérations.
+	 */
+	public static final class Gain {
+		private final double M, m, l;
+		private final Weights weights;
+		public final double kx, kvx, ktheta, kvAng;
+
+		private Gain(double M, double m, double l, Weights weights, double[] k) {
+			this.M = M;
+			this.m = m;
+			this.l = l;
+			this.weights = weights;
+			this.kx = k[LinearModel.X];
+			this.kvx = k[LinearModel.VX];
+			this.ktheta = k[LinearModel.THETA];
+			this.kvAng = k[LinearModel.VANG];
+		}
+	}
+
+	/**
+	 * Cette classe interne correspond à la clé du cache des gains.
+	 */
+	private static final class Key {
+		private final double M, m, l;
+		private final Weights weights;
+
+		Key(double M, double m, double l, Weights weights) {
+			this.M = M;
+			this.m = m;
+			this.l = l;
+			this.weights = weights;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return Double.compare(M, k.M) == 0 && Double.compare(m, k.m) == 0 && Double.compare(l, k.l) == 0
+					&& weights.equals(k.weights);
+		}
+
+		@Override
+		public int hashCode() {
+			int h = Double.hashCode(M);
+			h = 31 * h + Double.hashCode(m);
+			h = 31 * h + Double.hashCode(l);
+			return 31 * h + weights.hashCode();
+		}
+	}
+
+	/**
+	 * Cette classe interne construit le panneau avec les sliders des pondérations (en puissances de 10).
+	 */
+	private static class WeightPanel {
+		private final LQRStrategy strategy;
+		private final JSlider xSlider, thetaSlider, rSlider;
+		private final JLabel xLabel, thetaLabel, rLabel;
+
+		private WeightPanel(final LQRStrategy strategy) {
+			this.strategy = strategy;
+			Weights w = strategy.getWeights();
+
+			xSlider = createSlider(w.qx);
+			thetaSlider = createSlider(w.qtheta);
+			rSlider = createSlider(w.r);
+			xLabel = new JLabel();
+			thetaLabel = new JLabel();
+			rLabel = new JLabel();
+			updateLabels();
+
+			ChangeListener listener = new ChangeListener() {
+				@Override
+				public void stateChanged(ChangeEvent ce) {
+					Weights w = strategy.getWeights();
+					strategy.setWeights(new Weights(Math.pow(10, xSlider.getValue()), w.qvx,
+							Math.pow(10, thetaSlider.getValue()), w.qvAng, Math.pow(10, rSlider.getValue())));
+					updateLabels();
+				}
+			};
+			xSlider.addChangeListener(listener);
+			thetaSlider.addChangeListener(listener);
+			rSlider.addChangeListener(listener);
+		}
+
+		private static JSlider createSlider(double weight) {
+			JSlider slider = new JSlider(-3, 3, (int) Math.round(Math.log10(weight)));
+			slider.setForeground(Color.RED);
+			slider.setMajorTickSpacing(1);
+			slider.setPaintTicks(true);
+			slider.setPaintLabels(true);
+			slider.setAlignmentX(Component.LEFT_ALIGNMENT);
+			return slider;
+		}
+
+		private void updateLabels() {
+			Weights w = strategy.getWeights();
+			xLabel.setText(String.format("Position weight : %.3g", w.qx));
+			thetaLabel.setText(String.format("Angle weight : %.3g", w.qtheta));
+			rLabel.setText(String.format("Force weight : %.3g", w.r));
+		}
+
+		static JPanel create(LQRStrategy strategy) {
+			JPanel panel = new JPanel();
+			new WeightPanel(strategy).initPanel(panel);
+			return panel;
+		}
+
+		private void initPanel(JPanel panel) {
+			Font police = new Font("Arial", Font.BOLD, 12);
+			panel.setLayout(new MigLayout("wrap 1"));
+			for (JLabel label : new JLabel[] {xLabel, thetaLabel, rLabel})
+				label.setFont(police);
+			panel.add(xLabel);
+			panel.add(xSlider);
+			panel.add(thetaLabel);
+			panel.add(thetaSlider);
+			panel.add(rLabel);
+			panel.add(rSlider);
+		}
+	}
+}
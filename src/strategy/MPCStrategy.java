@@ -0,0 +1,589 @@
+package alina.sim.strategy;
+
+import alina.sim.Simulation;
+import alina.sim.linear.LinearModel;
+import alina.sim.linear.Matrices;
+import alina.sim.linear.Riccati;
+import net.miginfocom.swing.MigLayout;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.util.Arrays;
+
+/**
+ * Cette classe implémente la commande prédictive (MPC) : à chaque période, la suite des forces
+ * des N périodes suivantes est choisie en minimisant, sur le modèle linéarisé discret (voir LinearModel),
+ * la somme des z' Q z et des R f^2 (plus un coût terminal donné par l'équation de Riccati discrète),
+ * en respectant les limites de la force |f| &lt;= fMax et de la course du chariot |x| &lt;= xMax.
+ * Seule la première force est appliquée, et elle est maintenue durant la période.
+ *
+ * Les prédictions sont exprimées en fonction des seules forces (formulation condensée), ce qui donne
+ * un problème quadratique à N variables, résolu par la méthode ADMM (comme le solveur OSQP) : la matrice
+ * du système linéaire de chaque itération ne dépend que du modèle et est inversée une seule fois.
+ * Chaque résolution part de la solution précédente décalée d'une période et s'arrête dès que les
+ * résidus sont assez petits ou que le budget de temps est épuisé ; dans ce dernier cas, la suite
+ * de forces calculée précédemment (le dernier plan) est utilisée à la place, tant qu'elle n'est pas
+ * épuisée (sinon, la solution approchée de la dernière résolution est utilisée).
+ *
+ * Les temps de résolution des dernières périodes et les nombres d'itérations sont gardés pour
+ * vérifier que la résolution tient dans la période du contrôleur. Cette stratégie a un état
+ * (le plan et les statistiques) : une instance ne doit servir qu'à une seule simulation à la fois.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class MPCStrategy implements Strategy {
+	/**
+	 * Les paramètres de la méthode ADMM : régularisation et relaxation.
+	 */
+	private static final double SIGMA = 1e-6, ALPHA = 1.6;
+	/**
+	 * Le nombre de temps de résolution gardés pour les percentiles.
+	 */
+	private static final int HISTORY = 1024;
+	/**
+	 * La fraction de la période dont une résolution peut être avancée (voir react).
+	 */
+	private static final double SOLVE_TOLERANCE = 1e-6;
+
+	/**
+	 * L'horizon (nombre de périodes) et la période du contrôleur (s).
+	 */
+	private final int horizon;
+	private final double period;
+	/**
+	 * Les pondérations de l'état (diagonale de Q) et de la force (R).
+	 */
+	private final double[] q;
+	private final double r;
+	/**
+	 * Les limites de la force (N) et de la course du chariot (m), modifiables par les sliders.
+	 */
+	private volatile double maxForce = 50, maxTravel = 2;
+	/**
+	 * Le budget de temps d'une résolution (ns), le nombre maximum d'itérations et la tolérance sur les résidus.
+	 */
+	private long budget = 200000;
+	private int maxIterations = 200;
+	private double tolerance = 1e-3;
+	/**
+	 * Les pénalités de la méthode ADMM pour les limites de la force et pour celles de la course du chariot
+	 * (la matrice du système linéaire en dépend).
+	 */
+	private double rho = 0.1, rhoTravel = 10;
+	/**
+	 * La pénalité de chaque ligne des contraintes.
+	 */
+	private final double[] penalty;
+
+	/**
+	 * Le modèle condensé, calculé pour les derniers paramètres physiques rencontrés.
+	 */
+	private LinearModel model;
+	private double[][] h, f, c, d, kInverse;
+
+	/**
+	 * Les tableaux de travail de la méthode ADMM (alloués une fois pour toutes).
+	 */
+	private final double[] z0 = new double[LinearModel.DIM];
+	private final double[] u, uTilde, g, rhs, plan;
+	private final double[] w, wTilde, y, v, lower, upper;
+	private boolean hasPlan;
+	private int planStep;
+	private double force, nextSolve;
+
+	/**
+	 * Les statistiques des résolutions depuis le dernier reset.
+	 */
+	private final long[] solveTimes = new long[HISTORY];
+	private long solves, overruns, iterations;
+	private int maxIterationCount;
+	private JPanel panel;
+
+	/**
+	 * Le constructeur sans arguments : horizon de 20 périodes de 20 ms, Q = diag(1, 1, 10, 1) et R = 0.01.
+	 */
+	public MPCStrategy() {
+		this(20, 0.02, new double[] {1, 1, 10, 1}, 0.01);
+	}
+
+	/**
+	 * Le constructeur avec l'horizon, la période et les pondérations.
+	 *
+	 * @param horizon le nombre de périodes de l'horizon de prédiction
+	 * @param period la période du contrôleur (s)
+	 * @param q la diagonale de Q (x, vx, theta, vAng)
+	 * @param r la pondération de la force
+	 */
+	public MPCStrategy(int horizon, double period, double[] q, double r) {
+		this.horizon = horizon;
+		this.period = period;
+		this.q = q.clone();
+		this.r = r;
+
+		u = new double[horizon];
+		uTilde = new double[horizon];
+		g = new double[horizon];
+		rhs = new double[horizon];
+		plan = new double[horizon];
+		w = new double[2 * horizon];
+		wTilde = new double[2 * horizon];
+		y = new double[2 * horizon];
+		v = new double[2 * horizon];
+		lower = new double[2 * horizon];
+		upper = new double[2 * horizon];
+		penalty = new double[2 * horizon];
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(u, 0);
+		Arrays.fill(y, 0);
+		hasPlan = false;
+		force = 0;
+		nextSolve = Double.NEGATIVE_INFINITY;
+		solves = 0;
+		overruns = 0;
+		iterations = 0;
+		maxIterationCount = 0;
+	}
+
+	/**
+	 * La force est recalculée au début de chaque période et maintenue jusqu'à la suivante, même si la
+	 * stratégie est appelée plus souvent (par exemple à chaque évaluation des dérivées).
+	 */
+	@Override
+	public double react(Simulation.State state) {
+		if (state.t < nextSolve)
+			return force;
+		//le temps de la simulation est une somme de pas : la résolution suivante est avancée d'une petite
+		//fraction de la période pour que l'erreur d'arrondi accumulée ne fasse pas sauter une période
+		nextSolve = state.t + period * (1 - SOLVE_TOLERANCE);
+
+		if (model == null || !model.matches(state.M, state.m, state.l))
+			setup(state.M, state.m, state.l);
+
+		z0[LinearModel.X] = state.x;
+		z0[LinearModel.VX] = state.vx;
+		z0[LinearModel.THETA] = state.theta;
+		z0[LinearModel.VANG] = state.vAng;
+
+		if (solve()) {
+			System.arraycopy(u, 0, plan, 0, horizon);
+			hasPlan = true;
+			planStep = 0;
+		} else if (hasPlan && planStep + 1 < horizon) {
+			overruns++;
+			planStep++;
+		} else {
+			//pas de plan (ou plan épuisé) : on utilise la solution approchée (les forces sont ramenées dans les limites)
+			overruns++;
+			System.arraycopy(u, 0, plan, 0, horizon);
+			hasPlan = true;
+			planStep = 0;
+		}
+
+		double fMax = maxForce;
+		force = hasPlan ? plan[Math.min(planStep, horizon - 1)] : 0;
+		force = Math.max(-fMax, Math.min(fMax, force));
+		return force;
+	}
+
+	/**
+	 * Cette méthode résout le problème quadratique pour l'état z0, en partant de la solution précédente
+	 * décalée d'une période.
+	 *
+	 * @return vrai si les résidus sont devenus assez petits avant la fin du budget
+	 */
+	private boolean solve() {
+		long start = System.nanoTime();
+		int n = horizon;
+		double fMax = maxForce, xMax = maxTravel;
+
+		for (int i = 0; i < n; i++) {
+			g[i] = dot(f[i], z0);
+			lower[i] = -fMax;
+			upper[i] = fMax;
+			double offset = dot(d[i], z0);
+			lower[n + i] = -xMax - offset;
+			upper[n + i] = xMax - offset;
+		}
+
+		//démarrage à chaud : on décale la solution et les multiplicateurs d'une période
+		shift(u, 0, n);
+		shift(y, 0, n);
+		shift(y, n, n);
+		multiplyA(u, w);
+		for (int i = 0; i < 2 * n; i++)
+			w[i] = clamp(w[i], lower[i], upper[i]);
+
+		boolean converged = false;
+		int k = 0;
+		while (k < maxIterations) {
+			k++;
+			//(H + sigma I + rho A'A) uTilde = sigma u - g + A'(rho w - y)
+			for (int i = 0; i < 2 * n; i++)
+				v[i] = penalty[i] * w[i] - y[i];
+			multiplyAT(v, rhs);
+			for (int i = 0; i < n; i++)
+				rhs[i] += SIGMA * u[i] - g[i];
+			multiply(kInverse, rhs, uTilde);
+			multiplyA(uTilde, wTilde);
+
+			for (int i = 0; i < n; i++)
+				u[i] = ALPHA * uTilde[i] + (1 - ALPHA) * u[i];
+			for (int i = 0; i < 2 * n; i++) {
+				double relaxed = ALPHA * wTilde[i] + (1 - ALPHA) * w[i];
+				double next = clamp(relaxed + y[i] / penalty[i], lower[i], upper[i]);
+				y[i] += penalty[i] * (relaxed - next);
+				w[i] = next;
+			}
+
+			if (residualsSmall()) {
+				converged = true;
+				break;
+			}
+			if (System.nanoTime() - start > budget)
+				break;
+		}
+
+		long time = System.nanoTime() - start;
+		solveTimes[(int) (solves % HISTORY)] = time;
+		solves++;
+		iterations += k;
+		maxIterationCount = Math.max(maxIterationCount, k);
+		return converged;
+	}
+
+	/**
+	 * Cette méthode vérifie les résidus primal (|A u - w|) et dual (|H u + g + A'y|) de la méthode ADMM.
+	 */
+	private boolean residualsSmall() {
+		int n = horizon;
+		multiplyA(u, v);
+		double primal = 0, scale = 0;
+		for (int i = 0; i < 2 * n; i++) {
+			primal = Math.max(primal, Math.abs(v[i] - w[i]));
+			scale = Math.max(scale, Math.max(Math.abs(v[i]), Math.abs(w[i])));
+		}
+		if (primal > tolerance * (1 + scale))
+			return false;
+
+		multiplyAT(y, rhs);
+		double dual = 0;
+		scale = 0;
+		for (int i = 0; i < n; i++) {
+			double hu = dot(h[i], u);
+			dual = Math.max(dual, Math.abs(hu + g[i] + rhs[i]));
+			scale = Math.max(scale, Math.max(Math.abs(hu), Math.max(Math.abs(g[i]), Math.abs(rhs[i]))));
+		}
+		return dual <= tolerance * (1 + scale);
+	}
+
+	/**
+	 * Cette méthode calcule le produit par A = [I ; C] (les forces, puis les positions prédites du chariot).
+	 */
+	private void multiplyA(double[] x, double[] out) {
+		int n = horizon;
+		for (int i = 0; i < n; i++) {
+			out[i] = x[i];
+			double sum = 0;
+			for (int j = 0; j <= i; j++)
+				sum += c[i][j] * x[j];
+			out[n + i] = sum;
+		}
+	}
+
+	/**
+	 * Cette méthode calcule le produit par A' = [I, C'].
+	 */
+	private void multiplyAT(double[] x, double[] out) {
+		int n = horizon;
+		for (int j = 0; j < n; j++) {
+			double sum = x[j];
+			for (int i = j; i < n; i++)
+				sum += c[i][j] * x[n + i];
+			out[j] = sum;
+		}
+	}
+
+	private static void multiply(double[][] a, double[] x, double[] out) {
+		for (int i = 0; i < a.length; i++)
+			out[i] = dot(a[i], x);
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	private static double clamp(double x, double min, double max) {
+		return x < min ? min : (x > max ? max : x);
+	}
+
+	/**
+	 * Cette méthode décale d'une case vers le début les n valeurs à partir de from (la dernière est répétée).
+	 */
+	private static void shift(double[] x, int from, int n) {
+		System.arraycopy(x, from + 1, x, from, n - 1);
+	}
+
+	/**
+	 * Cette méthode calcule le modèle condensé pour les paramètres physiques donnés : les prédictions
+	 * z(k) = Phi^k z0 + somme des Phi^(k-1-j) Gamma u(j) donnent la matrice H et le terme linéaire g = F z0
+	 * du coût, ainsi que les positions prédites du chariot x(k) = C u + D z0.
+	 */
+	private void setup(double M, double m, double l) {
+		int n = horizon, dim = LinearModel.DIM;
+		model = new LinearModel(M, m, l);
+		LinearModel.Discrete discrete = model.discretize(period);
+
+		double[][] phi = new double[dim][dim];
+		double[][] gamma = new double[dim][1];
+		for (int i = 0; i < dim; i++) {
+			for (int j = 0; j < dim; j++)
+				phi[i][j] = discrete.getPhi(i, j);
+			gamma[i][0] = discrete.getGamma(i);
+		}
+
+		double[][] qMatrix = new double[dim][dim];
+		for (int i = 0; i < dim; i++)
+			qMatrix[i][i] = q[i];
+		double[][] terminal = Riccati.dare(phi, gamma, qMatrix, new double[][] {{r}});
+
+		//puissances de Phi et réponses impulsionnelles G(i) = Phi^i Gamma
+		double[][][] powers = new double[n + 1][][];
+		powers[0] = Matrices.identity(dim);
+		for (int k = 1; k <= n; k++)
+			powers[k] = Matrices.multiply(phi, powers[k - 1]);
+		double[][] impulse = new double[n][];
+		for (int i = 0; i < n; i++) {
+			double[][] column = Matrices.multiply(powers[i], gamma);
+			impulse[i] = new double[dim];
+			for (int j = 0; j < dim; j++)
+				impulse[i][j] = column[j][0];
+		}
+
+		h = new double[n][n];
+		f = new double[n][dim];
+		c = new double[n][n];
+		d = new double[n][dim];
+		for (int k = 1; k <= n; k++) {
+			double[][] weight = k == n ? terminal : qMatrix;
+			for (int i = 0; i < k; i++) {
+				double[] wg = Matrices.multiply(weight, impulse[k - 1 - i]);
+				for (int j = 0; j < k; j++)
+					h[i][j] += dot(wg, impulse[k - 1 - j]);
+				double[][] wPhi = Matrices.multiply(weight, powers[k]);
+				for (int col = 0; col < dim; col++)
+					for (int row = 0; row < dim; row++)
+						f[i][col] += impulse[k - 1 - i][row] * wPhi[row][col];
+				c[k - 1][i] = impulse[k - 1 - i][LinearModel.X];
+			}
+			d[k - 1] = powers[k][LinearModel.X].clone();
+		}
+		for (int i = 0; i < n; i++)
+			h[i][i] += r;
+
+		//matrice du système linéaire de la méthode ADMM : H + sigma I + rho I + rhoTravel C'C
+		double[][] kkt = Matrices.add(1, h, rhoTravel, Matrices.multiply(Matrices.transpose(c), c));
+		for (int i = 0; i < n; i++) {
+			kkt[i][i] += SIGMA + rho;
+			penalty[i] = rho;
+			penalty[n + i] = rhoTravel;
+		}
+		kInverse = Matrices.solve(kkt, Matrices.identity(n));
+
+		Arrays.fill(u, 0);
+		Arrays.fill(y, 0);
+		hasPlan = false;
+	}
+
+	/**
+	 * Cette méthode retourne le percentile donné des temps de résolution des dernières périodes.
+	 *
+	 * @param p le percentile (entre 0 et 100)
+	 * @return le temps de résolution (µs), ou NaN s'il n'y a pas encore eu de résolution
+	 */
+	public double getSolveTimePercentile(double p) {
+		int count = (int) Math.min(solves, HISTORY);
+		if (count == 0)
+			return Double.NaN;
+		long[] sorted = Arrays.copyOf(solveTimes, count);
+		Arrays.sort(sorted);
+		int index = (int) Math.min(count - 1, Math.max(0, Math.ceil(p / 100 * count) - 1));
+		return sorted[index] * 1e-3;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de résolutions depuis le dernier reset.
+	 */
+	public long getSolves() {
+		return solves;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de résolutions qui ont dépassé le budget (ou le nombre maximum
+	 * d'itérations) et pour lesquelles le dernier plan a été réutilisé.
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre moyen d'itérations par résolution.
+	 */
+	public double getMeanIterations() {
+		return solves > 0 ? (double) iterations / solves : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode retourne le plus grand nombre d'itérations d'une résolution.
+	 */
+	public int getMaxIterations() {
+		return maxIterationCount;
+	}
+
+	/**
+	 * Cette méthode retourne un résumé des statistiques des résolutions.
+	 */
+	public String getReport() {
+		return String.format("solves=%d overruns=%d iterations mean=%.1f max=%d solve time p50=%.1f p90=%.1f p99=%.1f max=%.1f us",
+				solves, overruns, getMeanIterations(), maxIterationCount, getSolveTimePercentile(50),
+				getSolveTimePercentile(90), getSolveTimePercentile(99), getSolveTimePercentile(100));
+	}
+
+	/**
+	 * Cette méthode permet de changer le budget de temps d'une résolution.
+	 * @param budget le budget (µs)
+	 */
+	public void setBudget(double budget) {
+		this.budget = (long) (budget * 1000);
+	}
+
+	/**
+	 * Cette méthode permet de changer le nombre maximum d'itérations d'une résolution.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Cette méthode permet de changer la tolérance relative sur les résidus.
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Cette méthode permet de changer les pénalités de la méthode ADMM (la matrice du système est recalculée).
+	 *
+	 * @param rho la pénalité des limites de la force
+	 * @param rhoTravel la pénalité des limites de la course du chariot
+	 */
+	public void setPenalty(double rho, double rhoTravel) {
+		this.rho = rho;
+		this.rhoTravel = rhoTravel;
+		model = null;
+	}
+
+	/**
+	 * Cette méthode permet de changer la limite de la force.
+	 * @param maxForce la force maximale (N)
+	 */
+	public void setMaxForce(double maxForce) {
+		this.maxForce = maxForce;
+	}
+
+	/**
+	 * Cette méthode permet de changer la limite de la course du chariot.
+	 * @param maxTravel la distance maximale du chariot à l'origine (m)
+	 */
+	public void setMaxTravel(double maxTravel) {
+		this.maxTravel = maxTravel;
+	}
+
+	/**
+	 * Cette méthode retourne la période du contrôleur.
+	 * @return la période (s)
+	 */
+	public double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Le panneau n'est créé qu'au premier appel (voir SimpleStrategy.getPanel).
+	 */
+	@Override
+	public JPanel getPanel() {
+		if (panel == null)
+			panel = LimitPanel.create(this);
+		return panel;
+	}
+
+	/**
+	 * Cette classe interne construit le panneau avec les sliders des limites de la force et de la course.
+	 */
+	private static class LimitPanel {
+		private final JSlider forceSlider, travelSlider;
+		private final JLabel forceLabel, travelLabel;
+
+		private LimitPanel(final MPCStrategy strategy) {
+			forceSlider = createSlider(0, 100, (int) Math.round(strategy.maxForce), 25);
+			travelSlider = createSlider(0, 50, (int) Math.round(strategy.maxTravel * 10), 10);
+			forceLabel = new JLabel();
+			travelLabel = new JLabel();
+
+			ChangeListener listener = new ChangeListener() {
+				@Override
+				public void stateChanged(ChangeEvent ce) {
+					strategy.setMaxForce(forceSlider.getValue());
+					strategy.setMaxTravel(travelSlider.getValue() * 0.1);
+					updateLabels();
+				}
+			};
+			forceSlider.addChangeListener(listener);
+			travelSlider.addChangeListener(listener);
+			updateLabels();
+		}
+
+		private static JSlider createSlider(int min, int max, int value, int spacing) {
+			JSlider slider = new JSlider(min, max, value);
+			slider.setForeground(Color.RED);
+			slider.setMajorTickSpacing(spacing);
+			slider.setPaintTicks(true);
+			slider.setPaintLabels(true);
+			slider.setAlignmentX(Component.LEFT_ALIGNMENT);
+			return slider;
+		}
+
+		private void updateLabels() {
+			forceLabel.setText("Force limit [N] : " + forceSlider.getValue());
+			travelLabel.setText(String.format("Travel limit [m] : %.1f", travelSlider.getValue() * 0.1));
+		}
+
+		static JPanel create(MPCStrategy strategy) {
+			JPanel panel = new JPanel();
+			new LimitPanel(strategy).initPanel(panel);
+			return panel;
+		}
+
+		private void initPanel(JPanel panel) {
+			Font police = new Font("Arial", Font.BOLD, 12);
+			forceLabel.setFont(police);
+			travelLabel.setFont(police);
+			panel.setLayout(new MigLayout("wrap 1"));
+			panel.add(forceLabel);
+			panel.add(forceSlider);
+			panel.add(travelLabel);
+			panel.add(travelSlider);
+		}
+	}
+}
@@ -13,41 +13,17 @@ import java.awt.Font;
 
 //Stratégie d'essai où on essaie de diriger le chariot avec un slider mais pas terrible
 public class ManualStrategy implements Strategy {
-    private double f = 0; //la force à appliquer sur le chariot
-    private final JPanel panel;
-    private final JSlider forceSlider;
-    private final JLabel forceLabel;
+    //la force à appliquer sur le chariot : écrite par le slider (thread de l'interface) et lue sans verrou
+    //par react (thread de la simulation), d'où volatile (les lectures et écritures d'un double volatile sont atomiques)
+    private volatile double f = 0;
+    private JPanel panel;
 
     public ManualStrategy() {
-        panel = new JPanel();
-        
-        forceSlider = new JSlider(-10, 10, 0);
-        forceSlider.setForeground(Color.RED);
-        forceSlider.setMajorTickSpacing(5);
-        forceSlider.setMinorTickSpacing(1);
-        forceSlider.setPaintTicks(true);
-        forceSlider.setPaintLabels(true);
-        forceSlider.setAlignmentX(Component.LEFT_ALIGNMENT);
-        forceSlider.addChangeListener(new ChangeListener() {
-			@Override
-			public void stateChanged(ChangeEvent ce) {
-				if (ce.getSource() == forceSlider) {
-					f = forceSlider.getValue();
-					forceLabel.setText("Force : " + f);
-				}
-			}
-		});
-        
-        forceLabel = new JLabel("Force : " + forceSlider.getValue());
-        forceLabel.setFont(new Font("Arial", Font.BOLD, 12));
-        
-        initPanel();
     }
 
-    private void initPanel() {
-        panel.setLayout(new MigLayout("wrap 1", "fill"));
-        panel.add(forceLabel, "growx");
-        panel.add(forceSlider, "growx, pushx");
+    //Force constante (sans slider), par exemple pour une simulation sans interface graphique
+    public ManualStrategy(double f) {
+        this.f = f;
     }
 
     @Override
@@ -58,8 +34,62 @@ public class ManualStrategy implements Strategy {
     public double react(Simulation.State state) {
         return f;
     }
+
+    public double getForce() {
+        return f;
+    }
+
+    public void setForce(double f) {
+        this.f = f;
+    }
+
+    //le panneau n'est créé qu'au premier appel (voir SimpleStrategy.getPanel)
     @Override
     public JPanel getPanel() {
+        if (panel == null)
+            panel = ForcePanel.create(this);
         return panel;
     }
+
+    private static class ForcePanel {
+        private final ManualStrategy strategy;
+        private final JSlider forceSlider;
+        private final JLabel forceLabel;
+
+        private ForcePanel(final ManualStrategy strategy) {
+            this.strategy = strategy;
+
+            forceSlider = new JSlider(-10, 10, (int) Math.round(strategy.f));
+            forceSlider.setForeground(Color.RED);
+            forceSlider.setMajorTickSpacing(5);
+            forceSlider.setMinorTickSpacing(1);
+            forceSlider.setPaintTicks(true);
+            forceSlider.setPaintLabels(true);
+            forceSlider.setAlignmentX(Component.LEFT_ALIGNMENT);
+            forceSlider.addChangeListener(new ChangeListener() {
+    			@Override
+    			public void stateChanged(ChangeEvent ce) {
+    				if (ce.getSource() == forceSlider) {
+    					strategy.setForce(forceSlider.getValue());
+    					forceLabel.setText("Force : " + strategy.getForce());
+    				}
+    			}
+    		});
+            
+            forceLabel = new JLabel("Force : " + strategy.f);
+            forceLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        }
+
+        static JPanel create(ManualStrategy strategy) {
+            JPanel panel = new JPanel();
+            new ForcePanel(strategy).initPanel(panel);
+            return panel;
+        }
+
+        private void initPanel(JPanel panel) {
+            panel.setLayout(new MigLayout("wrap 1", "fill"));
+            panel.add(forceLabel, "growx");
+            panel.add(forceSlider, "growx, pushx");
+        }
+    }
 }
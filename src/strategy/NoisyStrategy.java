@@ -0,0 +1,154 @@
+package alina.sim.strategy;
+
+import java.util.SplittableRandom;
+
+import javax.swing.JPanel;
+
+import alina.sim.Simulation;
+
+/**
+ * Cette classe ajoute du bruit à une autre stratégie : les mesures (theta, vAng, x, vx) reçues
+ * par la stratégie et la force qu'elle retourne sont perturbées par un bruit gaussien additif.
+ *
+ * Le bruit est tiré une fois par période (par exemple la période du capteur), puis maintenu : il ne
+ * dépend que du temps de l'état, et non du nombre d'appels à react. Toutes les évaluations d'un même
+ * pas (les étages de RK4 ou de Dormand-Prince) voient ainsi le même bruit, et les résultats ne dépendent
+ * ni de la méthode d'intégration ni de la précision. Le bruit de la période k est calculé à partir de
+ * la graine et de k seulement (comme SplittableRandom, par un mélange des bits d'un compteur), de
+ * sorte qu'une simulation qui utilise cette stratégie reste reproductible.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class NoisyStrategy implements Strategy {
+	/**
+	 * L'incrément du compteur des tirages (celui de SplittableRandom).
+	 */
+	private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final Strategy strategy;
+	/**
+	 * La graine du bruit et la durée pendant laquelle un tirage est maintenu (s).
+	 */
+	private final long seed;
+	private final double period;
+	/**
+	 * L'écart type du bruit sur l'angle (rad) et la vitesse angulaire (rad/s).
+	 */
+	private final double angleNoise, vAngNoise;
+	/**
+	 * L'écart type du bruit sur la position (m) et la vitesse (m/s) du chariot.
+	 */
+	private final double xNoise, vxNoise;
+	/**
+	 * L'écart type du bruit sur la force (N).
+	 */
+	private final double forceNoise;
+	/**
+	 * L'état bruité transmis à la stratégie.
+	 */
+	private final Simulation.State measured = new Simulation.State();
+	/**
+	 * L'indice de la période du bruit courant, le compteur de ses tirages et le bruit tiré
+	 * (theta, vAng, x, vx et force).
+	 */
+	private long sample = Long.MIN_VALUE, counter;
+	private double thetaError, vAngError, xError, vxError, forceError;
+
+	/**
+	 * Constructeur public.
+	 * 
+	 * @param strategy la stratégie à perturber
+	 * @param random le générateur de nombres aléatoires, dont est tirée la graine du bruit
+	 * @param period la durée pendant laquelle un tirage du bruit est maintenu (s)
+	 * @param angleNoise l'écart type du bruit sur l'angle et la vitesse angulaire
+	 * @param xNoise l'écart type du bruit sur la position et la vitesse du chariot
+	 * @param forceNoise l'écart type du bruit sur la force
+	 */
+	public NoisyStrategy(Strategy strategy, SplittableRandom random, double period, double angleNoise,
+			double xNoise, double forceNoise) {
+		if (!(period > 0))
+			throw new IllegalArgumentException("invalid noise period " + period);
+		this.strategy = strategy;
+		this.seed = random.nextLong();
+		this.period = period;
+		this.angleNoise = angleNoise;
+		this.vAngNoise = angleNoise;
+		this.xNoise = xNoise;
+		this.vxNoise = xNoise;
+		this.forceNoise = forceNoise;
+	}
+
+	@Override
+	public void reset() {
+		strategy.reset();
+		sample = Long.MIN_VALUE;
+	}
+
+	@Override
+	public double react(Simulation.State state) {
+		measured.t = state.t;
+		measured.started = state.started;
+		measured.M = state.M;
+		measured.m = state.m;
+		measured.l = state.l;
+		long k = (long) Math.floor(state.t / period);
+		if (k != sample) {
+			sample = k;
+			counter = mix(seed ^ mix(k));
+			thetaError = noise(angleNoise);
+			vAngError = noise(vAngNoise);
+			xError = noise(xNoise);
+			vxError = noise(vxNoise);
+			forceError = noise(forceNoise);
+		}
+		measured.theta = state.theta + thetaError;
+		measured.vAng = state.vAng + vAngError;
+		measured.x = state.x + xError;
+		measured.vx = state.vx + vxError;
+
+		return strategy.react(measured) + forceError;
+	}
+
+	/**
+	 * Cette méthode tire un bruit gaussien d'écart type sigma (sans tirage si sigma est nul).
+	 */
+	private double noise(double sigma) {
+		return sigma == 0 ? 0 : sigma * gaussian();
+	}
+
+	/**
+	 * Cette méthode tire un nombre selon la loi normale centrée réduite (méthode polaire de Marsaglia).
+	 */
+	private double gaussian() {
+		double u, v, s;
+		do {
+			u = 2 * nextDouble() - 1;
+			v = 2 * nextDouble() - 1;
+			s = u * u + v * v;
+		} while (s >= 1 || s == 0);
+		return u * Math.sqrt(-2 * Math.log(s) / s);
+	}
+
+	/**
+	 * Cette méthode tire un nombre uniforme dans [0, 1) à partir du compteur de la période courante.
+	 */
+	private double nextDouble() {
+		counter += GAMMA;
+		return (mix(counter) >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Cette méthode mélange les bits d'un entier (la fonction mix64 de SplittableRandom).
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public JPanel getPanel() {
+		return strategy.getPanel();
+	}
+}
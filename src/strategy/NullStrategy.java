@@ -6,10 +6,9 @@ import javax.swing.*;
 
 //Stratégie qui ne fait pas grand chose, elle retourne toujours une force de 0
 public class NullStrategy implements Strategy {
-    private final JPanel panel;
+    private JPanel panel;
 
     public NullStrategy() {
-        panel = new JPanel();
     }
 
     @Override
@@ -23,6 +22,9 @@ public class NullStrategy implements Strategy {
 
     @Override
     public JPanel getPanel() {
+        //le panneau n'est créé qu'au premier appel (voir SimpleStrategy.getPanel)
+        if (panel == null)
+            panel = new JPanel();
         return panel;
     }
 }
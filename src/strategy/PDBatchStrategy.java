@@ -0,0 +1,46 @@
+package alina.sim.strategy;
+
+import alina.sim.BatchSimulation;
+
+/**
+ * Cette classe implémente la loi de commande de SimpleStrategy (proportionnelle-dérivée)
+ * pour une simulation par lots : f = kp*theta + kd*vAng, avec des gains propres à chaque pendule.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class PDBatchStrategy implements BatchStrategy {
+	/**
+	 * Le gain proportionnel de chaque pendule.
+	 */
+	public final double[] kp;
+	/**
+	 * Le gain dérivé de chaque pendule.
+	 */
+	public final double[] kd;
+
+	/**
+	 * Constructeur public qui donne les mêmes gains à tous les pendules.
+	 * 
+	 * @param size le nombre de pendules
+	 * @param kp le gain proportionnel
+	 * @param kd le gain dérivé
+	 */
+	public PDBatchStrategy(int size, double kp, double kd) {
+		this.kp = new double[size];
+		this.kd = new double[size];
+		java.util.Arrays.fill(this.kp, kp);
+		java.util.Arrays.fill(this.kd, kd);
+	}
+
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public void react(BatchSimulation batch, double[] force) {
+		double[] theta = batch.theta, vAng = batch.vAng;
+		for (int i = 0; i < batch.size; i++)
+			force[i] = kp[i] * theta[i] + kd[i] * vAng[i];
+	}
+}
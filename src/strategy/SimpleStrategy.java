@@ -20,61 +20,48 @@ import java.awt.Dimension;
  * @version 1.0
  */
 public class SimpleStrategy implements Strategy {
-    private final JPanel panel;
-    private JSlider kpSlider, kdSlider;
-    private JLabel kpLabel, kdLabel;
-    private Font police = new Font("Arial", Font.BOLD, 12);
+    private JPanel panel;
     private final int valKpMin = -10, valKpMax = 10, valKpIni = -7;
     private final int valKdMin = -10, valKdMax = 10, valKdIni = -4;
+    /**
+     * Les gains courants. Ils sont remplacés d'un seul coup (par les sliders, dans le thread de
+     * l'interface) et lus sans verrou par react, dans le thread de la simulation.
+     */
+    private volatile Gains gains = new Gains(valKpIni * 10, valKdIni);
 
     public SimpleStrategy() {
-        panel = new JPanel();
-        initPanel();
     }
 
-    private void initPanel() {
-        kpSlider = new JSlider(valKpMin, valKpMax, valKpIni);
-        kpSlider.setForeground(Color.RED);
-        kpSlider.setMajorTickSpacing(10);
-        kpSlider.setMinorTickSpacing(2);
-        kpSlider.setPaintTicks(true);
-        kpSlider.setPaintLabels(true);
-        kpSlider.setAlignmentX(Component.LEFT_ALIGNMENT);
-        kpSlider.addChangeListener(sliderListener);
-        
-        kdSlider = new JSlider(valKdMin, valKdMax, valKdIni);
-        kdSlider.setForeground(Color.RED);
-        kdSlider.setMajorTickSpacing(10);
-        kdSlider.setMinorTickSpacing(2);
-        kdSlider.setPaintTicks(true);
-        kdSlider.setPaintLabels(true);
-        kdSlider.setAlignmentX(Component.LEFT_ALIGNMENT);
-        kdSlider.addChangeListener(sliderListener);
+    /**
+     * Constructeur avec des gains donnés (par exemple pour un balayage de paramètres).
+     * Les sliders sont placés sur les valeurs les plus proches, mais les gains exacts sont
+     * utilisés tant que les sliders ne sont pas bougés.
+     * 
+     * @param kp le gain proportionnel
+     * @param kd le gain dérivé
+     */
+    public SimpleStrategy(double kp, double kd) {
+        this.gains = new Gains(kp, kd);
+    }
 
-        
-        kpLabel = new JLabel("Proportional : " + valKpIni);
-        kpLabel.setFont(police);
-        kdLabel = new JLabel("Derivative : " + valKdIni);
-        kdLabel.setFont(police);
-
-        panel.setLayout(new MigLayout("wrap 1"));
-        panel.add(kpLabel);
-        panel.add(kpSlider);
-        panel.add(Box.createRigidArea(new Dimension(0, 5)));
-        panel.add(kdLabel);
-        panel.add(kdSlider);
+    /**
+     * Cette méthode retourne les gains courants.
+     * @return les gains courants
+     */
+    public Gains getGains() {
+        return gains;
+    }
+
+    /**
+     * Cette méthode remplace les deux gains en même temps : react voit soit les anciens gains,
+     * soit les nouveaux, mais jamais un mélange des deux.
+     * 
+     * @param kp le nouveau gain proportionnel
+     * @param kd le nouveau gain dérivé
+     */
+    public void setGains(double kp, double kd) {
+        this.gains = new Gains(kp, kd);
     }
-    
-    ChangeListener sliderListener = new ChangeListener() {
-		@Override
-		public void stateChanged(ChangeEvent ce) {
-			if(ce.getSource()==kpSlider){
-				kpLabel.setText("Proportional : " + kpSlider.getValue());
-			}else if (ce.getSource()==kdSlider) {
-				kdLabel.setText("Derivative : " + kdSlider.getValue());
-			}		
-		}
-	};
 
     @Override
     public void reset() {
@@ -82,15 +69,109 @@ public class SimpleStrategy implements Strategy {
 
     @Override
     public double react(Simulation.State state) {
-        double kp = kpSlider.getValue() * 10;
-        double kd = kdSlider.getValue();
-        double f = kp * state.theta + kd * state.vAng;
+        Gains g = gains;
+        double f = g.kp * state.theta + g.kd * state.vAng;
 
         return f;
     }
 
+    /**
+     * Le panneau n'est créé qu'au premier appel, pour qu'une simulation sans interface
+     * graphique ne charge aucune classe de Swing.
+     */
     @Override
     public JPanel getPanel() {
+        if (panel == null)
+            panel = GainPanel.create(this);
         return panel;
     }
-}
\ No newline at end of file
+
+    /**
+     * Cette classe interne immuable regroupe les gains de la stratégie.
+     */
+    public static final class Gains {
+        /**
+         * Le gain proportionnel.
+         */
+        public final double kp;
+        /**
+         * Le gain dérivé.
+         */
+        public final double kd;
+
+        public Gains(double kp, double kd) {
+            this.kp = kp;
+            this.kd = kd;
+        }
+    }
+
+    /**
+     * Cette classe interne construit le panneau avec les sliders des gains.
+     */
+    private static class GainPanel {
+        private JSlider kpSlider, kdSlider;
+        private JLabel kpLabel, kdLabel;
+        private Font police = new Font("Arial", Font.BOLD, 12);
+        private final SimpleStrategy strategy;
+
+        private GainPanel(SimpleStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        static JPanel create(SimpleStrategy strategy) {
+            JPanel panel = new JPanel();
+            new GainPanel(strategy).initPanel(panel);
+            return panel;
+        }
+
+        private void initPanel(JPanel panel) {
+            Gains gains = strategy.getGains();
+            int valKpIni = (int) Math.round(gains.kp / 10);
+            int valKdIni = (int) Math.round(gains.kd);
+
+            kpSlider = new JSlider(strategy.valKpMin, strategy.valKpMax, valKpIni);
+            kpSlider.setForeground(Color.RED);
+            kpSlider.setMajorTickSpacing(10);
+            kpSlider.setMinorTickSpacing(2);
+            kpSlider.setPaintTicks(true);
+            kpSlider.setPaintLabels(true);
+            kpSlider.setAlignmentX(Component.LEFT_ALIGNMENT);
+            kpSlider.addChangeListener(sliderListener);
+            
+            kdSlider = new JSlider(strategy.valKdMin, strategy.valKdMax, valKdIni);
+            kdSlider.setForeground(Color.RED);
+            kdSlider.setMajorTickSpacing(10);
+            kdSlider.setMinorTickSpacing(2);
+            kdSlider.setPaintTicks(true);
+            kdSlider.setPaintLabels(true);
+            kdSlider.setAlignmentX(Component.LEFT_ALIGNMENT);
+            kdSlider.addChangeListener(sliderListener);
+
+            
+            kpLabel = new JLabel("Proportional : " + valKpIni);
+            kpLabel.setFont(police);
+            kdLabel = new JLabel("Derivative : " + valKdIni);
+            kdLabel.setFont(police);
+
+            panel.setLayout(new MigLayout("wrap 1"));
+            panel.add(kpLabel);
+            panel.add(kpSlider);
+            panel.add(Box.createRigidArea(new Dimension(0, 5)));
+            panel.add(kdLabel);
+            panel.add(kdSlider);
+        }
+        
+        ChangeListener sliderListener = new ChangeListener() {
+    		@Override
+    		public void stateChanged(ChangeEvent ce) {
+    			if(ce.getSource()==kpSlider){
+    				strategy.setGains(kpSlider.getValue() * 10, strategy.getGains().kd);
+    				kpLabel.setText("Proportional : " + kpSlider.getValue());
+    			}else if (ce.getSource()==kdSlider) {
+    				strategy.setGains(strategy.getGains().kp, kdSlider.getValue());
+    				kdLabel.setText("Derivative : " + kdSlider.getValue());
+    			}		
+    		}
+    	};
+    }
+}
@@ -0,0 +1,39 @@
+package alina.sim.strategy;
+
+import alina.sim.BatchSimulation;
+import alina.sim.Simulation;
+
+/**
+ * Cette classe permet d'utiliser n'importe quelle stratégie dans une simulation par lots :
+ * l'état de chaque pendule est recopié dans un état auxiliaire qui est transmis à la stratégie.
+ * C'est plus lent qu'une vraie stratégie par lots, mais cela ne demande aucune modification.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class StrategyBatchAdapter implements BatchStrategy {
+	private final Strategy strategy;
+	private final Simulation.State state = new Simulation.State();
+
+	/**
+	 * Constructeur public.
+	 * 
+	 * @param strategy la stratégie appelée pour chaque pendule
+	 */
+	public StrategyBatchAdapter(Strategy strategy) {
+		this.strategy = strategy;
+	}
+
+	@Override
+	public void reset() {
+		strategy.reset();
+	}
+
+	@Override
+	public void react(BatchSimulation batch, double[] force) {
+		for (int i = 0; i < batch.size; i++) {
+			batch.get(i, state);
+			force[i] = strategy.react(state);
+		}
+	}
+}
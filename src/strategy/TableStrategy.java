@@ -0,0 +1,304 @@
+package alina.sim.strategy;
+
+import alina.sim.Simulation;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Cette classe implémente une stratégie par table : la force d'une autre stratégie (par exemple
+ * MPCStrategy, trop lente pour être appelée à chaque pas) est calculée à l'avance aux noeuds d'une
+ * grille régulière en (theta, vAng, x, vx), puis react l'interpole de façon multilinéaire entre les
+ * 16 noeuds qui entourent l'état courant, en un temps constant et sans allocation.
+ *
+ * Les forces sont stockées en simple précision dans un tableau primitif (float), ou lues directement
+ * dans un fichier projeté en mémoire (voir load) : la mémoire utilisée est celle de la table, bornée
+ * par le nombre de noeuds de la grille. En dehors de la grille, l'état est ramené sur son bord.
+ * La table n'est valable que pour les paramètres physiques (M, m, l) utilisés pour la calculer.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class TableStrategy implements Strategy {
+	/**
+	 * Les indices des axes de la grille.
+	 */
+	public static final int THETA = 0, VANG = 1, X = 2, VX = 3;
+	/**
+	 * Le nombre maximum de noeuds d'une table.
+	 */
+	public static final long MAX_SIZE = Integer.MAX_VALUE / 4;
+	/**
+	 * L'en-tête des fichiers de tables ("CPLT" puis la version).
+	 */
+	private static final int MAGIC = 0x43504C54, VERSION = 1;
+	/**
+	 * La taille de l'en-tête : magic, version, M, m, l et (min, max, count) pour chaque axe.
+	 */
+	private static final int HEADER = 4 + 4 + 3 * 8 + 4 * (8 + 8 + 4);
+
+	private final Axis[] axes;
+	/**
+	 * Les paramètres physiques pour lesquels la table a été calculée.
+	 */
+	private final double M, m, l;
+	/**
+	 * Les forces aux noeuds, l'axe vx variant le plus vite.
+	 */
+	private final FloatBuffer table;
+	/**
+	 * Les pas entre deux noeuds successifs de la table pour chaque axe.
+	 */
+	private final int[] strides = new int[4];
+	private JPanel panel;
+
+	private TableStrategy(Axis[] axes, double M, double m, double l, FloatBuffer table) {
+		this.axes = axes.clone();
+		this.M = M;
+		this.m = m;
+		this.l = l;
+		this.table = table;
+
+		int stride = 1;
+		for (int i = 3; i >= 0; i--) {
+			strides[i] = stride;
+			stride *= axes[i].count;
+		}
+	}
+
+	/**
+	 * Cette méthode calcule la table d'une stratégie sur la grille donnée. La stratégie est remise à zéro
+	 * avant chaque noeud, de sorte qu'une stratégie avec un état (comme MPCStrategy) donne la force qu'elle
+	 * appliquerait au début d'une simulation partant de ce noeud.
+	 *
+	 * @param source la stratégie tabulée
+	 * @param state l'état dont on prend les paramètres physiques (M, m, l)
+	 * @param theta l'axe de l'angle (rad)
+	 * @param vAng l'axe de la vitesse angulaire (rad/s)
+	 * @param x l'axe de la position du chariot (m)
+	 * @param vx l'axe de la vitesse du chariot (m/s)
+	 * @return la stratégie par table
+	 */
+	public static TableStrategy tabulate(Strategy source, Simulation.State state, Axis theta, Axis vAng, Axis x, Axis vx) {
+		Axis[] axes = {theta, vAng, x, vx};
+		float[] values = new float[size(axes)];
+
+		Simulation.State node = new Simulation.State();
+		node.M = state.M;
+		node.m = state.m;
+		node.l = state.l;
+		node.started = true;
+		int index = 0;
+		for (int i = 0; i < theta.count; i++)
+			for (int j = 0; j < vAng.count; j++)
+				for (int k = 0; k < x.count; k++)
+					for (int n = 0; n < vx.count; n++) {
+						node.theta = theta.value(i);
+						node.vAng = vAng.value(j);
+						node.x = x.value(k);
+						node.vx = vx.value(n);
+						source.reset();
+						values[index++] = (float) source.react(node);
+					}
+		return new TableStrategy(axes, state.M, state.m, state.l, FloatBuffer.wrap(values));
+	}
+
+	private static int size(Axis[] axes) {
+		long size = 1;
+		for (Axis axis : axes)
+			size *= axis.count;
+		if (size > MAX_SIZE)
+			throw new IllegalArgumentException("table too large: " + size + " nodes");
+		return (int) size;
+	}
+
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public double react(Simulation.State state) {
+		Axis a0 = axes[THETA], a1 = axes[VANG], a2 = axes[X], a3 = axes[VX];
+		int i0 = a0.cell(state.theta), i1 = a1.cell(state.vAng), i2 = a2.cell(state.x), i3 = a3.cell(state.vx);
+		double t0 = a0.fraction(state.theta, i0), t1 = a1.fraction(state.vAng, i1);
+		double t2 = a2.fraction(state.x, i2), t3 = a3.fraction(state.vx, i3);
+		int s0 = a0.count > 1 ? strides[THETA] : 0, s1 = a1.count > 1 ? strides[VANG] : 0;
+		int s2 = a2.count > 1 ? strides[X] : 0, s3 = a3.count > 1 ? strides[VX] : 0;
+
+		int base = i0 * strides[THETA] + i1 * strides[VANG] + i2 * strides[X] + i3;
+		//interpolation sur l'axe vx, puis x, puis vAng, puis theta
+		double f = 0;
+		for (int c = 0; c < 8; c++) {
+			int index = base + ((c & 4) != 0 ? s0 : 0) + ((c & 2) != 0 ? s1 : 0) + ((c & 1) != 0 ? s2 : 0);
+			double w = ((c & 4) != 0 ? t0 : 1 - t0) * ((c & 2) != 0 ? t1 : 1 - t1) * ((c & 1) != 0 ? t2 : 1 - t2);
+			double lo = table.get(index), hi = table.get(index + s3);
+			f += w * (lo + t3 * (hi - lo));
+		}
+		return f;
+	}
+
+	/**
+	 * Cette méthode écrit la table dans un fichier (en-tête puis forces en simple précision),
+	 * qui peut ensuite être projeté en mémoire par load.
+	 *
+	 * @param file le fichier
+	 */
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(M);
+			out.writeDouble(m);
+			out.writeDouble(l);
+			for (Axis axis : axes) {
+				out.writeDouble(axis.min);
+				out.writeDouble(axis.max);
+				out.writeInt(axis.count);
+			}
+			for (int i = 0; i < table.capacity(); i++)
+				out.writeFloat(table.get(i));
+		}
+	}
+
+	/**
+	 * Cette méthode lit une table écrite par save.
+	 *
+	 * @param file le fichier
+	 * @param map vrai pour projeter le fichier en mémoire (les forces ne sont alors pas copiées dans le tas
+	 *            et ne sont lues du disque qu'à la demande), faux pour les lire dans un tableau
+	 * @return la stratégie par table
+	 */
+	public static TableStrategy load(File file, boolean map) throws IOException {
+		double M, m, l;
+		Axis[] axes = new Axis[4];
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("not a table file: " + file);
+			M = in.readDouble();
+			m = in.readDouble();
+			l = in.readDouble();
+			for (int i = 0; i < 4; i++)
+				axes[i] = new Axis(in.readDouble(), in.readDouble(), in.readInt());
+
+			int size = size(axes);
+			if (!map) {
+				float[] values = new float[size];
+				for (int i = 0; i < size; i++)
+					values[i] = in.readFloat();
+				return new TableStrategy(axes, M, m, l, FloatBuffer.wrap(values));
+			}
+		}
+
+		int size = size(axes);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, 4L * size);
+			//la projection reste valable après la fermeture du fichier
+			return new TableStrategy(axes, M, m, l, buffer.asFloatBuffer());
+		}
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de noeuds de la table.
+	 */
+	public int size() {
+		return table.capacity();
+	}
+
+	/**
+	 * Cette méthode retourne l'axe donné de la grille (THETA, VANG, X ou VX).
+	 */
+	public Axis getAxis(int axis) {
+		return axes[axis];
+	}
+
+	/**
+	 * Cette méthode permet de savoir si la table a été calculée pour les paramètres physiques de l'état donné.
+	 */
+	public boolean matches(Simulation.State state) {
+		return state.M == M && state.m == m && state.l == l;
+	}
+
+	/**
+	 * Le panneau n'est créé qu'au premier appel (voir SimpleStrategy.getPanel), et Swing n'est chargé
+	 * qu'avec la classe InfoPanel : une simulation sans interface n'en a pas besoin.
+	 */
+	@Override
+	public JPanel getPanel() {
+		if (panel == null)
+			panel = InfoPanel.create(this);
+		return panel;
+	}
+
+	/**
+	 * Cette classe interne construit le panneau qui décrit la table.
+	 */
+	private static class InfoPanel {
+		static JPanel create(TableStrategy strategy) {
+			JPanel panel = new JPanel();
+			panel.add(new JLabel(String.format("Table : %d nodes (M=%.1f kg, m=%.1f kg, l=%.1f m)",
+					strategy.size(), strategy.M, strategy.m, strategy.l)));
+			return panel;
+		}
+	}
+
+	/**
+	 * Cette classe interne immuable correspond à un axe de la grille : count valeurs également
+	 * espacées entre min et max (une seule valeur, min, si count vaut 1).
+	 */
+	public static final class Axis {
+		public final double min, max;
+		public final int count;
+		private final double scale;
+
+		public Axis(double min, double max, int count) {
+			if (count < 1 || (count > 1 && !(max > min)))
+				throw new IllegalArgumentException("invalid axis [" + min + ", " + max + "] x " + count);
+			this.min = min;
+			this.max = max;
+			this.count = count;
+			this.scale = count > 1 ? (count - 1) / (max - min) : 0;
+		}
+
+		/**
+		 * Cette méthode retourne la valeur du noeud i.
+		 */
+		public double value(int i) {
+			return count > 1 ? min + i * (max - min) / (count - 1) : min;
+		}
+
+		/**
+		 * Cette méthode retourne l'indice de la cellule qui contient la valeur (ramenée dans [min, max]).
+		 */
+		int cell(double value) {
+			if (count == 1)
+				return 0;
+			double p = (value - min) * scale;
+			if (!(p > 0))
+				return 0;
+			return p >= count - 1 ? count - 2 : (int) p;
+		}
+
+		/**
+		 * Cette méthode retourne la position de la valeur dans la cellule i (entre 0 et 1).
+		 */
+		double fraction(double value, int i) {
+			if (count == 1)
+				return 0;
+			double t = (value - min) * scale - i;
+			return t < 0 ? 0 : (t > 1 ? 1 : t);
+		}
+	}
+}
@@ -0,0 +1,432 @@
+package alina.sim.sweep;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import javax.swing.JPanel;
+
+import alina.sim.Simulation;
+import alina.sim.integrator.EulerIntegrator;
+import alina.sim.integrator.Integrator;
+import alina.sim.strategy.SimpleStrategy;
+import alina.sim.strategy.Strategy;
+
+/**
+ * Cette classe règle automatiquement les gains (kp, kd) d'une stratégie pour des paramètres
+ * physiques (M, m, l) donnés, par la méthode du simplexe de Nelder-Mead.
+ *
+ * Chaque candidat est évalué par un lot de simulations sans interface graphique (une par angle
+ * de départ), réparties sur tous les processeurs avec un ForkJoinPool comme pour ParameterSweep.
+ * Le score d'une simulation est la somme du temps de stabilisation (s), du dépassement de l'angle
+ * au-delà de l'angle de départ (rad) et de l'effort de commande (intégrale de f^2, N^2 s), pondérés ;
+ * une simulation qui échoue reçoit une pénalité d'autant plus grande que le pendule tombe tôt.
+ * Le score d'un candidat est la moyenne des scores de son lot, additionnés toujours dans le même
+ * ordre : le résultat ne dépend donc pas du nombre de threads.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class GainTuner {
+	/**
+	 * Les coefficients de réflexion, d'expansion, de contraction et de réduction du simplexe.
+	 */
+	private static final double ALPHA = 1, GAMMA = 2, RHO = 0.5, SIGMA = 0.5;
+
+	/**
+	 * Les paramètres physiques du système réglé.
+	 */
+	private double M = 5, m = 1, l = 0.5;
+	/**
+	 * Les angles de départ des simulations de chaque lot (rad).
+	 */
+	private double[] angles = {Math.toRadians(5), Math.toRadians(15), Math.toRadians(25)};
+	/**
+	 * Le point de départ et la taille du simplexe de départ.
+	 */
+	private double kp0 = -70, kd0 = -4, kpStep = 10, kdStep = 1;
+	/**
+	 * Les poids du dépassement (s/rad) et de l'effort de commande (s/(N^2 s)) dans le score.
+	 */
+	private double overshootWeight = 10, effortWeight = 1e-3;
+	/**
+	 * Le nombre maximum de candidats évalués.
+	 */
+	private int budget = 60;
+	/**
+	 * Les tolérances d'arrêt sur la taille du simplexe (unités des gains) et sur l'écart des scores.
+	 */
+	private double gainTolerance = 1e-3, scoreTolerance = 1e-6;
+	/**
+	 * La fabrique des stratégies (par défaut SimpleStrategy).
+	 */
+	private StrategyFactory strategyFactory = new StrategyFactory() {
+		@Override
+		public Strategy create(double kp, double kd) {
+			return new SimpleStrategy(kp, kd);
+		}
+	};
+	/**
+	 * La fabrique des méthodes d'intégration (une nouvelle méthode par simulation).
+	 */
+	private Supplier<Integrator> integratorFactory = new Supplier<Integrator>() {
+		@Override
+		public Integrator get() {
+			return new EulerIntegrator();
+		}
+	};
+	/**
+	 * L'évaluation de chaque simulation : 5 s au plus, arrêtée dès que le pendule est stabilisé depuis 1 s.
+	 */
+	private RunEvaluator evaluator = new RunEvaluator();
+	private int precision = 100;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Le nombre de candidats évalués, de simulations lancées et le temps simulé du réglage en cours.
+	 */
+	private int evaluations;
+	private long simulations;
+	private double simulatedTime;
+
+	/**
+	 * Constructeur public.
+	 */
+	public GainTuner() {
+		evaluator.setDuration(5000);
+		evaluator.getTermination().setSettle(evaluator.getTermination().getSettleAngle(), Double.POSITIVE_INFINITY, 1);
+	}
+
+	/**
+	 * Cette méthode lance le réglage et attend la fin de toutes les simulations.
+	 *
+	 * @return les meilleurs gains trouvés et le coût du réglage
+	 */
+	public TuningResult run() {
+		long start = System.currentTimeMillis();
+		evaluations = 0;
+		simulations = 0;
+		simulatedTime = 0;
+
+		double[][] simplex = {{kp0, kd0}, {kp0 + kpStep, kd0}, {kp0, kd0 + kdStep}};
+		double[] scores = evaluate(simplex);
+		boolean converged = false;
+
+		while (evaluations < budget) {
+			sort(simplex, scores);
+			if (hasConverged(simplex, scores)) {
+				converged = true;
+				break;
+			}
+
+			double[] best = simplex[0], worst = simplex[2];
+			double[] centroid = {0.5 * (simplex[0][0] + simplex[1][0]), 0.5 * (simplex[0][1] + simplex[1][1])};
+
+			double[] reflected = move(centroid, worst, -ALPHA);
+			double reflectedScore = evaluate(reflected);
+			if (reflectedScore < scores[0]) {
+				if (evaluations >= budget) {
+					replaceWorst(simplex, scores, reflected, reflectedScore);
+					break;
+				}
+				double[] expanded = move(centroid, reflected, GAMMA);
+				double expandedScore = evaluate(expanded);
+				if (expandedScore < reflectedScore)
+					replaceWorst(simplex, scores, expanded, expandedScore);
+				else
+					replaceWorst(simplex, scores, reflected, reflectedScore);
+				continue;
+			}
+			if (reflectedScore < scores[1]) {
+				replaceWorst(simplex, scores, reflected, reflectedScore);
+				continue;
+			}
+			if (evaluations >= budget)
+				break;
+
+			//contraction du côté du point réfléchi s'il est meilleur que le pire point, sinon du côté du pire point
+			boolean outside = reflectedScore < scores[2];
+			double[] contracted = move(centroid, outside ? reflected : worst, RHO);
+			double contractedScore = evaluate(contracted);
+			if (contractedScore < Math.min(reflectedScore, scores[2])) {
+				replaceWorst(simplex, scores, contracted, contractedScore);
+				continue;
+			}
+			if (evaluations + 2 > budget)
+				break;
+
+			//réduction du simplexe vers le meilleur point (les deux nouveaux points sont évalués ensemble)
+			double[][] shrunk = {move(best, simplex[1], SIGMA), move(best, simplex[2], SIGMA)};
+			double[] shrunkScores = evaluate(shrunk);
+			simplex[1] = shrunk[0];
+			simplex[2] = shrunk[1];
+			scores[1] = shrunkScores[0];
+			scores[2] = shrunkScores[1];
+		}
+
+		sort(simplex, scores);
+		TuningResult result = new TuningResult(simplex[0][0], simplex[0][1], scores[0], evaluations, budget,
+				simulations, simulatedTime, converged);
+		result.setWallTime(System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * Cette méthode retourne le point from + factor * (to - from).
+	 */
+	private static double[] move(double[] from, double[] to, double factor) {
+		return new double[] {from[0] + factor * (to[0] - from[0]), from[1] + factor * (to[1] - from[1])};
+	}
+
+	private static void replaceWorst(double[][] simplex, double[] scores, double[] point, double score) {
+		simplex[2] = point;
+		scores[2] = score;
+	}
+
+	/**
+	 * Cette méthode trie les trois points du simplexe par score croissant.
+	 */
+	private static void sort(double[][] simplex, double[] scores) {
+		for (int i = 1; i < scores.length; i++)
+			for (int j = i; j > 0 && scores[j] < scores[j - 1]; j--) {
+				double score = scores[j]; scores[j] = scores[j - 1]; scores[j - 1] = score;
+				double[] point = simplex[j]; simplex[j] = simplex[j - 1]; simplex[j - 1] = point;
+			}
+	}
+
+	private boolean hasConverged(double[][] simplex, double[] scores) {
+		double size = 0;
+		for (int i = 1; i < simplex.length; i++)
+			size = Math.max(size, Math.max(Math.abs(simplex[i][0] - simplex[0][0]), Math.abs(simplex[i][1] - simplex[0][1])));
+		return size <= gainTolerance && scores[2] - scores[0] <= scoreTolerance * (Math.abs(scores[0]) + 1e-12);
+	}
+
+	private double evaluate(double[] candidate) {
+		return evaluate(new double[][] {candidate})[0];
+	}
+
+	/**
+	 * Cette méthode évalue les candidats donnés : toutes les simulations de tous les lots sont
+	 * lancées en même temps sur le pool, puis les scores sont additionnés dans un ordre fixe.
+	 *
+	 * @param candidates les candidats (kp, kd)
+	 * @return le score de chaque candidat
+	 */
+	private double[] evaluate(double[][] candidates) {
+		int runs = candidates.length * angles.length;
+		double[] runScores = new double[runs];
+		double[] runTimes = new double[runs];
+		pool.invoke(new TuningTask(candidates, runScores, runTimes, 0, runs));
+
+		double[] scores = new double[candidates.length];
+		for (int i = 0; i < runs; i++) {
+			scores[i / angles.length] += runScores[i] / angles.length;
+			simulatedTime += runTimes[i];
+		}
+		evaluations += candidates.length;
+		simulations += runs;
+		return scores;
+	}
+
+	/**
+	 * Cette méthode lance la simulation index (candidat index / angles.length, angle index % angles.length)
+	 * et retourne son score.
+	 */
+	private double runOne(double[][] candidates, int index, double[] runTimes) {
+		Simulation.State state = new Simulation.State();
+		state.M = M;
+		state.m = m;
+		state.l = l;
+		state.theta = angles[index % angles.length];
+
+		//une nouvelle stratégie par simulation : une stratégie peut garder un état (MPC, bruit...)
+		double[] candidate = candidates[index / angles.length];
+		EffortStrategy effort = new EffortStrategy(strategyFactory.create(candidate[0], candidate[1]));
+		Simulation simulation = new Simulation(state, effort, precision);
+		simulation.setIntegrator(integratorFactory.get());
+		RunResult result = evaluator.evaluate(simulation);
+		runTimes[index] = result.simulatedTime;
+
+		double duration = evaluator.getDuration() / 1000.0;
+		if (result.failed)
+			return 10 * duration + (duration - result.failTime);
+		double settling = result.isStable() ? result.settlingTime : 2 * duration;
+		return settling + overshootWeight * Math.max(0, result.peakAngle - Math.abs(state.theta))
+				+ effortWeight * effort.effort;
+	}
+
+	/**
+	 * Cette classe interne correspond à une tâche du réglage : elle lance les simulations de
+	 * l'intervalle [from, to) en le coupant en deux tant qu'il contient plus d'une simulation.
+	 */
+	@SuppressWarnings("serial")
+	private class TuningTask extends RecursiveAction {
+		private final double[][] candidates;
+		private final double[] scores, times;
+		private final int from, to;
+
+		TuningTask(double[][] candidates, double[] scores, double[] times, int from, int to) {
+			this.candidates = candidates;
+			this.scores = scores;
+			this.times = times;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (to > from)
+					scores[from] = runOne(candidates, from, times);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new TuningTask(candidates, scores, times, from, middle),
+					new TuningTask(candidates, scores, times, middle, to));
+		}
+	}
+
+	/**
+	 * Cette classe interne mesure l'effort de commande (intégrale de f^2) d'une simulation :
+	 * la force est supposée constante entre deux instants d'évaluation successifs.
+	 * Une instance est créée pour chaque simulation, avec sa propre stratégie enveloppée.
+	 */
+	private static class EffortStrategy implements Strategy {
+		private final Strategy strategy;
+		private double effort, lastTime, lastForce;
+
+		EffortStrategy(Strategy strategy) {
+			this.strategy = strategy;
+		}
+
+		@Override
+		public void reset() {
+			strategy.reset();
+			effort = 0;
+			lastTime = 0;
+			lastForce = 0;
+		}
+
+		@Override
+		public double react(Simulation.State state) {
+			double f = strategy.react(state);
+			if (state.t > lastTime) {
+				effort += lastForce * lastForce * (state.t - lastTime);
+				lastTime = state.t;
+				lastForce = f;
+			}
+			return f;
+		}
+
+		@Override
+		public JPanel getPanel() {
+			return strategy.getPanel();
+		}
+	}
+
+	/**
+	 * Cette méthode permet de changer les paramètres physiques du système réglé.
+	 *
+	 * @param M la masse du chariot (kg)
+	 * @param m la masse du pendule (kg)
+	 * @param l la longueur de la tige (m)
+	 */
+	public void setPhysics(double M, double m, double l) {
+		this.M = M;
+		this.m = m;
+		this.l = l;
+	}
+
+	/**
+	 * Cette méthode permet de changer les angles de départ des simulations de chaque lot.
+	 * @param angles les angles (rad)
+	 */
+	public void setAngles(double... angles) {
+		this.angles = angles.clone();
+	}
+
+	/**
+	 * Cette méthode permet de changer le point de départ et la taille du simplexe de départ.
+	 *
+	 * @param kp le gain proportionnel de départ
+	 * @param kd le gain dérivé de départ
+	 * @param kpStep le pas sur kp
+	 * @param kdStep le pas sur kd
+	 */
+	public void setStart(double kp, double kd, double kpStep, double kdStep) {
+		this.kp0 = kp;
+		this.kd0 = kd;
+		this.kpStep = kpStep;
+		this.kdStep = kdStep;
+	}
+
+	/**
+	 * Cette méthode permet de changer les poids du dépassement et de l'effort de commande dans le score.
+	 *
+	 * @param overshootWeight le poids du dépassement (s/rad)
+	 * @param effortWeight le poids de l'effort de commande (s/(N^2 s))
+	 */
+	public void setWeights(double overshootWeight, double effortWeight) {
+		this.overshootWeight = overshootWeight;
+		this.effortWeight = effortWeight;
+	}
+
+	/**
+	 * Cette méthode permet de changer le nombre maximum de candidats évalués.
+	 * @param budget le nombre maximum de candidats (au moins 3 pour le simplexe de départ)
+	 */
+	public void setBudget(int budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Cette méthode permet de changer les tolérances d'arrêt.
+	 *
+	 * @param gainTolerance la tolérance sur la taille du simplexe (unités des gains)
+	 * @param scoreTolerance la tolérance relative sur l'écart des scores
+	 */
+	public void setTolerances(double gainTolerance, double scoreTolerance) {
+		this.gainTolerance = gainTolerance;
+		this.scoreTolerance = scoreTolerance;
+	}
+
+	/**
+	 * Cette méthode permet de changer la fabrique des stratégies.
+	 * @param strategyFactory la nouvelle fabrique
+	 */
+	public void setStrategyFactory(StrategyFactory strategyFactory) {
+		this.strategyFactory = strategyFactory;
+	}
+
+	/**
+	 * Cette méthode permet de changer la fabrique des méthodes d'intégration.
+	 * @param integratorFactory la nouvelle fabrique
+	 */
+	public void setIntegratorFactory(Supplier<Integrator> integratorFactory) {
+		this.integratorFactory = integratorFactory;
+	}
+
+	/**
+	 * Cette méthode retourne l'évaluation utilisée pour chaque simulation (pour la configurer).
+	 * @return l'évaluation des simulations
+	 */
+	public RunEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Cette méthode permet de changer la précision du calcul numérique.
+	 * @param precision la nouvelle précision
+	 */
+	public void setPrecision(int precision) {
+		this.precision = precision;
+	}
+
+	/**
+	 * Cette méthode permet de changer le pool de threads utilisé pour le réglage.
+	 * @param pool le nouveau pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+}
@@ -0,0 +1,226 @@
+package alina.sim.sweep;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import alina.sim.Simulation;
+import alina.sim.integrator.EulerIntegrator;
+import alina.sim.integrator.Integrator;
+import alina.sim.strategy.NoisyStrategy;
+import alina.sim.strategy.SimpleStrategy;
+import alina.sim.strategy.Strategy;
+
+/**
+ * Cette classe évalue la robustesse d'une stratégie par la méthode de Monte Carlo :
+ * un grand nombre de simulations est lancé avec un angle de départ, des masses et une longueur
+ * tirés au hasard (selon des lois uniformes), ainsi qu'un bruit sur les mesures et sur la force.
+ * 
+ * Les simulations sont réparties sur tous les processeurs avec un ForkJoinPool. L'intervalle des
+ * simulations est coupé récursivement en deux, et le générateur aléatoire est "coupé" (split) en
+ * même temps : la suite de nombres de chaque simulation ne dépend donc que de la graine et de
+ * l'indice de la simulation, et les résultats partiels sont fusionnés dans le même ordre.
+ * Les résultats sont ainsi identiques au bit près quel que soit le nombre de threads.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class MonteCarlo {
+	/**
+	 * Les bornes inférieures et supérieures des lois uniformes de M, m, l et theta0
+	 * (indices C_MASS, P_MASS, LENGTH et ANGLE de ParameterSweep).
+	 */
+	private final double[] min = {4, 0.8, 0.4, Math.toRadians(-30)};
+	private final double[] max = {6, 1.2, 0.6, Math.toRadians(30)};
+	/**
+	 * Les écarts types du bruit sur l'angle, sur la position et sur la force.
+	 */
+	private double angleNoise, xNoise, forceNoise;
+	/**
+	 * La durée pendant laquelle un tirage du bruit est maintenu (s, voir NoisyStrategy).
+	 */
+	private double noisePeriod = 0.001;
+	/**
+	 * La fabrique de la stratégie évaluée (une nouvelle stratégie par simulation, si bien qu'une stratégie
+	 * qui garde un état n'est jamais partagée entre les threads).
+	 */
+	private final Supplier<Strategy> strategyFactory;
+	/**
+	 * La fabrique des méthodes d'intégration (une nouvelle méthode par simulation).
+	 */
+	private Supplier<Integrator> integratorFactory = new Supplier<Integrator>() {
+		@Override
+		public Integrator get() {
+			return new EulerIntegrator();
+		}
+	};
+	private RunEvaluator evaluator = new RunEvaluator();
+	private int precision = 100;
+	private long seed = 42;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Constructeur public qui évalue SimpleStrategy avec ses gains par défaut.
+	 */
+	public MonteCarlo() {
+		this(new Supplier<Strategy>() {
+			@Override
+			public Strategy get() {
+				return new SimpleStrategy();
+			}
+		});
+	}
+
+	/**
+	 * Constructeur public.
+	 * 
+	 * @param strategyFactory la fabrique de la stratégie évaluée (elle doit créer une nouvelle stratégie à chaque appel)
+	 */
+	public MonteCarlo(Supplier<Strategy> strategyFactory) {
+		this.strategyFactory = strategyFactory;
+	}
+
+	/**
+	 * Cette méthode lance la campagne et attend la fin de toutes les simulations.
+	 * 
+	 * @param runs le nombre de simulations
+	 * @return les résultats de la campagne
+	 */
+	public MonteCarloResult run(int runs) {
+		long start = System.currentTimeMillis();
+		MonteCarloResult result = pool.invoke(new MonteCarloTask(new SplittableRandom(seed), 0, runs));
+		result.setWallTime(System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * Cette méthode lance une simulation avec les paramètres et le bruit tirés du générateur donné.
+	 */
+	private RunResult runOne(SplittableRandom random) {
+		Simulation.State state = new Simulation.State();
+		state.M = uniform(random, ParameterSweep.C_MASS);
+		state.m = uniform(random, ParameterSweep.P_MASS);
+		state.l = uniform(random, ParameterSweep.LENGTH);
+		state.theta = uniform(random, ParameterSweep.ANGLE);
+
+		Strategy noisy = new NoisyStrategy(strategyFactory.get(), random.split(), noisePeriod, angleNoise, xNoise,
+				forceNoise);
+		Simulation simulation = new Simulation(state, noisy, precision);
+		simulation.setIntegrator(integratorFactory.get());
+		return evaluator.evaluate(simulation);
+	}
+
+	private double uniform(SplittableRandom random, int parameter) {
+		return min[parameter] + (max[parameter] - min[parameter]) * random.nextDouble();
+	}
+
+	/**
+	 * Cette classe interne correspond à une tâche de la campagne : elle simule les simulations
+	 * de l'intervalle [from, to) en le coupant en deux (avec le générateur) tant qu'il contient
+	 * plus d'une simulation, puis fusionne les résultats des deux moitiés.
+	 */
+	@SuppressWarnings("serial")
+	private class MonteCarloTask extends RecursiveTask<MonteCarloResult> {
+		private final SplittableRandom random;
+		private final int from, to;
+
+		MonteCarloTask(SplittableRandom random, int from, int to) {
+			this.random = random;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected MonteCarloResult compute() {
+			if (to - from <= 1) {
+				MonteCarloResult result = new MonteCarloResult(evaluator.getDuration() / 1000.0);
+				if (to > from)
+					result.add(runOne(random));
+				return result;
+			}
+			int middle = (from + to) >>> 1;
+			MonteCarloTask left = new MonteCarloTask(random.split(), from, middle);
+			MonteCarloTask right = new MonteCarloTask(random, middle, to);
+			left.fork();
+			MonteCarloResult result = right.compute();
+			MonteCarloResult leftResult = left.join();
+			//on fusionne toujours dans le même ordre (gauche puis droite)
+			leftResult.merge(result);
+			return leftResult;
+		}
+	}
+
+	/**
+	 * Cette méthode permet de changer la loi uniforme d'un paramètre.
+	 * 
+	 * @param parameter l'indice du paramètre (C_MASS, P_MASS, LENGTH ou ANGLE de ParameterSweep)
+	 * @param min la borne inférieure
+	 * @param max la borne supérieure
+	 */
+	public void setUniform(int parameter, double min, double max) {
+		this.min[parameter] = min;
+		this.max[parameter] = max;
+	}
+
+	/**
+	 * Cette méthode permet de changer les écarts types du bruit.
+	 * 
+	 * @param angleNoise le bruit sur l'angle (rad) et la vitesse angulaire (rad/s)
+	 * @param xNoise le bruit sur la position (m) et la vitesse (m/s) du chariot
+	 * @param forceNoise le bruit sur la force (N)
+	 */
+	public void setNoise(double angleNoise, double xNoise, double forceNoise) {
+		this.angleNoise = angleNoise;
+		this.xNoise = xNoise;
+		this.forceNoise = forceNoise;
+	}
+
+	/**
+	 * Cette méthode permet de changer la durée pendant laquelle un tirage du bruit est maintenu.
+	 * @param noisePeriod la nouvelle durée (s)
+	 */
+	public void setNoisePeriod(double noisePeriod) {
+		this.noisePeriod = noisePeriod;
+	}
+
+	/**
+	 * Cette méthode permet de changer la graine du générateur aléatoire.
+	 * @param seed la nouvelle graine
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Cette méthode permet de changer la fabrique des méthodes d'intégration.
+	 * @param integratorFactory la nouvelle fabrique
+	 */
+	public void setIntegratorFactory(Supplier<Integrator> integratorFactory) {
+		this.integratorFactory = integratorFactory;
+	}
+
+	/**
+	 * Cette méthode retourne l'évaluation utilisée pour chaque simulation (pour la configurer).
+	 * @return l'évaluation des simulations
+	 */
+	public RunEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Cette méthode permet de changer la précision du calcul numérique.
+	 * @param precision la nouvelle précision
+	 */
+	public void setPrecision(int precision) {
+		this.precision = precision;
+	}
+
+	/**
+	 * Cette méthode permet de changer le pool de threads utilisé pour la campagne.
+	 * @param pool le nouveau pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+}
@@ -0,0 +1,130 @@
+package alina.sim.sweep;
+
+import java.io.PrintWriter;
+
+/**
+ * Cette classe regroupe les résultats d'une campagne de Monte Carlo sous forme de statistiques
+ * calculées au fur et à mesure (la mémoire utilisée ne dépend pas du nombre de simulations).
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class MonteCarloResult {
+	/**
+	 * Le nombre de simulations et le nombre de simulations stabilisées.
+	 */
+	private long runs, successes;
+	/**
+	 * Les statistiques du temps de stabilisation (s) des simulations stabilisées.
+	 */
+	public final Statistics settlingTime;
+	/**
+	 * Les statistiques du plus grand déplacement du chariot (m).
+	 */
+	public final Statistics peakDisplacement;
+	/**
+	 * Les statistiques du plus grand angle (rad).
+	 */
+	public final Statistics peakAngle;
+	/**
+	 * Les statistiques du temps de chute (s) des simulations qui ont échoué.
+	 */
+	public final Statistics failTime;
+	/**
+	 * La durée de la campagne (ms de temps réel).
+	 */
+	private long wallTime;
+
+	/**
+	 * Constructeur public.
+	 * 
+	 * @param duration la durée de chaque simulation (s), qui borne les histogrammes des temps
+	 */
+	public MonteCarloResult(double duration) {
+		settlingTime = new Statistics(0, duration, 200);
+		failTime = new Statistics(0, duration, 200);
+		peakDisplacement = new Statistics(0, 10, 200);
+		peakAngle = new Statistics(0, Math.PI, 180);
+	}
+
+	/**
+	 * Cette méthode ajoute le résultat d'une simulation.
+	 * 
+	 * @param result le résultat de la simulation
+	 */
+	public void add(RunResult result) {
+		runs++;
+		if (result.isStable()) {
+			successes++;
+			settlingTime.add(result.settlingTime);
+		}
+		if (result.failed)
+			failTime.add(result.failTime);
+		peakDisplacement.add(result.peakDisplacement);
+		peakAngle.add(result.peakAngle);
+	}
+
+	/**
+	 * Cette méthode ajoute les résultats d'une autre partie de la campagne.
+	 * 
+	 * @param other les résultats à ajouter
+	 */
+	public void merge(MonteCarloResult other) {
+		runs += other.runs;
+		successes += other.successes;
+		settlingTime.merge(other.settlingTime);
+		failTime.merge(other.failTime);
+		peakDisplacement.merge(other.peakDisplacement);
+		peakAngle.merge(other.peakAngle);
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de simulations.
+	 * @return le nombre de simulations
+	 */
+	public long getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de simulations stabilisées.
+	 * @return le nombre de simulations stabilisées
+	 */
+	public long getSuccesses() {
+		return successes;
+	}
+
+	/**
+	 * Cette méthode retourne la proportion de simulations stabilisées.
+	 * @return le taux de réussite (entre 0 et 1)
+	 */
+	public double getSuccessRate() {
+		return runs > 0 ? (double) successes / runs : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode retourne la durée de la campagne.
+	 * @return la durée (ms de temps réel)
+	 */
+	public long getWallTime() {
+		return wallTime;
+	}
+
+	void setWallTime(long wallTime) {
+		this.wallTime = wallTime;
+	}
+
+	/**
+	 * Cette méthode écrit un résumé de la campagne.
+	 * 
+	 * @param pw le flux dans lequel le résumé est écrit
+	 */
+	public void write(PrintWriter pw) {
+		pw.printf("runs=%d successes=%d rate=%.4f wall=%d ms%n", runs, successes, getSuccessRate(), wallTime);
+		settlingTime.write(pw, "settling time [s]");
+		failTime.write(pw, "fail time [s]");
+		peakDisplacement.write(pw, "peak displacement [m]");
+		peakAngle.write(pw, "peak angle [rad]");
+		pw.flush();
+	}
+}
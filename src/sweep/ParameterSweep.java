@@ -0,0 +1,187 @@
+package alina.sim.sweep;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import alina.sim.Simulation;
+import alina.sim.integrator.EulerIntegrator;
+import alina.sim.integrator.Integrator;
+import alina.sim.strategy.SimpleStrategy;
+import alina.sim.strategy.Strategy;
+
+/**
+ * Cette classe permet d'explorer l'espace des paramètres (M, m, l, theta0, kp, kd) :
+ * une simulation est lancée pour chaque combinaison des valeurs données et les résultats
+ * sont regroupés dans une grille (stabilité, temps de stabilisation).
+ * Les simulations sont réparties sur tous les processeurs avec un ForkJoinPool : l'intervalle
+ * des cases est découpé récursivement, et les threads qui ont fini leurs tâches "volent" celles
+ * des autres, ce qui équilibre la charge même si les simulations qui échouent sont bien plus courtes.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class ParameterSweep {
+	//Les champs ci-dessous correspondent aux indices des paramètres balayés
+	public static final int C_MASS = 0, P_MASS = 1, LENGTH = 2, ANGLE = 3, KP = 4, KD = 5;
+	/**
+	 * Le nombre de paramètres balayés.
+	 */
+	public static final int PARAMETERS = 6;
+
+	/**
+	 * Les valeurs de chaque paramètre (par défaut celles de départ de l'interface graphique).
+	 */
+	private final SweepRange[] ranges = {
+			new SweepRange(5), new SweepRange(1), new SweepRange(0.5),
+			new SweepRange(Math.toRadians(-22)), new SweepRange(-70), new SweepRange(-4)};
+	/**
+	 * La fabrique des stratégies (par défaut SimpleStrategy).
+	 */
+	private StrategyFactory strategyFactory = new StrategyFactory() {
+		@Override
+		public Strategy create(double kp, double kd) {
+			return new SimpleStrategy(kp, kd);
+		}
+	};
+	/**
+	 * La fabrique des méthodes d'intégration (une nouvelle méthode par simulation).
+	 */
+	private Supplier<Integrator> integratorFactory = new Supplier<Integrator>() {
+		@Override
+		public Integrator get() {
+			return new EulerIntegrator();
+		}
+	};
+	/**
+	 * L'évaluation de chaque simulation (durée, critères de chute et de stabilisation).
+	 */
+	private RunEvaluator evaluator = new RunEvaluator();
+	/**
+	 * La précision du calcul numérique.
+	 */
+	private int precision = 100;
+	/**
+	 * Le pool de threads utilisé pour le balayage.
+	 */
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Cette méthode lance le balayage et attend la fin de toutes les simulations.
+	 * 
+	 * @return la grille des résultats
+	 */
+	public SweepResult run() {
+		long start = System.currentTimeMillis();
+		SweepResult result = new SweepResult(ranges);
+
+		pool.invoke(new SweepTask(result, 0, result.size()));
+
+		result.setWallTime(System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * Cette méthode lance la simulation de la case index de la grille.
+	 */
+	private RunResult runOne(SweepResult result, int index) {
+		Simulation.State state = new Simulation.State();
+		state.M = result.getParameter(index, C_MASS);
+		state.m = result.getParameter(index, P_MASS);
+		state.l = result.getParameter(index, LENGTH);
+		state.theta = result.getParameter(index, ANGLE);
+
+		//une nouvelle stratégie par simulation : une stratégie peut garder un état (MPC, bruit...)
+		Strategy strategy = strategyFactory.create(result.getParameter(index, KP), result.getParameter(index, KD));
+		Simulation simulation = new Simulation(state, strategy, precision);
+		simulation.setIntegrator(integratorFactory.get());
+		return evaluator.evaluate(simulation);
+	}
+
+	/**
+	 * Cette classe interne correspond à une tâche du balayage : elle simule les cases
+	 * de l'intervalle [from, to) en le coupant en deux tant qu'il contient plus d'une case.
+	 */
+	@SuppressWarnings("serial")
+	private class SweepTask extends RecursiveAction {
+		private final SweepResult result;
+		private final int from, to;
+
+		SweepTask(SweepResult result, int from, int to) {
+			this.result = result;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				result.set(from, runOne(result, from));
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new SweepTask(result, from, middle),
+					new SweepTask(result, middle, to));
+		}
+	}
+
+	/**
+	 * Cette méthode permet de changer les valeurs d'un paramètre.
+	 * 
+	 * @param parameter l'indice du paramètre (C_MASS, P_MASS, LENGTH, ANGLE, KP ou KD)
+	 * @param range les nouvelles valeurs du paramètre
+	 */
+	public void setRange(int parameter, SweepRange range) {
+		ranges[parameter] = range;
+	}
+
+	/**
+	 * Cette méthode retourne les valeurs d'un paramètre.
+	 * 
+	 * @param parameter l'indice du paramètre
+	 * @return les valeurs du paramètre
+	 */
+	public SweepRange getRange(int parameter) {
+		return ranges[parameter];
+	}
+
+	/**
+	 * Cette méthode permet de changer la fabrique des stratégies.
+	 * @param strategyFactory la nouvelle fabrique
+	 */
+	public void setStrategyFactory(StrategyFactory strategyFactory) {
+		this.strategyFactory = strategyFactory;
+	}
+
+	/**
+	 * Cette méthode permet de changer la fabrique des méthodes d'intégration.
+	 * @param integratorFactory la nouvelle fabrique
+	 */
+	public void setIntegratorFactory(Supplier<Integrator> integratorFactory) {
+		this.integratorFactory = integratorFactory;
+	}
+
+	/**
+	 * Cette méthode retourne l'évaluation utilisée pour chaque simulation (pour la configurer).
+	 * @return l'évaluation des simulations
+	 */
+	public RunEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Cette méthode permet de changer la précision du calcul numérique.
+	 * @param precision la nouvelle précision
+	 */
+	public void setPrecision(int precision) {
+		this.precision = precision;
+	}
+
+	/**
+	 * Cette méthode permet de changer le pool de threads utilisé pour le balayage.
+	 * @param pool le nouveau pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+}
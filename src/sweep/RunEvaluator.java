@@ -0,0 +1,131 @@
+package alina.sim.sweep;
+
+import alina.sim.Simulation;
+import alina.sim.Termination;
+
+/**
+ * Cette classe fait avancer une simulation durant une durée donnée en surveillant l'angle :
+ * la simulation est arrêtée dès que le pendule tombe, ce qui rend les simulations qui échouent
+ * beaucoup plus courtes que celles qui réussissent.
+ * Les conditions d'arrêt (voir Termination) sont vérifiées par la simulation après chaque pas ;
+ * si une condition de stabilisation est donnée, les simulations qui réussissent s'arrêtent aussi
+ * dès que le résultat est acquis.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class RunEvaluator {
+	/**
+	 * La durée de la simulation (ms).
+	 */
+	private long duration = 10000;
+	/**
+	 * L'intervalle entre deux vérifications de l'état (ms).
+	 */
+	private long sampleInterval = 1;
+	/**
+	 * Les conditions d'arrêt, recopiées pour chaque simulation évaluée (l'angle limite est
+	 * de 90 degrés ; la tolérance sur l'angle sert aussi à mesurer le temps de stabilisation).
+	 */
+	private final Termination termination = new Termination();
+
+	/**
+	 * Le constructeur sans arguments (le pendule est considéré comme tombé au-delà de 90 degrés).
+	 */
+	public RunEvaluator() {
+		termination.setAngleLimit(Math.PI / 2);
+	}
+
+	/**
+	 * Cette méthode remet la simulation dans son état de départ et la fait avancer
+	 * jusqu'à la fin de la durée prévue ou jusqu'à ce que le pendule tombe.
+	 * 
+	 * @param simulation la simulation à évaluer
+	 * @return le résultat de la simulation
+	 */
+	public RunResult evaluate(Simulation simulation) {
+		Termination copy = new Termination(termination);
+		simulation.setTermination(copy);
+		simulation.reset();
+		RunResult result = new RunResult();
+		Simulation.State state = simulation.state;
+		double tolerance = termination.getSettleAngle();
+		double x0 = state.x;
+		double lastOutside = 0;
+
+		for (long t = 0; t < duration; t += sampleInterval) {
+			simulation.solve(Math.min(sampleInterval, duration - t));
+
+			double angle = Math.abs(state.theta);
+			result.peakAngle = Math.max(result.peakAngle, angle);
+			result.peakDisplacement = Math.max(result.peakDisplacement, Math.abs(state.x - x0));
+
+			if (state.failed) {
+				result.failed = true;
+				result.failTime = state.t;
+				break;
+			}
+			if (state.reason == Termination.Reason.SETTLED) {
+				lastOutside = copy.getSettledSince();
+				break;
+			}
+			if (angle > tolerance)
+				lastOutside = state.t;
+		}
+
+		result.reason = state.reason;
+		result.simulatedTime = state.t;
+		if (!result.failed && Math.abs(state.theta) <= tolerance)
+			result.settlingTime = lastOutside;
+		return result;
+	}
+
+	/**
+	 * Cette méthode permet de changer la durée de la simulation.
+	 * @param duration la durée (ms)
+	 */
+	public void setDuration(long duration) {
+		this.duration = duration;
+	}
+
+	/**
+	 * Cette méthode retourne la durée de la simulation.
+	 * @return la durée (ms)
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Cette méthode permet de changer l'intervalle entre deux vérifications de l'état.
+	 * @param sampleInterval l'intervalle (ms)
+	 */
+	public void setSampleInterval(long sampleInterval) {
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Cette méthode permet de changer l'angle au-delà duquel le pendule est considéré comme tombé.
+	 * @param failAngle l'angle (rad)
+	 */
+	public void setFailAngle(double failAngle) {
+		termination.setAngleLimit(failAngle);
+	}
+
+	/**
+	 * Cette méthode permet de changer la tolérance sur l'angle pour la stabilisation.
+	 * @param tolerance la tolérance (rad)
+	 */
+	public void setTolerance(double tolerance) {
+		termination.setSettle(tolerance, termination.getSettleRate(), termination.getSettleTime());
+	}
+
+	/**
+	 * Cette méthode retourne les conditions d'arrêt, qui peuvent être modifiées avant l'évaluation
+	 * (piste, vitesses maximales, stabilisation). Elles sont recopiées pour chaque simulation.
+	 * @return les conditions d'arrêt
+	 */
+	public Termination getTermination() {
+		return termination;
+	}
+}
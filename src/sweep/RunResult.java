@@ -0,0 +1,49 @@
+package alina.sim.sweep;
+
+import alina.sim.Termination;
+
+/**
+ * Cette classe regroupe le résultat d'une simulation évaluée par un RunEvaluator.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class RunResult {
+	/**
+	 * Marqueur booléen pour savoir si le pendule est tombé.
+	 */
+	public boolean failed;
+	/**
+	 * Le temps auquel le pendule est tombé (s), ou NaN s'il n'est pas tombé.
+	 */
+	public double failTime = Double.NaN;
+	/**
+	 * La raison de l'arrêt de la simulation, ou null si elle a duré jusqu'au bout.
+	 */
+	public Termination.Reason reason;
+	/**
+	 * Le temps à partir duquel l'angle est resté dans la tolérance jusqu'à la fin (s),
+	 * ou NaN si le pendule n'est pas stabilisé à la fin de la simulation.
+	 */
+	public double settlingTime = Double.NaN;
+	/**
+	 * La plus grande valeur absolue de l'angle theta atteinte (rad).
+	 */
+	public double peakAngle;
+	/**
+	 * Le plus grand déplacement du chariot depuis sa position de départ (m).
+	 */
+	public double peakDisplacement;
+	/**
+	 * Le temps simulé (s), plus court que la durée prévue si le pendule est tombé.
+	 */
+	public double simulatedTime;
+
+	/**
+	 * Cette méthode permet de savoir si le pendule est stabilisé à la fin de la simulation.
+	 * @return vrai si le pendule est stabilisé
+	 */
+	public boolean isStable() {
+		return !failed && !Double.isNaN(settlingTime);
+	}
+}
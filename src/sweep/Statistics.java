@@ -0,0 +1,164 @@
+package alina.sim.sweep;
+
+import java.io.PrintWriter;
+
+/**
+ * Cette classe calcule au fur et à mesure des statistiques sur une suite de valeurs, sans les
+ * garder en mémoire : nombre, moyenne, variance, minimum, maximum et un histogramme à intervalles
+ * fixes qui permet d'estimer les quantiles. Deux objets peuvent être fusionnés, ce qui permet à
+ * chaque thread de calculer ses propres statistiques.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class Statistics {
+	private final double low, high;
+	/**
+	 * Les effectifs de l'histogramme (la première et la dernière case comptent les valeurs
+	 * inférieures à low et supérieures à high).
+	 */
+	private final long[] bins;
+	private long count;
+	private double mean, m2;
+	private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Constructeur public.
+	 * 
+	 * @param low la borne inférieure de l'histogramme
+	 * @param high la borne supérieure de l'histogramme
+	 * @param binCount le nombre d'intervalles de l'histogramme entre low et high
+	 */
+	public Statistics(double low, double high, int binCount) {
+		this.low = low;
+		this.high = high;
+		this.bins = new long[binCount + 2];
+	}
+
+	/**
+	 * Cette méthode ajoute une valeur (les valeurs NaN sont ignorées).
+	 * 
+	 * @param value la nouvelle valeur
+	 */
+	public void add(double value) {
+		if (Double.isNaN(value))
+			return;
+
+		//Moyenne et variance par la méthode de Welford
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+
+		bins[bin(value)]++;
+	}
+
+	/**
+	 * Cette méthode ajoute les valeurs comptées par un autre objet (avec le même histogramme).
+	 * 
+	 * @param other les statistiques à ajouter
+	 */
+	public void merge(Statistics other) {
+		if (other.count == 0)
+			return;
+		long n = count + other.count;
+		double delta = other.mean - mean;
+		mean += delta * other.count / n;
+		m2 += other.m2 + delta * delta * count * other.count / n;
+		count = n;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		for (int i = 0; i < bins.length; i++)
+			bins[i] += other.bins[i];
+	}
+
+	private int bin(double value) {
+		if (value < low)
+			return 0;
+		if (value >= high)
+			return bins.length - 1;
+		int i = 1 + (int) ((value - low) / (high - low) * (bins.length - 2));
+		return Math.min(i, bins.length - 2);
+	}
+
+	/**
+	 * Cette méthode estime le quantile q à partir de l'histogramme (par interpolation dans l'intervalle).
+	 * 
+	 * @param q la probabilité (entre 0 et 1)
+	 * @return le quantile estimé, ou NaN s'il n'y a aucune valeur
+	 */
+	public double quantile(double q) {
+		if (count == 0)
+			return Double.NaN;
+		double target = q * count;
+		double width = (high - low) / (bins.length - 2);
+		long cumulated = 0;
+		for (int i = 0; i < bins.length; i++) {
+			if (bins[i] > 0 && cumulated + bins[i] >= target) {
+				if (i == 0)
+					return min;
+				if (i == bins.length - 1)
+					return max;
+				double start = low + (i - 1) * width;
+				double value = start + width * (target - cumulated) / bins[i];
+				return Math.max(min, Math.min(max, value));
+			}
+			cumulated += bins[i];
+		}
+		return max;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de valeurs ajoutées.
+	 * @return le nombre de valeurs ajoutées
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Cette méthode retourne la moyenne des valeurs.
+	 * @return la moyenne des valeurs
+	 */
+	public double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode retourne l'écart type (corrigé) des valeurs.
+	 * @return l'écart type (corrigé) des valeurs
+	 */
+	public double getStandardDeviation() {
+		return count > 1 ? Math.sqrt(m2 / (count - 1)) : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode retourne la plus petite valeur.
+	 * @return la plus petite valeur
+	 */
+	public double getMin() {
+		return count > 0 ? min : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode retourne la plus grande valeur.
+	 * @return la plus grande valeur
+	 */
+	public double getMax() {
+		return count > 0 ? max : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode écrit un résumé des statistiques sur une ligne.
+	 * 
+	 * @param pw le flux dans lequel le résumé est écrit
+	 * @param name le nom de la grandeur
+	 */
+	public void write(PrintWriter pw, String name) {
+		pw.printf("%-20s n=%d mean=%.4f std=%.4f min=%.4f p50=%.4f p90=%.4f p99=%.4f max=%.4f%n",
+				name, count, getMean(), getStandardDeviation(), getMin(),
+				quantile(0.5), quantile(0.9), quantile(0.99), getMax());
+	}
+}
@@ -0,0 +1,23 @@
+package alina.sim.sweep;
+
+import alina.sim.strategy.Strategy;
+
+/**
+ * Interface publique qui permet de créer la stratégie correspondant à un couple de gains.
+ * Une nouvelle stratégie est créée pour chaque simulation (voir ParameterSweep, MonteCarlo et GainTuner) :
+ * les stratégies qui gardent un état (MPCStrategy, NoisyStrategy...) ne sont jamais partagées entre threads.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public interface StrategyFactory {
+
+	/**
+	 * Cette méthode crée une stratégie avec les gains donnés.
+	 * 
+	 * @param kp le gain proportionnel
+	 * @param kd le gain dérivé
+	 * @return une nouvelle stratégie (pas une instance partagée)
+	 */
+	Strategy create(double kp, double kd);
+}
@@ -0,0 +1,59 @@
+package alina.sim.sweep;
+
+/**
+ * Cette classe représente l'ensemble des valeurs prises par un paramètre lors d'un balayage :
+ * count valeurs régulièrement espacées entre min et max (bornes comprises).
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class SweepRange {
+	/**
+	 * La plus petite valeur du paramètre.
+	 */
+	public final double min;
+	/**
+	 * La plus grande valeur du paramètre.
+	 */
+	public final double max;
+	/**
+	 * Le nombre de valeurs du paramètre.
+	 */
+	public final int count;
+
+	/**
+	 * Constructeur public.
+	 * 
+	 * @param min la plus petite valeur
+	 * @param max la plus grande valeur
+	 * @param count le nombre de valeurs (au moins 1)
+	 */
+	public SweepRange(double min, double max, int count) {
+		if (count < 1)
+			throw new IllegalArgumentException("count must be at least 1");
+		this.min = min;
+		this.max = max;
+		this.count = count;
+	}
+
+	/**
+	 * Constructeur public pour un paramètre qui ne prend qu'une seule valeur.
+	 * 
+	 * @param value la valeur du paramètre
+	 */
+	public SweepRange(double value) {
+		this(value, value, 1);
+	}
+
+	/**
+	 * Cette méthode retourne la i-ème valeur du paramètre.
+	 * 
+	 * @param i l'indice de la valeur (entre 0 et count-1)
+	 * @return la valeur du paramètre
+	 */
+	public double value(int i) {
+		if (count == 1)
+			return min;
+		return min + (max - min) * i / (count - 1);
+	}
+}
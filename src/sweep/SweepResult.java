@@ -0,0 +1,127 @@
+package alina.sim.sweep;
+
+import java.io.PrintWriter;
+
+/**
+ * Cette classe regroupe les résultats d'un balayage de paramètres sous forme de grille :
+ * chaque case correspond à une combinaison (M, m, l, theta0, kp, kd) et contient le résultat
+ * de la simulation correspondante.
+ * 
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class SweepResult {
+	private final SweepRange[] ranges;
+	private final RunResult[] results;
+	/**
+	 * La durée du balayage (ms de temps réel).
+	 */
+	private long wallTime;
+
+	/**
+	 * Constructeur public.
+	 * 
+	 * @param ranges les valeurs de chaque paramètre (dans l'ordre des indices de ParameterSweep)
+	 */
+	public SweepResult(SweepRange[] ranges) {
+		this.ranges = ranges.clone();
+		int size = 1;
+		for (SweepRange range : ranges)
+			size = Math.multiplyExact(size, range.count);
+		this.results = new RunResult[size];
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de cases de la grille.
+	 * @return le nombre de simulations du balayage
+	 */
+	public int size() {
+		return results.length;
+	}
+
+	/**
+	 * Cette méthode retourne la valeur du paramètre donné pour la case index.
+	 * Le premier paramètre (la masse du chariot) varie le plus lentement.
+	 * 
+	 * @param index l'indice de la case
+	 * @param parameter l'indice du paramètre (voir ParameterSweep)
+	 * @return la valeur du paramètre
+	 */
+	public double getParameter(int index, int parameter) {
+		for (int p = ranges.length - 1; p > parameter; p--)
+			index /= ranges[p].count;
+		return ranges[parameter].value(index % ranges[parameter].count);
+	}
+
+	/**
+	 * Cette méthode retourne l'indice de la case correspondant aux indices de chaque paramètre.
+	 * 
+	 * @param indices les indices des valeurs de chaque paramètre
+	 * @return l'indice de la case
+	 */
+	public int getIndex(int... indices) {
+		int index = 0;
+		for (int p = 0; p < ranges.length; p++)
+			index = index * ranges[p].count + indices[p];
+		return index;
+	}
+
+	/**
+	 * Cette méthode retourne le résultat de la simulation de la case index.
+	 * 
+	 * @param index l'indice de la case
+	 * @return le résultat de la simulation
+	 */
+	public RunResult get(int index) {
+		return results[index];
+	}
+
+	/**
+	 * Cette méthode stocke le résultat de la simulation de la case index.
+	 */
+	void set(int index, RunResult result) {
+		results[index] = result;
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de simulations qui se sont stabilisées.
+	 * @return le nombre de simulations stables
+	 */
+	public int getStableCount() {
+		int count = 0;
+		for (RunResult result : results)
+			if (result != null && result.isStable())
+				count++;
+		return count;
+	}
+
+	/**
+	 * Cette méthode retourne la durée du balayage.
+	 * @return la durée (ms de temps réel)
+	 */
+	public long getWallTime() {
+		return wallTime;
+	}
+
+	void setWallTime(long wallTime) {
+		this.wallTime = wallTime;
+	}
+
+	/**
+	 * Cette méthode écrit la grille sous forme de texte : une ligne par case avec les valeurs des
+	 * paramètres, la stabilité, le temps de stabilisation et le temps de chute.
+	 * 
+	 * @param pw le flux dans lequel la grille est écrite
+	 */
+	public void write(PrintWriter pw) {
+		pw.printf("%10s %10s %10s %10s %10s %10s %6s %10s %10s%n",
+				"M", "m", "l", "theta0", "kp", "kd", "stable", "settling", "fail");
+		for (int i = 0; i < results.length; i++) {
+			RunResult result = results[i];
+			for (int p = 0; p < ranges.length; p++)
+				pw.printf("%10.3f ", getParameter(i, p));
+			pw.printf("%6b %10.3f %10.3f%n", result.isStable(), result.settlingTime, result.failTime);
+		}
+		pw.flush();
+	}
+}
@@ -0,0 +1,79 @@
+package alina.sim.sweep;
+
+import java.io.PrintWriter;
+
+/**
+ * Cette classe regroupe le résultat d'un réglage automatique des gains par GainTuner :
+ * les meilleurs gains trouvés, leur score, ainsi que le coût du réglage (nombre de candidats
+ * évalués, nombre de simulations, temps simulé et durée réelle) pour pouvoir dimensionner
+ * les réglages suivants.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class TuningResult {
+	/**
+	 * Les meilleurs gains trouvés.
+	 */
+	public final double kp, kd;
+	/**
+	 * Le score des meilleurs gains (plus il est petit, mieux c'est).
+	 */
+	public final double score;
+	/**
+	 * Le nombre de candidats évalués et le nombre maximum de candidats permis.
+	 */
+	public final int evaluations, budget;
+	/**
+	 * Le nombre de simulations lancées.
+	 */
+	public final long simulations;
+	/**
+	 * Le temps simulé par l'ensemble des simulations (s).
+	 */
+	public final double simulatedTime;
+	/**
+	 * Marqueur booléen pour savoir si l'optimisation a convergé avant d'épuiser le budget.
+	 */
+	public final boolean converged;
+	/**
+	 * La durée du réglage (ms de temps réel).
+	 */
+	private long wallTime;
+
+	TuningResult(double kp, double kd, double score, int evaluations, int budget, long simulations,
+			double simulatedTime, boolean converged) {
+		this.kp = kp;
+		this.kd = kd;
+		this.score = score;
+		this.evaluations = evaluations;
+		this.budget = budget;
+		this.simulations = simulations;
+		this.simulatedTime = simulatedTime;
+		this.converged = converged;
+	}
+
+	/**
+	 * Cette méthode retourne la durée du réglage.
+	 * @return la durée (ms de temps réel)
+	 */
+	public long getWallTime() {
+		return wallTime;
+	}
+
+	void setWallTime(long wallTime) {
+		this.wallTime = wallTime;
+	}
+
+	/**
+	 * Cette méthode écrit un résumé du réglage.
+	 *
+	 * @param pw le flux dans lequel le résumé est écrit
+	 */
+	public void write(PrintWriter pw) {
+		pw.printf("kp=%.4f kd=%.4f score=%.6f%n", kp, kd, score);
+		pw.printf("evaluations=%d/%d simulations=%d simulated=%.1f s converged=%b wall=%d ms%n",
+				evaluations, budget, simulations, simulatedTime, converged, wallTime);
+		pw.flush();
+	}
+}
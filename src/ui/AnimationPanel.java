@@ -144,6 +144,12 @@ public class AnimationPanel extends JPanel {
         g2.setBackground(Color.BLACK);
         g2.clearRect(0, 0, getWidth(), getHeight());
 
+        //on affiche la dérive de l'énergie (erreur de la méthode d'intégration)
+        g2.setColor(Color.WHITE);
+        g2.drawString(String.format("Energy drift : %.3e J", state.drift), 10, 20);
+        if (state.reason != null)
+            g2.drawString("Stopped : " + state.reason, 10, 40);
+
         paintAnimation(g2);
 
         g2.dispose();
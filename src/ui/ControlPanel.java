@@ -30,9 +30,11 @@ public class ControlPanel extends JPanel {
 	private final List<String> prefixes;
 	
 	//Les champs ci-dessous correspondent aux indices de la liste des sliders
-	private static final int PRECISION = 0, ANGLE = 1, C_MASS = 2, P_MASS = 3, LENGTH = 4, SPEED = 5;
+	private static final int PRECISION = 0, ANGLE = 1, C_MASS = 2, P_MASS = 3, LENGTH = 4, SPEED = 5, STOP = 6, CONTROL = 7;
 
 	private JButton resetButton, playButton, stepButton;
+	private JCheckBox turboBox;
+	private JLabel achievedSpeedLabel;
 	private java.awt.Font police = new java.awt.Font("Arial", java.awt.Font.BOLD, 12);
 
 	/**
@@ -88,6 +90,16 @@ public class ControlPanel extends JPanel {
 		sliders.get(SPEED).setMajorTickSpacing(1);
 		sliders.get(SPEED).setMinorTickSpacing(1);
 
+		prefixes.add("Stop time [min] (0 = never)");
+		sliders.add(new JSlider(0, 30, 0));
+		sliders.get(STOP).setMajorTickSpacing(10);
+		sliders.get(STOP).setMinorTickSpacing(1);
+
+		prefixes.add("Control rate [Hz] (0 = every step)");
+		sliders.add(new JSlider(0, 4, 0));
+		sliders.get(CONTROL).setMajorTickSpacing(1);
+		sliders.get(CONTROL).setMinorTickSpacing(1);
+
 		ChangeListener sliderListener = new ChangeListener() {
 			@Override
 			public void stateChanged(ChangeEvent ce) {
@@ -97,10 +109,12 @@ public class ControlPanel extends JPanel {
 
 				updateLabel(i);
 
-				if (i != SPEED)
-					mainPanel.reset();
-				else
+				if (i == SPEED)
 					mainPanel.setSpeed(getValue(SPEED));
+				else if (i == STOP)
+					mainPanel.setStopTime(60 * getValue(STOP));
+				else
+					mainPanel.reset();
 			}
 		};
 
@@ -157,6 +171,20 @@ public class ControlPanel extends JPanel {
 		add(playButton , "growx, push");
 		add(stepButton, "growx, push");
 
+		turboBox = new JCheckBox("Turbo (as fast as possible)");
+		achievedSpeedLabel = new JLabel();
+		achievedSpeedLabel.setFont(police);
+		setAchievedSpeed(0);
+		add(turboBox, "gaptop 10px");
+		add(achievedSpeedLabel);
+
+		turboBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				mainPanel.setTurbo(turboBox.isSelected());
+			}
+		});
+
 		resetButton.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent actionEvent) {
@@ -195,7 +223,7 @@ public class ControlPanel extends JPanel {
 	/**
 	 * Cette méthode affiche PAUSE (à la place de PLAY) lorsque le bouton PLAY a été appuyé 
 	 * pour démarrer la simulation.
-	 * De plus, cette méthode "désactive" (met en gris) tous les sliders sauf celui du SPEED.
+	 * De plus, cette méthode "désactive" (met en gris) tous les sliders sauf ceux du SPEED et du STOP.
 	 */
 	public void play() {
 		playButton.setText("PAUSE");
@@ -204,6 +232,7 @@ public class ControlPanel extends JPanel {
 			slider.setEnabled(false);
 
 		sliders.get(SPEED).setEnabled(true);
+		sliders.get(STOP).setEnabled(true);
 	}
 
 	/**
@@ -218,6 +247,15 @@ public class ControlPanel extends JPanel {
 				slider.setEnabled(true);
 	}
 
+	/**
+	 * Cette méthode affiche la vitesse obtenue par la simulation.
+	 * 
+	 * @param achievedSpeed le nombre de secondes simulées par seconde de temps réel
+	 */
+	public void setAchievedSpeed(double achievedSpeed) {
+		achievedSpeedLabel.setText(String.format("Achieved speed : %.1f sim-s / s", achievedSpeed));
+	}
+
 	/**
 	 * Cette méthode retourne la précision.
 	 */
@@ -225,6 +263,13 @@ public class ControlPanel extends JPanel {
 		return (int) getValue(PRECISION);
 	}
 
+	/**
+	 * Cette méthode retourne la fréquence du contrôleur (0 si la stratégie est appelée à chaque pas).
+	 */
+	public double getControlRate() {
+		return getValue(CONTROL);
+	}
+
 	/**
 	 * Cette méthode met en place la valeur de la précision.
 	 * 
@@ -263,6 +308,10 @@ public class ControlPanel extends JPanel {
 		case SPEED:
 			val = Math.pow(2, value);
 			break;
+
+		case CONTROL:
+			val = value == 0 ? 0 : Math.pow(10, value + 1);
+			break;
 		}
 		return val;
 	}
@@ -280,6 +329,8 @@ public class ControlPanel extends JPanel {
 		switch (indexSlider) {
 		case PRECISION:
 		case ANGLE:
+		case STOP:
+		case CONTROL:
 			format = "%.0f";
 			break;
 
@@ -3,20 +3,29 @@ package alina.sim.ui;
 import java.awt.Color;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 import javax.swing.JComboBox;
 import javax.swing.JPanel;
 import javax.swing.Timer;
 
+import alina.sim.ColumnRecorder;
+import alina.sim.InputLog;
 import alina.sim.OutputFiles;
+import alina.sim.RecordingThread;
+import alina.sim.SampleRing;
+import alina.sim.SampleSink;
 import alina.sim.Simulation;
+import alina.sim.SimulationThread;
+import alina.sim.StateBuffer;
+import alina.sim.TraceWriter;
+import alina.sim.integrator.Integrator;
 //import alina.sim.strategy.ManualStrategy;
 //import alina.sim.strategy.ManualStrategy;
 //import alina.sim.strategy.SimpleStrategy;
 import alina.sim.strategy.Strategy;
 import net.miginfocom.swing.MigLayout;
 
-import java.lang.management.*;
-
 /**
  * Cette classe représente le contenu de la fenêtre principale et correspond à un panneau
  * swing qui regroupe les autres containers intermédiaires et objets grapiques atomiques (widgets).
@@ -30,14 +39,42 @@ public class MainPanel extends JPanel {
 	 * La fréquence de la simulation (en nombre de cadres par seconde).
 	 */
     public static final int FRAMES_PER_SECOND = 50;
+    /**
+     * Le quantum de temps simulé (en ms) : la simulation avance toujours par quanta de cette durée.
+     */
+    public static final long QUANTUM = 1;
+    /**
+     * Le retard maximum (en ms de temps simulé) que la simulation peut rattraper.
+     */
+    public static final long MAX_BACKLOG = 250;
+    /**
+     * L'intervalle de temps simulé (en s) entre deux échantillons enregistrés par la simulation.
+     */
+    public static final double RECORDING_INTERVAL = 0.001;
+    /**
+     * La taille maximum du journal de la simulation (en octets).
+     */
+    public static final long INPUT_LOG_LIMIT = 64L << 20;
     /**
 	 * Regroupement des informations pertinentes concernant la simulation.
 	 */
     private final Simulation simulation;
+    /**
+     * Le thread qui fait avancer la simulation (en dehors du thread de l'interface graphique).
+     */
+    private final SimulationThread simulationThread;
+    /**
+     * Le tampon dans lequel le thread de la simulation publie les états.
+     */
+    private final StateBuffer buffer;
     /**
 	 * Tableau avec les stratégies pour la stabilisation du pendule.
 	 */
     private final Strategy[] strategies;
+    /**
+	 * Tableau avec les méthodes d'intégration numérique.
+	 */
+    private final Integrator[] integrators;
     /**
 	 * Container intermédiaire qui regroupe 
 	 */
@@ -60,25 +97,30 @@ public class MainPanel extends JPanel {
 	 * Combo box qui permet de sélectionner la stratégie voulue.
 	 */
     private final JComboBox<String> strategyBox;
+    /**
+	 * Combo box qui permet de sélectionner la méthode d'intégration voulue.
+	 */
+    private final JComboBox<String> integratorBox;
     /**
 	 * Container intermédiaire qui permet de paramétrer la stratégie choisie.
 	 */
     private final StrategyPanel strategyPanel;
     /**
-     * Le moteur de l'animation.
+     * Container intermédiaire qui permet de revoir une simulation enregistrée.
+     */
+    private final PlaybackPanel playbackPanel;
+    /**
+     * Le moteur de l'animation (qui affiche le dernier état publié par la simulation).
      */
     private final Timer timer;
     /**
-     * La vitesse de déroulement de la simulation.
-     * (speed = 1 correspond au déroulement en temps réel)
+     * Le numéro (nombre de remises à zéro de la simulation) du dernier état affiché.
      */
-    private double speed = 1;
+    private long lastStamp = -1;
     /**
-     * La valeur du temps (le timestamp) correspondant à l'émission du dernier événement
-     * actionEvent lancé par la timer pendant le déroulement de la simulation (avec le champ
-     * running ayant la valeur true).
+     * Marqueur booléen qui permet de savoir si la simulation affichée est lancée ou pas.
      */
-    private long timeLastFrame;
+    private boolean started;
     /**
 	 * Marqueur booléen qui permet de savoir si la simulation est en marche ou pas.
 	 * S'il a la valeur false (suite à un clic sur le bouton PAUSE, les événements ActionEvent  
@@ -86,12 +128,93 @@ public class MainPanel extends JPanel {
 	 */
     private boolean running;
     
-    static long tAbs = 0;
-    static long start = 0, stop = 0;
-    ThreadMXBean mxb = null;
-    long tBeforeSolve = 0, tAfterSolve = 0;
-    
+    /**
+     * Les fichiers texte des résultats, remplis comme l'enregistrement binaire à partir de l'anneau
+     * (un échantillon tous les RECORDING_INTERVAL de temps simulé, et non un par image).
+     */
     private static OutputFiles outputFiles;
+    /**
+     * Le journal binaire de la simulation (inputLog.bin), qui permet de la rejouer au bit près
+     * avec HeadlessMain --replay=inputLog.bin. Sans fréquence du contrôleur, une force est enregistrée
+     * à chaque pas (environ 6 Mo par seconde simulée à 1000 pas/ms) : le journal est donc limité
+     * à INPUT_LOG_LIMIT octets, et seul le début d'une longue simulation peut alors être rejoué.
+     */
+    private final InputLog inputLog = new InputLog(new File("inputLog.bin"), INPUT_LOG_LIMIT);
+    /**
+     * L'enregistrement binaire de la simulation (une colonne par grandeur dans le répertoire recording),
+     * ou null s'il n'a pas pu être créé. Les échantillons sont pris par la simulation tous les
+     * RECORDING_INTERVAL de temps simulé, et l'anneau qui les reçoit est vidé par le thread
+     * d'enregistrement (les écritures sur le disque ne bloquent jamais l'interface graphique).
+     */
+    private volatile ColumnRecorder recorder;
+    private final SampleRing recording = new SampleRing(1 << 16);
+    private final RecordingThread recordingThread;
+    /**
+     * La trace compressée de la simulation (recording.trace), qui peut être revue avec le panneau
+     * de lecture, ou null si elle n'a pas pu être créée.
+     */
+    private final File traceFile = new File("recording.trace");
+    private volatile TraceWriter trace;
+    /**
+     * L'enregistrement dans lequel l'anneau est vidé (par le thread d'enregistrement) : il recopie
+     * les échantillons dans les graphiques, dans les fichiers texte, dans les colonnes et dans la trace. En cas d'erreur,
+     * les colonnes et la trace sont abandonnées, mais pas les fichiers texte.
+     */
+    private final SampleSink recordingSink = new SampleSink() {
+		@Override
+		public void append(Simulation.State state) {
+			plotPanel.append(state);
+			outputFiles.update(state);
+			try {
+				if (recorder != null)
+					recorder.append(state);
+				if (trace != null)
+					trace.append(state);
+			} catch (IOException e) {
+				recordingFailed(e);
+			}
+		}
+
+		@Override
+		public void append(double[][] values, int from, int n) {
+			plotPanel.append(values, from, n);
+			outputFiles.append(values, from, n);
+			try {
+				if (recorder != null)
+					recorder.append(values, from, n);
+				if (trace != null)
+					trace.append(values, from, n);
+			} catch (IOException e) {
+				recordingFailed(e);
+			}
+		}
+
+		@Override
+		public void reset() {
+			plotPanel.resetLive();
+			outputFiles.reset();
+			try {
+				if (recorder != null)
+					recorder.reset();
+				if (trace != null)
+					trace.reset();
+			} catch (IOException e) {
+				recordingFailed(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				if (recorder != null)
+					recorder.close();
+				if (trace != null)
+					trace.close();
+			} catch (IOException e) {
+				recordingFailed(e);
+			}
+		}
+	};
 
     public static OutputFiles getOutputFiles() {
 		return outputFiles;
@@ -101,10 +224,14 @@ public class MainPanel extends JPanel {
      * Ce contructeur public initialise les panneaux et permet de choisir la stratégie voulue.
      * 
      * @param strategies tableau de toutes les stratégies disponibles
+     * @param integrators tableau de toutes les méthodes d'intégration disponibles
      */
-    public MainPanel(Strategy[] strategies) {
+    public MainPanel(Strategy[] strategies, Integrator[] integrators) {
         simulation = new Simulation();
+        simulationThread = new SimulationThread(simulation, FRAMES_PER_SECOND, QUANTUM, MAX_BACKLOG);
+        buffer = simulationThread.getBuffer();
         this.strategies = strategies;
+        this.integrators = integrators;
 
         sidePanel = new SidePanel();
         animationPanel = new AnimationPanel();
@@ -114,31 +241,47 @@ public class MainPanel extends JPanel {
         
         controlPanel = new ControlPanel(this);
         strategyPanel = new StrategyPanel(strategies);
+        playbackPanel = new PlaybackPanel(this, animationPanel, plotPanel);
         
         String[] names = new String[strategies.length];
         for (int i = 0; i < strategies.length; i++)
         	names[i] = strategies[i].getClass().getSimpleName();
         strategyBox = new JComboBox<>(names);
 
+        String[] integratorNames = new String[integrators.length];
+        for (int i = 0; i < integrators.length; i++)
+        	integratorNames[i] = integrators[i].getClass().getSimpleName();
+        integratorBox = new JComboBox<>(integratorNames);
+
         timer = new Timer(1000 / FRAMES_PER_SECOND, new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-            	//System.out.println("deltaTAbs = " + (System.nanoTime() - tAbs)*1.E-6);
-            	//tAbs = System.nanoTime();
-                long time = e.getWhen();
-                long tIni = System.nanoTime();
-                if (running){
-                    updateGUI(time - timeLastFrame);
-//                    
-//                    System.out.println("tTimer = " + (System.nanoTime() - tIni)*1.E-6);
-                }
-                
-                timeLastFrame = time;
+                updateGUI();
             }
         });
         timer.start();
+        simulationThread.start();
         
         outputFiles = new OutputFiles();
+        try {
+            recorder = new ColumnRecorder(new File("recording"), 1 << 16);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            trace = new TraceWriter(traceFile, 4096);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        recordingThread = new RecordingThread(recording, recordingSink, 1000 / FRAMES_PER_SECOND);
+        recordingThread.start();
+        simulationThread.submit(new Runnable() {
+			@Override
+			public void run() {
+				simulation.setRecording(recording, RECORDING_INTERVAL);
+				simulation.setInputLog(inputLog);
+			}
+		});
 
         initInterface();
         reset();
@@ -166,17 +309,103 @@ public class MainPanel extends JPanel {
 			}
 		});
 
+        JPanel integratorSelectPanel = new JPanel();
+        integratorSelectPanel.add(integratorBox);
+        integratorSelectPanel.setBackground(Color.CYAN);
+
+        integratorBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				int i = integratorBox.getSelectedIndex();
+				setIntegrator(i);
+			}
+		});
+
         sidePanel.addPanel(controlPanel, "Control");
+        sidePanel.addPanel(integratorSelectPanel, "Select Integrator");
         sidePanel.addPanel(strategySelectPanel, "Select Strategy");
         sidePanel.addPanel(strategyPanel, "Strategy");
+        sidePanel.addPanel(playbackPanel, "Playback");
+        integratorBox.setSelectedIndex(0);
         strategyBox.setSelectedIndex(0);
     }
 
+    /**
+     * Cette méthode arrête le thread de la simulation puis ferme le journal et l'enregistrement,
+     * après y avoir écrit les derniers échantillons (à la fermeture de la fenêtre principale).
+     */
+    public void shutdown() {
+        simulationThread.shutdown();
+        try {
+            simulationThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!simulationThread.isAlive())
+            inputLog.close();
+        playbackPanel.close();
+        recordingThread.shutdown();
+        recorder = null;
+        trace = null;
+    }
+
+    /**
+     * Cette méthode abandonne les colonnes et la trace après une erreur d'écriture.
+     */
+    private void recordingFailed(IOException e) {
+        e.printStackTrace();
+        recorder = null;
+        trace = null;
+    }
+
+    /**
+     * Cette méthode permet de revoir une trace : la simulation est mise en pause, et l'animation et
+     * les graphiques sont mis à jour par le panneau de lecture jusqu'à l'appel de closePlayback.
+     *
+     * @param file le fichier de la trace, ou null pour revoir la simulation en cours (recording.trace)
+     */
+    public void openPlayback(File file) {
+        pause();
+        if (file == null) {
+            if (trace == null)
+                return;
+            //les derniers échantillons sont écrits pour être visibles par le lecteur
+            recordingThread.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (trace != null)
+							trace.flush();
+					} catch (IOException e) {
+						recordingFailed(e);
+					}
+				}
+			});
+            if (trace == null)
+                return;
+            file = traceFile;
+        }
+        playbackPanel.open(file);
+    }
+
+    /**
+     * Cette méthode termine la lecture d'une trace : l'interface affiche à nouveau la simulation,
+     * avec les courbes gardées pendant la lecture (voir PlotPanel.setPlayback).
+     */
+    public void closePlayback() {
+        if (!playbackPanel.isActive())
+            return;
+        playbackPanel.close();
+        animationPanel.update(buffer.getFront());
+    }
+
     /**
      * Cette méthode permet de lancer la simulation.
      */
     public void play() {
+        closePlayback();
         running = true;
+        simulationThread.setRunning(true);
         controlPanel.play();
     }
 
@@ -185,86 +414,131 @@ public class MainPanel extends JPanel {
      */
     public void pause() {
         running = false;
+        simulationThread.setRunning(false);
         controlPanel.pause();
     }
 
     /**
      * Cette méthode permet de réinitialiser les paramètres de la simulation.
+     * La remise à zéro est faite par le thread de la simulation ; l'animation et les graphiques
+     * sont remis à zéro lorsque le premier état qui suit est affiché.
      */
     public void reset() {
-        simulation.setPrecision(controlPanel.getPrecision());
-        simulation.reset(controlPanel.getState());
+        final int precision = controlPanel.getPrecision();
+        final double controlRate = controlPanel.getControlRate();
+        final Simulation.State state = controlPanel.getState();
+        closePlayback();
+        simulationThread.submit(new Runnable() {
+			@Override
+			public void run() {
+				simulation.setPrecision(precision);
+				simulation.setControlRate(controlRate);
+				simulation.reset(state);
+			}
+		});
 
-        animationPanel.update(controlPanel.getState());
-        plotPanel.reset();
-        
-        outputFiles.reset();
-        
+        started = false;
         pause();
     }
 
     /**
-     * Cette méthode permet de mettre à jour l'interface graphique (à savoir, l'animation
-     * et les graphiques), après l'avancement de la simulation durant un intervalle de temps 
-     * donné en paramètre. 
-     * 
-     * @param nb_ms nombre de millisecondes d'attente
-     */
-    public void updateGUI(long nb_ms) {
-    	//Après l'appel de la méthode solve, certains champs de l'objet 
-    	//appelant simulation changent de valeur
-     	mxb = ManagementFactory.getThreadMXBean();   	
-    	tBeforeSolve = System.nanoTime();
-    	start = mxb.getCurrentThreadCpuTime();
-        simulation.solve((long) (nb_ms * speed));
-        stop = mxb.getCurrentThreadCpuTime();
-        tAfterSolve = System.nanoTime();
-//    	System.out.println("durée = " + (stop - start)*1.E-6);
-        Simulation.State state = simulation.getState();
-        //On met à jour les graphiques
-        long tBeforeUpdatePanel = System.nanoTime();
-        plotPanel.update(state);
-//        plotFrameAng.update(state); //add
+     * Cette méthode permet de mettre à jour l'interface graphique (à savoir, l'animation)
+     * avec le dernier état publié par le thread de la simulation ; les graphiques reçoivent
+     * les échantillons de l'anneau par le thread d'enregistrement.
+     * L'état n'est pas recopié : le tampon avant n'est pas modifié par la simulation
+     * jusqu'au prochain appel de cette méthode.
+     */
+    public void updateGUI() {
+        if (playbackPanel.isActive()) {
+            playbackPanel.update();
+            return;
+        }
+        if (!buffer.update())
+            return;
+        Simulation.State state = buffer.getFront();
+        started = state.started;
+
+        if (buffer.getFrontStamp() != lastStamp) {
+            //La simulation a été remise à zéro depuis le dernier état affiché
+            lastStamp = buffer.getFrontStamp();
+            //les graphiques et les enregistrements sont remis à zéro par le thread d'enregistrement,
+            //qui les remplit avec les échantillons de l'anneau
+            recordingThread.setRun(lastStamp);
+        }
         //On met à jour l'animation (chariot + pendule)
-        long tAfterUpdatePanel = System.nanoTime();
         animationPanel.update(state);
-        long tAfterAnimationPanel = System.nanoTime();
-
-//        System.out.println("tSolve = " + (tAfterSolve - tBeforeSolve)*1.E-6);
-//        System.out.println("tTot = " + (tAfterAnimationPanel - tBeforeSolve)*1.E-6);
-//        System.out.println("***********");
-        
-        outputFiles.update(state);
+        controlPanel.setAchievedSpeed(simulationThread.getAchievedSpeed());
         
-        if (state.failed)
+        //La simulation s'arrête d'elle-même si le pendule tombe ou si le temps d'arrêt est atteint
+        if (state.isFinished() || (running && !simulationThread.isRunning()))
             pause();
     }
 
     /**
-     * Cette méthode permet de mettre à jour l'interface graphique après
-     * l'avancement de la simulation durant un intervalle de temps (très petit),
+     * Cette méthode permet de faire avancer la simulation durant un intervalle de temps (très petit),
      * à savoir le laps (ou le pas) de temps écoulé entre deux cadres successifs.
+     * L'interface graphique est mise à jour dès que le nouvel état est publié.
      */
     public void updateGUI_Step() {
+        closePlayback();
         pause();
-        updateGUI(1000 / FRAMES_PER_SECOND);
+        simulationThread.submit(new Runnable() {
+			@Override
+			public void run() {
+				simulationThread.step(1000 / FRAMES_PER_SECOND);
+			}
+		});
     }
 
     /**
      * Cette méthode permet de changer la vitesse de déroulement de la simulation.
      */
     public void setSpeed(double speed) {
-        this.speed = speed;
+        simulationThread.setSpeed(speed);
+    }
+
+    /**
+     * Cette méthode permet d'activer ou de désactiver le mode turbo, dans lequel la simulation
+     * avance aussi vite que possible pendant que l'interface affiche son état à chaque cadre.
+     */
+    public void setTurbo(boolean turbo) {
+        simulationThread.setTurbo(turbo);
+    }
+
+    /**
+     * Cette méthode permet de changer le temps simulé (en s) auquel la simulation s'arrête (0 = jamais).
+     */
+    public void setStopTime(double stopTime) {
+        simulationThread.setStopTime(stopTime);
     }
 
     /**
      * Cette méthode permet de choisir la stratégie voulue.
      */
     public void setStrategy(int i) {
-        simulation.setStrategy(strategies[i]);
+        final Strategy strategy = strategies[i];
+        simulationThread.submit(new Runnable() {
+			@Override
+			public void run() {
+				simulation.setStrategy(strategy);
+			}
+		});
         strategyPanel.show(i);
     }
 
+    /**
+     * Cette méthode permet de choisir la méthode d'intégration voulue.
+     */
+    public void setIntegrator(int i) {
+        final Integrator integrator = integrators[i];
+        simulationThread.submit(new Runnable() {
+			@Override
+			public void run() {
+				simulation.setIntegrator(integrator);
+			}
+		});
+    }
+
     /**
      * Cette méthode permet de savoir si la simulation est en marche ou pas.
      */
@@ -276,6 +550,6 @@ public class MainPanel extends JPanel {
      * Cette méthode permet de savoir si la simulation est lancée ou pas.
      */
     public boolean isStarted() {
-        return simulation.isStarted();
+        return started;
     }
 }
@@ -0,0 +1,425 @@
+package alina.sim.ui;
+
+import alina.sim.Simulation;
+import alina.sim.TraceReader;
+import net.miginfocom.swing.MigLayout;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+
+/**
+ * Cette classe permet de revoir une simulation enregistrée dans une trace (voir TraceWriter) :
+ * l'animation et les graphiques sont alors mis à jour à partir de la trace au lieu de la simulation.
+ * Une barre de temps permet de se placer à n'importe quel instant, et la vitesse de lecture peut être changée.
+ *
+ * La trace n'est jamais chargée en entier : seul son index est en mémoire (voir TraceReader), si bien
+ * que se déplacer dans un enregistrement de plusieurs gigaoctets ne demande que le décodage de quelques blocs.
+ * Une trace encore en cours d'écriture peut être lue : les nouveaux blocs sont ajoutés à chaque image.
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+@SuppressWarnings("serial")
+public class PlaybackPanel extends JPanel {
+	/**
+	 * Le nombre maximum de points de chaque courbe recalculés lorsqu'on se place à un instant donné :
+	 * si la fenêtre de temps affichée contient plus d'échantillons, elle est découpée en PLOT_POINTS / 2
+	 * tranches dont seuls le minimum et le maximum sont gardés (comme PlotSeries.downsample).
+	 */
+	public static final int PLOT_POINTS = 2000;
+
+	private final MainPanel mainPanel;
+	private final AnimationPanel animationPanel;
+	private final PlotPanel plotPanel;
+	/**
+	 * La trace lue, ou null si l'interface affiche la simulation.
+	 */
+	private TraceReader reader;
+	/**
+	 * L'échantillon affiché (il est aussi dessiné par le panneau de l'animation) et son indice dans la trace.
+	 */
+	private final Simulation.State state = new Simulation.State();
+	private long shown = -1;
+	/**
+	 * L'instant affiché (en s de temps simulé) et le temps réel de la dernière image (en ns).
+	 */
+	private double time;
+	private long lastFrame;
+	private boolean playing;
+	/**
+	 * Marqueur booléen qui permet d'ignorer les événements de la barre de temps lorsqu'elle est
+	 * déplacée par la lecture (et non par l'utilisateur).
+	 */
+	private boolean adjusting;
+
+	private JButton lastRunButton, openButton, playButton, liveButton;
+	private JSlider timeline, rateSlider;
+	private JLabel timeLabel, rateLabel;
+	private java.awt.Font police = new java.awt.Font("Arial", java.awt.Font.BOLD, 12);
+
+	/**
+	 * Constructeur public qui initialise le panneau de lecture.
+	 *
+	 * @param mainPanel le panneau de la fenêtre principale
+	 * @param animationPanel le panneau de l'animation, mis à jour pendant la lecture
+	 * @param plotPanel le panneau des graphiques, mis à jour pendant la lecture
+	 */
+	public PlaybackPanel(MainPanel mainPanel, AnimationPanel animationPanel, PlotPanel plotPanel) {
+		super(new MigLayout("wrap 1, fillx"));
+		this.mainPanel = mainPanel;
+		this.animationPanel = animationPanel;
+		this.plotPanel = plotPanel;
+
+		initInterface();
+		updateControls();
+
+		//les graphiques sont relus dans la trace pour la nouvelle fenêtre de temps
+		plotPanel.setWindowListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				if (reader != null)
+					seek(time);
+			}
+		});
+	}
+
+	/**
+	 * Cette méthode initialise les boutons, la barre de temps et le curseur de la vitesse de lecture,
+	 * et leur ajoute les écouteurs correspondants.
+	 */
+	private void initInterface() {
+		lastRunButton = new JButton("Last run");
+		openButton = new JButton("Open...");
+		playButton = new JButton("PLAY");
+		liveButton = new JButton("Live");
+
+		timeLabel = new JLabel();
+		timeLabel.setFont(police);
+		timeline = new JSlider(0, 0, 0);
+		timeline.setForeground(Color.RED);
+
+		rateLabel = new JLabel();
+		rateLabel.setFont(police);
+		//la vitesse de lecture est 2 à la puissance de la valeur du curseur
+		rateSlider = new JSlider(-4, 4, 0);
+		rateSlider.setForeground(Color.RED);
+		rateSlider.setMajorTickSpacing(2);
+		rateSlider.setMinorTickSpacing(1);
+		rateSlider.setPaintTicks(true);
+		rateSlider.setPaintLabels(true);
+		Hashtable<Integer, JLabel> table = new Hashtable<>();
+		for (int k = rateSlider.getMinimum(); k <= rateSlider.getMaximum(); k += 2)
+			table.put(k, new JLabel(formatRate(Math.pow(2, k))));
+		rateSlider.setLabelTable(table);
+		updateRateLabel();
+
+		add(lastRunButton, "split 2, growx, push");
+		add(openButton, "growx, push");
+		add(timeLabel, "gaptop 10px");
+		add(timeline, "growx");
+		add(rateLabel, "gaptop 10px");
+		add(rateSlider, "growx");
+		add(playButton, "split 2, gaptop 10px, growx, push");
+		add(liveButton, "growx, push");
+
+		lastRunButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				mainPanel.openPlayback(null);
+			}
+		});
+
+		openButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				JFileChooser chooser = new JFileChooser(new File("."));
+				if (chooser.showOpenDialog(PlaybackPanel.this) == JFileChooser.APPROVE_OPTION)
+					mainPanel.openPlayback(chooser.getSelectedFile());
+			}
+		});
+
+		playButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				if (playing)
+					pause();
+				else
+					play();
+			}
+		});
+
+		liveButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent actionEvent) {
+				mainPanel.closePlayback();
+			}
+		});
+
+		timeline.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent ce) {
+				if (!adjusting && reader != null)
+					seek(reader.getStartTime() + timeline.getValue() / 1000.0);
+			}
+		});
+
+		rateSlider.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent ce) {
+				updateRateLabel();
+			}
+		});
+	}
+
+	/**
+	 * Cette méthode ouvre une trace et affiche son premier échantillon.
+	 *
+	 * @param file le fichier de la trace
+	 * @return vrai si la trace a pu être ouverte
+	 */
+	public boolean open(File file) {
+		close();
+		try {
+			reader = new TraceReader(file);
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(this, "Cannot open " + file + " : " + e.getMessage(),
+					"Playback", JOptionPane.ERROR_MESSAGE);
+			return false;
+		}
+		plotPanel.setPlayback(true);
+		updateRange();
+		updateControls();
+		seek(reader.getStartTime());
+		return true;
+	}
+
+	/**
+	 * Cette méthode ferme la trace en cours de lecture (l'interface affiche à nouveau la simulation,
+	 * avec ses graphiques).
+	 */
+	public void close() {
+		if (reader == null)
+			return;
+		try {
+			reader.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		reader = null;
+		playing = false;
+		shown = -1;
+		plotPanel.setPlayback(false);
+		updateControls();
+	}
+
+	/**
+	 * Cette méthode permet de savoir si une trace est en cours de lecture.
+	 */
+	public boolean isActive() {
+		return reader != null;
+	}
+
+	/**
+	 * Cette méthode lance la lecture (depuis le début si la fin de la trace est atteinte).
+	 */
+	public void play() {
+		if (reader == null || reader.size() == 0)
+			return;
+		if (time >= reader.getEndTime() && reader.isComplete())
+			seek(reader.getStartTime());
+		playing = true;
+		lastFrame = System.nanoTime();
+		playButton.setText("PAUSE");
+	}
+
+	/**
+	 * Cette méthode met en pause la lecture.
+	 */
+	public void pause() {
+		playing = false;
+		playButton.setText("PLAY");
+	}
+
+	/**
+	 * Cette méthode fait avancer la lecture du temps réel écoulé depuis la dernière image,
+	 * multiplié par la vitesse de lecture (appelée à chaque image par le panneau principal).
+	 */
+	public void update() {
+		if (reader == null)
+			return;
+		try {
+			//une trace en cours d'écriture s'allonge
+			if (!reader.isComplete() && reader.refresh() > 0)
+				updateRange();
+			if (!playing)
+				return;
+			long now = System.nanoTime();
+			//au plus un quart de seconde par image, pour ne pas sauter une partie de la trace après un blocage
+			double elapsed = Math.min(0.25, (now - lastFrame) * 1e-9);
+			lastFrame = now;
+			double end = reader.getEndTime();
+			time = Math.min(end, time + getRate() * elapsed);
+			show(time);
+			updateTimeline();
+			if (time >= end && reader.isComplete())
+				pause();
+		} catch (IOException e) {
+			e.printStackTrace();
+			mainPanel.closePlayback();
+		}
+	}
+
+	/**
+	 * Cette méthode se place à l'instant donné : les graphiques sont recalculés à partir des échantillons
+	 * de la fenêtre de temps affichée qui précèdent cet instant (depuis le début de la trace pour
+	 * toute la simulation). Tous les blocs de la trace de cette fenêtre sont décodés, mais les courbes
+	 * ne reçoivent que le minimum et le maximum de chaque tranche (voir PLOT_POINTS), si bien que les pics
+	 * ne sont pas perdus.
+	 *
+	 * @param t l'instant (s)
+	 */
+	public void seek(double t) {
+		if (reader == null || reader.size() == 0)
+			return;
+		time = Math.max(reader.getStartTime(), Math.min(reader.getEndTime(), t));
+		try {
+			plotPanel.reset();
+			double window = plotPanel.getWindow();
+			long last = reader.get(time, state);
+			int chunk = window > 0 ? reader.seek(time - window) : 0;
+			long first = window > 0 ? reader.get(time - window, state) : 0;
+			addRange(chunk, first, last);
+			shown = -1;
+			show(time);
+		} catch (IOException e) {
+			e.printStackTrace();
+			mainPanel.closePlayback();
+			return;
+		}
+		updateTimeline();
+	}
+
+	/**
+	 * Cette méthode ajoute aux graphiques les échantillons d'indices first à last - 1 (le premier étant
+	 * dans le bloc donné), ou le minimum et le maximum de chaque tranche s'il y en a plus de PLOT_POINTS.
+	 */
+	private void addRange(int chunk, long first, long last) throws IOException {
+		long stride = (last - first) / (PLOT_POINTS / 2) + 1;
+		//pour chaque courbe, la valeur et le temps du minimum et du maximum de la tranche en cours
+		double[] min = new double[PlotPanel.CURVES], max = new double[PlotPanel.CURVES];
+		double[] minTime = new double[PlotPanel.CURVES], maxTime = new double[PlotPanel.CURVES];
+		long inSlice = 0;
+		long index = first;
+		for (; index < last; chunk++) {
+			double[][] values = reader.readChunk(chunk);
+			int n = reader.getCount(chunk);
+			for (int i = (int) (index - reader.getStart(chunk)); i < n && index < last; i++, index++) {
+				double time = values[0][i];
+				for (int c = 0; c < PlotPanel.CURVES; c++) {
+					//les colonnes de la trace sont t, x, vx, ax, theta...
+					double value = values[c + 1][i];
+					if (inSlice == 0 || value < min[c]) {
+						min[c] = value;
+						minTime[c] = time;
+					}
+					if (inSlice == 0 || value > max[c]) {
+						max[c] = value;
+						maxTime[c] = time;
+					}
+				}
+				if (++inSlice == stride) {
+					addSlice(min, minTime, max, maxTime);
+					inSlice = 0;
+				}
+			}
+		}
+		if (inSlice > 0)
+			addSlice(min, minTime, max, maxTime);
+	}
+
+	/**
+	 * Cette méthode ajoute à chaque courbe le minimum et le maximum d'une tranche, dans l'ordre du temps.
+	 */
+	private void addSlice(double[] min, double[] minTime, double[] max, double[] maxTime) {
+		for (int c = 0; c < PlotPanel.CURVES; c++) {
+			boolean minFirst = minTime[c] <= maxTime[c];
+			plotPanel.add(c, minFirst ? minTime[c] : maxTime[c], minFirst ? min[c] : max[c]);
+			if (minTime[c] != maxTime[c])
+				plotPanel.add(c, minFirst ? maxTime[c] : minTime[c], minFirst ? max[c] : min[c]);
+		}
+	}
+
+	/**
+	 * Cette méthode affiche l'échantillon pris à l'instant donné ; il n'est ajouté aux graphiques
+	 * que s'il n'y a pas déjà été ajouté.
+	 */
+	private void show(double t) throws IOException {
+		long index = reader.get(t, state);
+		if (index != shown) {
+			plotPanel.update(state);
+			shown = index;
+		}
+		animationPanel.update(state);
+	}
+
+	/**
+	 * Cette méthode retourne la vitesse de lecture (en s de temps simulé par seconde de temps réel).
+	 */
+	public double getRate() {
+		return Math.pow(2, rateSlider.getValue());
+	}
+
+	/**
+	 * Cette méthode adapte la barre de temps à la durée de la trace (en ms depuis son début).
+	 */
+	private void updateRange() {
+		double duration = reader.size() == 0 ? 0 : reader.getEndTime() - reader.getStartTime();
+		adjusting = true;
+		timeline.setMaximum((int) Math.min(Integer.MAX_VALUE, Math.ceil(1000 * duration)));
+		adjusting = false;
+		updateTimeline();
+	}
+
+	/**
+	 * Cette méthode place le curseur de la barre de temps à l'instant affiché.
+	 */
+	private void updateTimeline() {
+		if (reader.size() == 0) {
+			timeLabel.setText("Time : empty trace");
+			return;
+		}
+		adjusting = true;
+		timeline.setValue((int) Math.round(1000 * (time - reader.getStartTime())));
+		adjusting = false;
+		timeLabel.setText(String.format("Time : %.3f s / %.3f s", time, reader.getEndTime()));
+	}
+
+	private void updateRateLabel() {
+		rateLabel.setText("Playback rate : " + formatRate(getRate()));
+	}
+
+	private static String formatRate(double rate) {
+		return rate >= 1 ? String.format("%.0fx", rate) : String.format("1/%.0fx", 1 / rate);
+	}
+
+	/**
+	 * Cette méthode active la barre de temps et les boutons de lecture seulement lorsqu'une trace est ouverte.
+	 */
+	private void updateControls() {
+		boolean active = reader != null;
+		timeline.setEnabled(active);
+		playButton.setEnabled(active);
+		liveButton.setEnabled(active);
+		playButton.setText("PLAY");
+		if (!active)
+			timeLabel.setText("Time : live simulation");
+	}
+}
@@ -1,80 +1,186 @@
 package alina.sim.ui;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
 
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import alina.sim.Simulation;
 import info.monitorenter.gui.chart.Chart2D;
 import info.monitorenter.gui.chart.ITrace2D;
 import info.monitorenter.gui.chart.rangepolicies.RangePolicyFixedViewport;
-import info.monitorenter.gui.chart.traces.Trace2DLtd;
+import info.monitorenter.gui.chart.traces.Trace2DSimple;
 import info.monitorenter.util.Range;
 import net.miginfocom.swing.MigLayout;
 
 /**
  * Cette classe dessine le graphique et les courbes correspondantes à la simulation.
+ * Tous les points de la simulation sont gardés (voir PlotSeries) ; seule la fenêtre de temps
+ * choisie est dessinée, réduite à un minimum et un maximum par tranche de deux pixels,
+ * si bien que toute une simulation de plusieurs minutes peut être affichée.
+ * Les points de la simulation sont tous les échantillons de l'anneau (voir append), et non un point
+ * par image : l'enveloppe des courbes ne perd rien de ce qui se passe entre deux images.
+ * Pendant la lecture d'une trace (voir setPlayback), les points lus sont gardés à part, et ceux de
+ * la simulation sont à nouveau affichés à la fin de la lecture.
  * 
  * @author alina petrescu
  * @version 2.0
  */
 @SuppressWarnings("serial")
 public class PlotPanel extends JPanel {
+    /**
+     * Les fenêtres de temps proposées (en s, 0 = toute la simulation).
+     */
+    public static final double[] WINDOWS = {4, 30, 60, 600, 0};
+    /**
+     * Les indices des courbes (voir add), qui sont aussi ceux des colonnes de ColumnRecorder.CHANNELS moins un.
+     */
+    public static final int X = 0, VX = 1, AX = 2, THETA = 3, CURVES = 4;
+    private static final String[] WINDOW_NAMES = {"Last 4 s", "Last 30 s", "Last 1 min", "Last 10 min", "Whole run"};
+
     private ITrace2D xTrace, vxTrace, axTrace, angTrace;
     private GraphicPanel tabGP[] = new GraphicPanel[4];
+    private final JComboBox<String> windowBox = new JComboBox<>(WINDOW_NAMES);
+    /**
+     * La fenêtre de temps affichée (en s, 0 = toute la simulation).
+     */
+    private double window = WINDOWS[0];
+    /**
+     * Marqueur booléen qui permet de savoir si les courbes doivent être redessinées (une seule fois
+     * pour tous les points ajoutés pendant le traitement d'un même événement).
+     */
+    private boolean refreshPending;
+    /**
+     * L'écouteur prévenu lorsque la fenêtre de temps change (le panneau de lecture, qui relit alors la trace).
+     */
+    private ActionListener windowListener;
+    /**
+     * Les points de la simulation reçus par append (par le thread d'enregistrement) et pas encore ajoutés
+     * aux courbes : le temps puis la valeur de chaque courbe. Le marqueur clearPending indique que les courbes
+     * de la simulation doivent être effacées avant de les ajouter, et applyPending qu'ils le seront au
+     * prochain passage du thread de l'interface graphique. Ces champs sont protégés par pendingLock.
+     */
+    private final Object pendingLock = new Object();
+    private double[][] pending = new double[5][1024];
+    private int pendingCount;
+    private boolean clearPending, applyPending;
+    private final Runnable applyTask = new Runnable() {
+		@Override
+		public void run() {
+			applyPending();
+		}
+	};
 
     /**
      * Constructeur public qui initialise le panneau de dessin.
      */
     public PlotPanel() { 
         initInterface();
-        setLayout(new GridLayout(2, 2));    
+        setLayout(new BorderLayout());
+        JPanel charts = new JPanel(new GridLayout(2, 2));
         for (int i = 0; i < tabGP.length; i++) {
-			add(tabGP[i]);
+			charts.add(tabGP[i]);
 		}
+        JPanel windowPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        windowPanel.add(new JLabel("Time window :"));
+        windowPanel.add(windowBox);
+        add(windowPanel, BorderLayout.NORTH);
+        add(charts, BorderLayout.CENTER);
+
+        windowBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				setWindow(WINDOWS[windowBox.getSelectedIndex()]);
+			}
+		});
     }
 
     /**
      * Cette méthode permet de mettre les couleurs, les unités et les bonnes légendes des axes.
      */
     private void initInterface() {
-    	//on crée une nouvelle "trace" avec la taille du buffer de max 200 points
-    	//qui seront affichés et le nom affiché x
-        xTrace = new Trace2DLtd(200, "x");
+    	//on crée une nouvelle "trace" (les points affichés, recalculés à chaque image) et le nom affiché x
+        xTrace = new Trace2DSimple("x");
         xTrace.setColor(Color.BLUE);
         xTrace.setPhysicalUnits("s", "m");
         tabGP[0] = new GraphicPanel(xTrace, -5, 5);
 
-        vxTrace = new Trace2DLtd(200, "vx");
+        vxTrace = new Trace2DSimple("vx");
         vxTrace.setColor(Color.GREEN);
         vxTrace.setPhysicalUnits("s", "m/s");
         tabGP[1] = new GraphicPanel(vxTrace, -10, 10);
 
-        axTrace = new Trace2DLtd(200, "ax");
+        axTrace = new Trace2DSimple("ax");
         axTrace.setColor(Color.BLACK);
         axTrace.setPhysicalUnits("s", "m/s²");
         tabGP[2] = new GraphicPanel(axTrace, -10, 10);
 
-        angTrace = new Trace2DLtd(200, "ang");
+        angTrace = new Trace2DSimple("ang");
         angTrace.setColor(Color.RED);
         angTrace.setPhysicalUnits("s", "°");
         tabGP[3] = new GraphicPanel(angTrace, -200, 200);
     }
 
     /**
-     * Cette méthode permet de réinitialiser le panneau du graphique.
+     * Cette méthode permet de réinitialiser le panneau du graphique (les courbes affichées seulement).
      */
     public void reset() {
         for (int i = 0; i < tabGP.length; i++) {
-			tabGP[i].trace.removeAllPoints();
+			tabGP[i].reset();
 		}
         repaint();
     }
 
     /**
-     * Cette méthode permet d'ajouter les points sur le graphique.
+     * Cette méthode permet de choisir la fenêtre de temps affichée.
+     * 
+     * @param window la durée affichée (en s), ou 0 pour toute la simulation
+     */
+    public void setWindow(double window) {
+        this.window = window;
+        refresh();
+        if (windowListener != null)
+            windowListener.actionPerformed(new ActionEvent(this, ActionEvent.ACTION_PERFORMED, "window"));
+    }
+
+    /**
+     * Cette méthode retourne la fenêtre de temps affichée (en s, 0 = toute la simulation).
+     */
+    public double getWindow() {
+        return window;
+    }
+
+    /**
+     * Cette méthode permet de choisir l'écouteur prévenu lorsque la fenêtre de temps change.
+     */
+    public void setWindowListener(ActionListener windowListener) {
+        this.windowListener = windowListener;
+    }
+
+    /**
+     * Cette méthode permet de passer aux courbes d'une trace revue (vides au départ), ou de revenir
+     * aux courbes de la simulation, qui n'ont pas été modifiées pendant la lecture.
+     *
+     * @param playback vrai pour afficher les courbes de la trace, faux pour celles de la simulation
+     */
+    public void setPlayback(boolean playback) {
+        for (int i = 0; i < tabGP.length; i++) {
+			tabGP[i].setPlayback(playback);
+		}
+        refresh();
+    }
+
+    /**
+     * Cette méthode permet d'ajouter les points sur le graphique (aux courbes affichées).
      * @param state l'état courant de la simulation
      */
     public void update(Simulation.State state) {
@@ -84,6 +190,134 @@ public class PlotPanel extends JPanel {
         tabGP[1].update(time, state.vx);
         tabGP[2].update(time, state.ax/1000);
         tabGP[3].update(time, Math.toDegrees(state.theta));
+        scheduleRefresh();
+    }
+
+    /**
+     * Cette méthode ajoute un point à une seule des courbes affichées.
+     *
+     * @param curve la courbe (X, VX, AX ou THETA)
+     * @param time le temps
+     * @param value la valeur, comme dans Simulation.State (m, m/s, m/s² ou rad)
+     */
+    public void add(int curve, double time, double value) {
+        tabGP[curve].update(time, curve == AX ? value/1000 : (curve == THETA ? Math.toDegrees(value) : value));
+        scheduleRefresh();
+    }
+
+    /**
+     * Cette méthode ajoute des échantillons de la simulation aux courbes de la simulation (même pendant
+     * la lecture d'une trace). Elle peut être appelée par n'importe quel thread : les points sont ajoutés
+     * aux courbes par le thread de l'interface graphique.
+     *
+     * @param values les valeurs, colonne par colonne dans l'ordre de ColumnRecorder.CHANNELS
+     *               (values[c][from + k] est la valeur de la colonne c pour le k-ième échantillon)
+     * @param from l'indice du premier échantillon dans les tableaux
+     * @param n le nombre d'échantillons
+     */
+    public void append(double[][] values, int from, int n) {
+        synchronized (pendingLock) {
+            reserve(n);
+            //t, x, vx, ax et theta sont les cinq premières colonnes
+            for (int c = 0; c < pending.length; c++)
+                System.arraycopy(values[c], from, pending[c], pendingCount, n);
+            pendingCount += n;
+            schedulePending();
+        }
+    }
+
+    /**
+     * Cette méthode ajoute un état de la simulation aux courbes de la simulation (voir append).
+     *
+     * @param state l'état
+     */
+    public void append(Simulation.State state) {
+        synchronized (pendingLock) {
+            reserve(1);
+            pending[0][pendingCount] = state.t;
+            pending[1][pendingCount] = state.x;
+            pending[2][pendingCount] = state.vx;
+            pending[3][pendingCount] = state.ax;
+            pending[4][pendingCount] = state.theta;
+            pendingCount++;
+            schedulePending();
+        }
+    }
+
+    /**
+     * Cette méthode efface les courbes de la simulation (au début d'un nouveau déroulement). Comme append,
+     * elle peut être appelée par n'importe quel thread.
+     */
+    public void resetLive() {
+        synchronized (pendingLock) {
+            pendingCount = 0;
+            clearPending = true;
+            schedulePending();
+        }
+    }
+
+    private void reserve(int n) {
+        if (pendingCount + n > pending[0].length) {
+            int capacity = Math.max(2 * pending[0].length, pendingCount + n);
+            for (int c = 0; c < pending.length; c++)
+                pending[c] = Arrays.copyOf(pending[c], capacity);
+        }
+    }
+
+    private void schedulePending() {
+        if (!applyPending) {
+            applyPending = true;
+            SwingUtilities.invokeLater(applyTask);
+        }
+    }
+
+    /**
+     * Cette méthode ajoute aux courbes de la simulation les points reçus (thread de l'interface graphique).
+     */
+    private void applyPending() {
+        synchronized (pendingLock) {
+            applyPending = false;
+            if (clearPending) {
+                clearPending = false;
+                for (int i = 0; i < tabGP.length; i++)
+                    tabGP[i].clearLive();
+            }
+            double[] t = pending[0];
+            for (int k = 0; k < pendingCount; k++) {
+                tabGP[0].addLive(t[k], pending[1][k]);
+                tabGP[1].addLive(t[k], pending[2][k]);
+                tabGP[2].addLive(t[k], pending[3][k]/1000);
+                tabGP[3].addLive(t[k], Math.toDegrees(pending[4][k]));
+            }
+            pendingCount = 0;
+        }
+        scheduleRefresh();
+    }
+
+    /**
+     * Cette méthode demande que les courbes soient redessinées (une seule fois pour tous les points
+     * ajoutés pendant le traitement d'un même événement).
+     */
+    private void scheduleRefresh() {
+        if (!refreshPending) {
+        	refreshPending = true;
+        	SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					refresh();
+				}
+			});
+        }
+    }
+
+    /**
+     * Cette méthode redessine les courbes avec les points de la fenêtre de temps affichée.
+     */
+    private void refresh() {
+        refreshPending = false;
+        for (int i = 0; i < tabGP.length; i++) {
+			tabGP[i].refresh(window);
+		}
     }
     
 //****************************************************************
@@ -96,6 +330,14 @@ public class PlotPanel extends JPanel {
      */
     class GraphicPanel extends JPanel {
     	ITrace2D trace;
+    	/**
+    	 * Tous les points de la simulation et ceux de la trace revue, les points de la courbe affichée
+    	 * (l'une des deux), et les points extraits pour le dessin.
+    	 */
+    	private final PlotSeries live = new PlotSeries(), playback = new PlotSeries();
+    	private PlotSeries series = live;
+    	private double[] times = new double[0], values = new double[0];
+    	private Chart2D chart;
 
     	/**
     	 * Constructeur public permettant de mettre une valeur minimale et maximale
@@ -114,7 +356,7 @@ public class PlotPanel extends JPanel {
     	 * Cette méthode permet 
     	 */
     	private void initInterface(double minRange, double maxRange) {
-    		Chart2D chart = new Chart2D();
+    		chart = new Chart2D();
     		chart.addTrace(trace);
 
     		chart.getAxisX().setPaintGrid(true);
@@ -133,17 +375,63 @@ public class PlotPanel extends JPanel {
     	 * Cette méthode permet de réinitialiser le panneau du graphique.
     	 */
     	public void reset() {
+    		series.clear();
     		trace.removeAllPoints();
     		repaint();
     	}
 
     	/**
-    	 * Cette méthode permet d'ajouter les points sur le graphique.
+    	 * Cette méthode permet d'afficher les points de la trace revue (effacés) ou ceux de la simulation.
+    	 */
+    	void setPlayback(boolean on) {
+    		playback.clear();
+    		series = on ? playback : live;
+    	}
+
+    	/**
+    	 * Cette méthode efface les points de la simulation.
+    	 */
+    	void clearLive() {
+    		live.clear();
+    	}
+
+    	/**
+    	 * Cette méthode ajoute un point de la simulation (qui n'est pas dessiné pendant la lecture d'une trace).
+    	 */
+    	void addLive(double time, double val) {
+    		live.add(time, val);
+    	}
+
+    	/**
+    	 * Cette méthode permet d'ajouter un point à la courbe affichée (il est dessiné au prochain appel de refresh).
     	 * 
-    	 * @param state
+    	 * @param time le temps
+    	 * @param val la valeur
     	 */
     	public void update(double time, double val) {
-    		trace.addPoint(time, val);
+    		series.add(time, val);
+    	}
+
+    	/**
+    	 * Cette méthode remplace les points dessinés par ceux de la fenêtre de temps donnée,
+    	 * réduits à un minimum et un maximum par tranche de deux pixels.
+    	 * 
+    	 * @param window la durée affichée (en s), ou 0 pour toute la simulation
+    	 */
+    	public void refresh(double window) {
+    		trace.removeAllPoints();
+    		if (series.size() == 0)
+    			return;
+    		int buckets = Math.max(50, chart.getWidth() / 2);
+    		if (times.length < 2 * buckets) {
+    			times = new double[2 * buckets];
+    			values = new double[2 * buckets];
+    		}
+    		double end = series.getEndTime();
+    		double start = window > 0 ? Math.max(series.getStartTime(), end - window) : series.getStartTime();
+    		int n = series.downsample(start, end, buckets, times, values);
+    		for (int i = 0; i < n; i++)
+    			trace.addPoint(times[i], values[i]);
     	}
     }  
 }
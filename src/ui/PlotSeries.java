@@ -0,0 +1,201 @@
+package alina.sim.ui;
+
+import java.util.Arrays;
+
+/**
+ * Cette classe garde tous les points d'une courbe (temps croissants) et permet d'en extraire,
+ * pour un intervalle de temps donné, quelques centaines de points seulement : l'intervalle est
+ * découpé en tranches (une par pixel ou presque), et seuls le minimum et le maximum de chaque
+ * tranche sont gardés. La courbe dessinée a ainsi la même enveloppe que la courbe complète.
+ *
+ * Pour que ces minima et maxima ne demandent pas de parcourir tous les points, la classe garde
+ * une pyramide de blocs : au niveau 1, l'indice du minimum et du maximum de chaque bloc de FANOUT
+ * points, au niveau 2 de chaque bloc de FANOUT blocs du niveau 1, etc. La pyramide est mise à jour
+ * à chaque point ajouté (LEVELS comparaisons).
+ *
+ * @author alina petrescu
+ * @version 1.0
+ */
+public class PlotSeries {
+	/**
+	 * Le nombre d'éléments d'un bloc de la pyramide et le nombre de niveaux.
+	 */
+	public static final int FANOUT = 16, LEVELS = 6;
+
+	private double[] times = new double[1024], values = new double[1024];
+	private int size;
+	/**
+	 * Pour chaque niveau L (à partir de 1), les indices (dans times et values) du minimum et du
+	 * maximum de chaque bloc, et le nombre de blocs.
+	 */
+	private final int[][] minIndices = new int[LEVELS + 1][], maxIndices = new int[LEVELS + 1][];
+	private final int[] counts = new int[LEVELS + 1];
+	/**
+	 * Les indices du minimum et du maximum trouvés par la dernière recherche (voir range).
+	 */
+	private int rangeMin, rangeMax;
+
+	/**
+	 * Constructeur public qui crée une courbe vide.
+	 */
+	public PlotSeries() {
+		for (int level = 1; level <= LEVELS; level++) {
+			minIndices[level] = new int[16];
+			maxIndices[level] = new int[16];
+		}
+	}
+
+	/**
+	 * Cette méthode ajoute un point à la fin de la courbe.
+	 *
+	 * @param time le temps du point (pas plus petit que celui du point précédent)
+	 * @param value la valeur
+	 */
+	public void add(double time, double value) {
+		if (size == times.length) {
+			times = Arrays.copyOf(times, 2 * size);
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		int i = size++;
+		times[i] = time;
+		values[i] = value;
+
+		//le point est propagé dans les blocs qui le contiennent, du niveau 1 au dernier niveau
+		int index = i, min = i, max = i;
+		for (int level = 1; level <= LEVELS; level++) {
+			index /= FANOUT;
+			int[] mins = minIndices[level], maxs = maxIndices[level];
+			if (index == counts[level]) {
+				if (index == mins.length) {
+					mins = minIndices[level] = Arrays.copyOf(mins, 2 * index);
+					maxs = maxIndices[level] = Arrays.copyOf(maxs, 2 * index);
+				}
+				mins[index] = min;
+				maxs[index] = max;
+				counts[level]++;
+			} else {
+				if (values[min] < values[mins[index]])
+					mins[index] = min;
+				if (values[max] > values[maxs[index]])
+					maxs[index] = max;
+				min = mins[index];
+				max = maxs[index];
+			}
+		}
+	}
+
+	/**
+	 * Cette méthode efface tous les points.
+	 */
+	public void clear() {
+		size = 0;
+		Arrays.fill(counts, 0);
+	}
+
+	/**
+	 * Cette méthode retourne le nombre de points.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Cette méthode retourne le temps du premier point.
+	 * @return le temps, ou NaN si la courbe est vide
+	 */
+	public double getStartTime() {
+		return size > 0 ? times[0] : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode retourne le temps du dernier point.
+	 * @return le temps, ou NaN si la courbe est vide
+	 */
+	public double getEndTime() {
+		return size > 0 ? times[size - 1] : Double.NaN;
+	}
+
+	/**
+	 * Cette méthode retourne l'indice du premier point dont le temps n'est pas plus petit que le temps donné.
+	 */
+	public int indexOf(double time) {
+		int lo = 0, hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (times[mid] < time)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Cette méthode cherche le minimum et le maximum des points d'indices from à to - 1 (non vide),
+	 * en utilisant les blocs de la pyramide entièrement compris dans cet intervalle.
+	 */
+	private void range(int from, int to) {
+		rangeMin = rangeMax = from;
+		int level = 0;
+		while (level < LEVELS && to - from >= 2 * FANOUT) {
+			int first = (from + FANOUT - 1) / FANOUT, last = to / FANOUT;
+			scan(level, from, first * FANOUT);
+			scan(level, last * FANOUT, to);
+			from = first;
+			to = last;
+			level++;
+		}
+		scan(level, from, to);
+	}
+
+	private void scan(int level, int from, int to) {
+		for (int j = from; j < to; j++) {
+			int min = level == 0 ? j : minIndices[level][j];
+			int max = level == 0 ? j : maxIndices[level][j];
+			if (values[min] < values[rangeMin])
+				rangeMin = min;
+			if (values[max] > values[rangeMax])
+				rangeMax = max;
+		}
+	}
+
+	/**
+	 * Cette méthode extrait les points à dessiner entre deux instants : l'intervalle est découpé en
+	 * tranches de même durée, et le minimum et le maximum de chaque tranche sont gardés (dans l'ordre
+	 * du temps). S'il y a peu de points, ils sont tous gardés.
+	 *
+	 * @param from le premier instant
+	 * @param to le dernier instant
+	 * @param buckets le nombre de tranches (le nombre de pixels de la largeur du graphique, par exemple)
+	 * @param outTimes les temps des points extraits (au moins 2 * buckets éléments)
+	 * @param outValues les valeurs des points extraits (au moins 2 * buckets éléments)
+	 * @return le nombre de points extraits
+	 */
+	public int downsample(double from, double to, int buckets, double[] outTimes, double[] outValues) {
+		int start = indexOf(from), end = indexOf(Math.nextUp(to));
+		int n = 0;
+		if (end - start <= 2 * buckets) {
+			for (int i = start; i < end; i++) {
+				outTimes[n] = times[i];
+				outValues[n++] = values[i];
+			}
+			return n;
+		}
+		int a = start;
+		for (int k = 1; k <= buckets && a < end; k++) {
+			int b = k == buckets ? end : Math.max(a, indexOf(from + (to - from) * k / buckets));
+			if (b == a)
+				continue;
+			range(a, b);
+			int first = Math.min(rangeMin, rangeMax), second = Math.max(rangeMin, rangeMax);
+			outTimes[n] = times[first];
+			outValues[n++] = values[first];
+			if (second != first) {
+				outTimes[n] = times[second];
+				outValues[n++] = values[second];
+			}
+			a = b;
+		}
+		return n;
+	}
+}